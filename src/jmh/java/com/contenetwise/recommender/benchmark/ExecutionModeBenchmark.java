@@ -0,0 +1,131 @@
+package com.contenetwise.recommender.benchmark;
+
+import com.contenetwise.recommender.RecommenderApplication;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests served on Tomcat platform threads against virtual threads with the database
+ * concurrency limiter. Each operation sends a burst of concurrent ranking listings, which
+ * all go to the database, to the application running on an in-memory database with a
+ * small connection pool. Virtual threads need a Java 21 runtime, the virtual mode fails
+ * on older ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class ExecutionModeBenchmark {
+
+    private static final int USERS = 200;
+    private static final int MOVIES = 2000;
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    @Param({"50", "500"})
+    private int concurrency;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private ExecutorService clientExecutor;
+    private List<Long> userIds;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        boolean virtual = mode.equals("virtual");
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need a Java 21 runtime, running " + Runtime.version());
+        }
+        context = new SpringApplicationBuilder(RecommenderApplication.class)
+                .profiles("test")
+                .properties("server.port=0",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "spring.datasource.hikari.maximum-pool-size=10",
+                        "spring.threads.virtual.enabled=" + virtual,
+                        "recommender.request-log.sample-rate=0")
+                .run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        seed();
+        //The client side is the same in both modes, only the server changes
+        clientExecutor = Executors.newFixedThreadPool(Math.min(concurrency, 64));
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientExecutor).build();
+    }
+
+    private void seed() {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        MovieRepository movieRepository = context.getBean(MovieRepository.class);
+        RankingRepository rankingRepository = context.getBean(RankingRepository.class);
+        Random random = new Random(42);
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < MOVIES; i++) {
+            movies.add(Movie.builder().title("Movie " + i).build());
+        }
+        movies = movieRepository.saveAll(movies);
+        userIds = new ArrayList<>();
+        List<Ranking> rankings = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = userRepository.save(User.builder().username("user" + i).build());
+            userIds.add(user.getId());
+            //Distinct movies per user, a user ranks a movie once
+            List<Movie> rated = new ArrayList<>(movies);
+            Collections.shuffle(rated, random);
+            for (Movie movie : rated.subList(0, 20)) {
+                rankings.add(Ranking.builder().user(user).movie(movie)
+                        .rank1(1 + random.nextInt(5)).build());
+            }
+        }
+        rankingRepository.saveAll(rankings);
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientExecutor.shutdownNow();
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1)
+    public int burst() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Long userId = userIds.get(i % userIds.size());
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/rankings/user/" + userId)).GET().build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        int failed = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + concurrency + " requests failed");
+        }
+        return concurrency;
+    }
+}
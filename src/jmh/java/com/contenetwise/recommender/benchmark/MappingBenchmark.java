@@ -0,0 +1,48 @@
+package com.contenetwise.recommender.benchmark;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.dto.MovieRequest;
+import com.contenetwise.recommender.dto.RankingDTOResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of turning entities into response bodies, for a page of the given size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class MappingBenchmark {
+
+    @Param({"100", "1000"})
+    private int pageSize;
+
+    private List<Movie> movies;
+    private List<Ranking> rankings;
+
+    @Setup
+    public void setUp() {
+        SyntheticCatalog catalog = new SyntheticCatalog(pageSize, 42);
+        movies = catalog.getMovies();
+        rankings = movies.stream()
+                .map(movie -> Ranking.builder().movie(movie).rank1(4).build())
+                .toList();
+    }
+
+    @Benchmark
+    public List<MovieRequest> movieRequests() {
+        return movies.stream().map(MovieRequest::from).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<RankingDTOResponse> rankingResponses() {
+        return rankings.stream().map(RankingDTOResponse::new).collect(Collectors.toList());
+    }
+}
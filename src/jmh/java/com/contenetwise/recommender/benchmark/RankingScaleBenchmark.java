@@ -0,0 +1,58 @@
+package com.contenetwise.recommender.benchmark;
+
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.RankingScale;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of the rating scale conversions applied to every ranking of a user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class RankingScaleBenchmark {
+
+    @Param({"50", "5000"})
+    private int rankings;
+
+    private List<Ranking> userRankings;
+    private int[] rank2Values;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        userRankings = IntStream.range(0, rankings).mapToObj(i -> random.nextBoolean()
+                        ? Ranking.builder().rank1(1 + random.nextInt(5)).build()
+                        : Ranking.builder().rank2(random.nextInt(101)).build())
+                .toList();
+        rank2Values = random.ints(rankings, 0, 101).toArray();
+    }
+
+    @Benchmark
+    public long isHighlyRated() {
+        return userRankings.stream().filter(RankingScale::isHighlyRated).count();
+    }
+
+    @Benchmark
+    public void mapRank2ToFiveScale(Blackhole blackhole) {
+        for (int rank2 : rank2Values) {
+            blackhole.consume(RankingScale.mapRank2ToFiveScale(rank2));
+        }
+    }
+
+    @Benchmark
+    public void score(Blackhole blackhole) {
+        for (Ranking ranking : userRankings) {
+            blackhole.consume(RankingScale.score(ranking));
+        }
+    }
+}
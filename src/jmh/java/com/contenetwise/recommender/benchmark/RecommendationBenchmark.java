@@ -0,0 +1,116 @@
+package com.contenetwise.recommender.benchmark;
+
+import com.contenetwise.recommender.controllers.KeysetPagination;
+import com.contenetwise.recommender.controllers.RankingController;
+import com.contenetwise.recommender.dto.ResponseDTO;
+import com.contenetwise.recommender.services.QueryExecutor;
+import com.contenetwise.recommender.services.RankingWriteGate;
+import com.contenetwise.recommender.services.recommendation.GenreAffinityScorer;
+import com.contenetwise.recommender.services.recommendation.GenreCandidateGenerator;
+import com.contenetwise.recommender.services.recommendation.GenreRecommendationEngine;
+import com.contenetwise.recommender.services.recommendation.PipelineRecommendationEngine;
+import com.contenetwise.recommender.services.recommendation.PopularCandidateGenerator;
+import com.contenetwise.recommender.services.recommendation.PopularityScorer;
+import com.contenetwise.recommender.services.recommendation.PrecomputedRecommendations;
+import com.contenetwise.recommender.services.recommendation.RecommendationEngine;
+import com.contenetwise.recommender.services.recommendation.RecommendationMetrics;
+import com.contenetwise.recommender.services.recommendation.RecommendationService;
+import com.contenetwise.recommender.services.recommendation.UserProfile;
+import com.contenetwise.recommender.services.recommendation.UserProfileStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The recommendation endpoint on catalogs of increasing size: the genre engine alone,
+ * the pipeline engine alone (genre and popular candidates, top 100 kept), the user
+ * profile derived from the rankings or read from the profile store, a computation
+ * that is not cached (engine, loading of the movies and mapping), and
+ * {@code RankingController.recommendMovies} answered from the recommendation cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class RecommendationBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int catalogSize;
+
+    private SyntheticCatalog catalog;
+    private GenreRecommendationEngine engine;
+    private PipelineRecommendationEngine pipeline;
+    private UserProfileStore profileStore;
+    private RecommendationService recommendationService;
+    private RankingController rankingController;
+    private QueryExecutor queryExecutor;
+
+    @Setup
+    public void setUp() {
+        catalog = new SyntheticCatalog(catalogSize, 42);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RecommendationMetrics metrics = new RecommendationMetrics(meterRegistry);
+        queryExecutor = new QueryExecutor(meterRegistry, 8, 256);
+        engine = new GenreRecommendationEngine(catalog.getGenreIndex(), catalog.getPopularityService(), metrics);
+        pipeline = new PipelineRecommendationEngine(
+                List.of(new GenreCandidateGenerator(catalog.getGenreIndex()),
+                        new PopularCandidateGenerator(catalog.getPopularityService(), 200, Duration.ofMinutes(1))),
+                List.of(new GenreAffinityScorer(catalog.getGenreIndex(), 1.0),
+                        new PopularityScorer(catalog.getPopularityService(), 0.5)),
+                metrics, 100);
+        profileStore = new UserProfileStore(catalog.getRankingRepository(), catalog.getGenreRepository(),
+                catalog.getGenreIndex(), meterRegistry, 1000, Duration.ofHours(1));
+        profileStore.loadGenres();
+        recommendationService = new RecommendationService(catalog.getRankingRepository(), catalog.getMovieRepository(),
+                List.<RecommendationEngine>of(engine), meterRegistry, metrics,
+                new PrecomputedRecommendations(null, null, meterRegistry), profileStore, GenreRecommendationEngine.NAME,
+                1000, Duration.ofHours(1), Duration.ofHours(1), 1);
+        rankingController = new RankingController(catalog.getRankingRepository(), null, catalog.getUserRepository(),
+                catalog.getMovieRepository(), recommendationService, null, null,
+                new KeysetPagination(100, 1000), metrics, queryExecutor, new RankingWriteGate(), 10000, 20, 100);
+    }
+
+    @TearDown
+    public void tearDown() {
+        recommendationService.shutdown();
+        queryExecutor.shutdown();
+    }
+
+    @Benchmark
+    public List<Long> engine() {
+        return engine.recommend(SyntheticCatalog.USER_ID, catalog.getUserRankings());
+    }
+
+    @Benchmark
+    public List<Long> pipeline() {
+        return pipeline.recommend(SyntheticCatalog.USER_ID, catalog.getUserRankings());
+    }
+
+    @Benchmark
+    public UserProfile profileFromRankings() {
+        return UserProfile.of(SyntheticCatalog.USER_ID, catalog.getUserRankings());
+    }
+
+    @Benchmark
+    public UserProfile profileFromStore() {
+        return profileStore.profile(SyntheticCatalog.USER_ID, catalog.getUserRankings());
+    }
+
+    @Benchmark
+    public RecommendationService.Recommendations uncached() {
+        RecommendationService.Recommendations recommendations = recommendationService.compute(SyntheticCatalog.USER_ID);
+        catalog.getMovieRepository().findAllByIdInOrder(recommendations.movieIds());
+        return recommendations;
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseDTO> recommendMovies() {
+        return rankingController.recommendMovies(SyntheticCatalog.USER_ID, null);
+    }
+}
@@ -0,0 +1,104 @@
+package com.contenetwise.recommender.benchmark;
+
+import com.contenetwise.recommender.controllers.KeysetPagination;
+import com.contenetwise.recommender.controllers.MovieController;
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.dto.ResponseDTO;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.QueryExecutor;
+import com.contenetwise.recommender.services.search.SimilarMovieIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@code MovieController.searchMovies} on catalogs of increasing size: keyword search
+ * on the title index, genre matching on the bitmaps, and all criteria merged. Also
+ * {@code MovieController.getSimilarMovies} on the HNSW index of the catalog genres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class SearchBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int catalogSize;
+
+    private MovieController movieController;
+    private String[] keywords;
+    private String[] titles;
+    private long[] movieIds;
+    private int next;
+    private QueryExecutor queryExecutor;
+
+    @Setup
+    public void setUp() {
+        SyntheticCatalog catalog = new SyntheticCatalog(catalogSize, 42);
+        queryExecutor = new QueryExecutor(new SimpleMeterRegistry(), 8, 256);
+        //The similar movies index gets the movies as if they were created, with their genres only
+        SimilarMovieIndex similarMovieIndex = new SimilarMovieIndex(catalog.getMovieRepository(), catalog.getRankingRepository(),
+                null, new SimpleMeterRegistry(), 32, 32, 0.5, 16, 100, 50, 10, 100);
+        for (Movie movie : catalog.getMovies()) {
+            similarMovieIndex.onMovieChanged(MovieChangedEvent.created(movie.getId(), movie.getTitle(),
+                    movie.getGenres().stream().map(Genre::getName).collect(Collectors.toSet())));
+        }
+        movieController = new MovieController(catalog.getMovieRepository(), null, null,
+                catalog.getTitleSearchIndex(), null, new KeysetPagination(100, 1000), null,
+                catalog.getGenreIndex(), null, queryExecutor, similarMovieIndex);
+        //Rotate over a few queries so a single posting list does not stay in the caches
+        Random random = new Random(7);
+        keywords = new String[16];
+        titles = new String[16];
+        movieIds = new long[16];
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = catalog.word(random);
+            titles[i] = catalog.getMovies().get(random.nextInt(catalogSize)).getTitle();
+            movieIds[i] = 1 + random.nextInt(catalogSize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        queryExecutor.shutdown();
+    }
+
+    private int next() {
+        next = (next + 1) % keywords.length;
+        return next;
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseDTO> keyword() {
+        return movieController.searchMovies(null, null, keywords[next()], "any", 0, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseDTO> genresAny() {
+        return movieController.searchMovies(null, List.of("Drama", "Western"), null, "any", 0, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseDTO> genresAll() {
+        return movieController.searchMovies(null, List.of("Action", "Comedy"), null, "all", 0, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseDTO> merged() {
+        int query = next();
+        return movieController.searchMovies(titles[query], List.of("Horror"), keywords[query], "any", 2, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseDTO> similar() {
+        return movieController.getSimilarMovies(movieIds[next()], null);
+    }
+}
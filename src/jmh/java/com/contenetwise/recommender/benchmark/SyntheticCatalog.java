@@ -0,0 +1,210 @@
+package com.contenetwise.recommender.benchmark;
+
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.RankingScale;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.PopularityService;
+import com.contenetwise.recommender.services.RankingWriteGate;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import com.contenetwise.recommender.services.search.TitleSearchIndex;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * An in-memory catalog of the requested size for the benchmarks. The same seed always
+ * gives the same movies, genres, titles and rankings. The in-memory indexes are filled
+ * with the catalog. The repositories are proxies that answer from memory, so the
+ * benchmarks measure the application code and not the database.
+ */
+public class SyntheticCatalog {
+
+    public static final Long USER_ID = 1L;
+    public static final int USER_RANKINGS = 50;
+
+    static final String[] GENRES = {
+            "Action", "Adventure", "Animation", "Biography", "Comedy", "Crime", "Documentary",
+            "Drama", "Family", "Fantasy", "History", "Horror", "Music", "Musical", "Mystery",
+            "Romance", "Sci-Fi", "Sport", "Thriller", "War", "Western"
+    };
+
+    private static final String[] WORDS = {
+            "the", "last", "night", "city", "dark", "love", "story", "house", "king", "return",
+            "lost", "world", "star", "war", "blue", "red", "river", "road", "game", "dead",
+            "secret", "life", "man", "woman", "girl", "boy", "summer", "winter", "moon", "sun",
+            "fire", "ice", "ghost", "shadow", "light", "dream", "heart", "island", "ocean", "storm",
+            "empire", "rise", "fall", "golden", "silver", "iron", "wild", "time", "day", "blood"
+    };
+
+    private final List<Movie> movies = new ArrayList<>();
+    private final Map<Long, Movie> moviesById = new HashMap<>();
+    private final List<Ranking> userRankings = new ArrayList<>();
+    private final GenreIndex genreIndex;
+    private final TitleSearchIndex titleSearchIndex;
+    private final PopularityService popularityService;
+    private final MovieRepository movieRepository;
+    private final RankingRepository rankingRepository;
+    private final UserRepository userRepository;
+    private final GenreRepository genreRepository;
+
+    public SyntheticCatalog(int size, long seed) {
+        Random random = new Random(seed);
+        Map<String, Genre> genres = new HashMap<>();
+        for (int i = 0; i < GENRES.length; i++) {
+            genres.put(GENRES[i], Genre.builder().id((long) i + 1).name(GENRES[i]).build());
+        }
+
+        movieRepository = repository(MovieRepository.class, Map.of(
+                "findAllById", args -> findAllById((Iterable<?>) args[0])));
+        rankingRepository = repository(RankingRepository.class, Map.of(
+                "findByUser", args -> USER_ID.equals(args[0]) ? userRankings : List.of(),
+                "findGenreScoresByUser", args -> USER_ID.equals(args[0]) ? genreScores() : List.of()));
+        genreRepository = repository(GenreRepository.class, Map.of(
+                "findAll", args -> List.copyOf(genres.values())));
+        userRepository = repository(UserRepository.class, Map.of(
+                "existsById", args -> USER_ID.equals(args[0])));
+        genreIndex = new GenreIndex(movieRepository);
+        titleSearchIndex = new TitleSearchIndex(movieRepository);
+        popularityService = new PopularityService(rankingRepository, new RankingWriteGate());
+
+        for (long id = 1; id <= size; id++) {
+            //One to three genres per movie, the first genres being the most common ones
+            Set<Genre> movieGenres = new HashSet<>();
+            int genreCount = 1 + random.nextInt(3);
+            for (int i = 0; i < genreCount; i++) {
+                int index = (int) (GENRES.length * Math.pow(random.nextDouble(), 2));
+                movieGenres.add(genres.get(GENRES[index]));
+            }
+            StringBuilder title = new StringBuilder();
+            int wordCount = 2 + random.nextInt(3);
+            for (int i = 0; i < wordCount; i++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                title.append(i == 0 ? "" : " ").append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+            }
+            Movie movie = Movie.builder().id(id).title(title.toString()).genres(movieGenres).build();
+            movies.add(movie);
+            moviesById.put(id, movie);
+
+            genreIndex.onMovieChanged(MovieChangedEvent.created(id, movie.getTitle(),
+                    movieGenres.stream().map(Genre::getName).collect(Collectors.toSet())));
+            titleSearchIndex.add(id, movie.getTitle());
+            int rankings = random.nextInt(20);
+            for (int i = 0; i < rankings; i++) {
+                popularityService.increment(id);
+            }
+        }
+
+        //The benchmarked user rated some movies, on either scale
+        User user = User.builder().id(USER_ID).username("benchmark").build();
+        //Distinct movies, a user ranks a movie once
+        List<Movie> rated = new ArrayList<>(movies);
+        Collections.shuffle(rated, random);
+        for (int i = 0; i < Math.min(USER_RANKINGS, size); i++) {
+            Movie movie = rated.get(i);
+            Ranking.RankingBuilder ranking = Ranking.builder().id((long) i + 1).user(user).movie(movie);
+            if (random.nextBoolean()) {
+                ranking.rank1(1 + random.nextInt(5));
+            } else {
+                ranking.rank2(random.nextInt(101));
+            }
+            userRankings.add(ranking.build());
+        }
+    }
+
+    //(score, genreId) of every genre of every movie ranked by the user
+    private List<Object[]> genreScores() {
+        List<Object[]> rows = new ArrayList<>();
+        for (Ranking ranking : userRankings) {
+            Integer score = RankingScale.score(ranking);
+            ranking.getMovie().getGenres().forEach(genre -> rows.add(new Object[]{score, genre.getId()}));
+        }
+        return rows;
+    }
+
+    private List<Movie> findAllById(Iterable<?> ids) {
+        return StreamSupport.stream(ids.spliterator(), false)
+                .map(moviesById::get)
+                .filter(movie -> movie != null)
+                .collect(Collectors.toList());
+    }
+
+    //Proxy implementing the named methods, and the default methods of the interface
+    @SuppressWarnings("unchecked")
+    private static <T> T repository(Class<T> type, Map<String, Function<Object[], Object>> methods) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            Function<Object[], Object> implementation = methods.get(method.getName());
+            if (implementation != null) {
+                return implementation.apply(args);
+            }
+            return switch (method.getName()) {
+                case "toString" -> type.getSimpleName() + " stub";
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " is not stubbed");
+            };
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    public List<Ranking> getUserRankings() {
+        return userRankings;
+    }
+
+    //Random word of the titles, to search for
+    public String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    public GenreIndex getGenreIndex() {
+        return genreIndex;
+    }
+
+    public TitleSearchIndex getTitleSearchIndex() {
+        return titleSearchIndex;
+    }
+
+    public PopularityService getPopularityService() {
+        return popularityService;
+    }
+
+    public MovieRepository getMovieRepository() {
+        return movieRepository;
+    }
+
+    public RankingRepository getRankingRepository() {
+        return rankingRepository;
+    }
+
+    public UserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    public GenreRepository getGenreRepository() {
+        return genreRepository;
+    }
+}
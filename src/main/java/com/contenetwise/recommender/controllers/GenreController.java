@@ -3,12 +3,15 @@ package com.contenetwise.recommender.controllers;
 import com.contenetwise.recommender.domain.Genre;
 import com.contenetwise.recommender.dto.GenreDTOResponse;
 import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.services.CatalogCache;
+import com.contenetwise.recommender.services.GenreChangedEvent;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -24,10 +27,17 @@ import java.util.stream.Collectors;
 public class GenreController {
 
     private final GenreRepository genreRepository;
+    private final KeysetPagination pagination;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CatalogCache catalogCache;
     private static final Logger logger = LoggerFactory.getLogger(GenreController.class);
 
-    public GenreController(GenreRepository genreRepository) {
+    public GenreController(GenreRepository genreRepository, KeysetPagination pagination, ApplicationEventPublisher eventPublisher,
+                           CatalogCache catalogCache) {
         this.genreRepository = genreRepository;
+        this.pagination = pagination;
+        this.eventPublisher = eventPublisher;
+        this.catalogCache = catalogCache;
     }
 
     @Operation(summary = "Create a new genre", description = "Add a new genre")
@@ -37,7 +47,7 @@ public class GenreController {
     })
     @PostMapping("/create")
     public ResponseEntity<GenreDTOResponse> createGenre(@RequestBody GenreDTOResponse genre) {
-        logger.info("Create request received for genre with name: {}", genre.getName());
+        logger.debug("Create request received for genre with name: {}", genre.getName());
 
         // Validate genre name
         if (genre.getName() == null || genre.getName().isBlank()) {
@@ -58,26 +68,34 @@ public class GenreController {
         genreToSave.setName(genre.getName());
 
         Genre savedGenre = genreRepository.save(genreToSave);
+        eventPublisher.publishEvent(GenreChangedEvent.created(savedGenre.getId(), savedGenre.getName()));
 
-        logger.info("Genre created successfully with name: {}", savedGenre.getName());
+        logger.debug("Genre created successfully with name: {}", savedGenre.getName());
         return ResponseEntity.ok(new GenreDTOResponse(savedGenre.getName()));
     }
 
-    @Operation(summary = "Get a list of all genres", description = "Retrieve the list of genres")
+    @Operation(summary = "Get a list of all genres", description = "Retrieve the list of genres, one page at a time. " +
+            "The token of the next page is returned in the " + KeysetPagination.CONTINUATION_HEADER + " header")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful retrieval of genres"),
+            @ApiResponse(responseCode = "400", description = "Invalid continuation token or page size")
     })
     @GetMapping
-    public ResponseEntity<List<GenreDTOResponse>> getAllGenres() {
-        //Get the list of all genres
-        List<Genre> genres = genreRepository.findAll();
-        logger.info("Get request called for all genres");
-        //Convert the genres to GenreDTOResponse
-        List<GenreDTOResponse> genreDTOs = genres.stream()
-                .map(genre -> new GenreDTOResponse(genre.getName()))
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(genreDTOs);
+    public ResponseEntity<List<GenreDTOResponse>> getAllGenres(
+            @RequestParam(required = false) String continuationToken,
+            @RequestParam(required = false) Integer size) {
+        logger.debug("Get request called for all genres");
+        KeysetPagination.Page page = pagination.request(continuationToken, size);
+        if (page == null) {
+            logger.warn("Invalid page request - continuationToken: {}, size: {}", continuationToken, size);
+            return ResponseEntity.badRequest().build();
+        }
+        //Get one page of genres and convert them to GenreDTOResponse
+        return pagination.respond(catalogCache.getGenrePage(page.after(), page.size(), () -> pagination.load(page,
+                genreRepository.findPage(page.after(), page.limit()), Genre::getId,
+                pageGenres -> pageGenres.stream()
+                        .map(genre -> new GenreDTOResponse(genre.getName()))
+                        .collect(Collectors.toList()))));
     }
 
     @Operation(summary = "Get a genre by ID", description = "Retrieve genre by specifying the ID")
@@ -88,10 +106,10 @@ public class GenreController {
     @GetMapping("/{id}")
     public ResponseEntity<GenreDTOResponse> getGenreById(@PathVariable Long id) {
         //Check if genre exists or not
-        logger.info("Request called for genre with ID: {}", id);
+        logger.debug("Request called for genre with ID: {}", id);
         return genreRepository.findById(id)
                 .map(genre -> {
-                    logger.info("Genre found: {} with ID: {}", genre.getName(),id);
+                    logger.debug("Genre found: {} with ID: {}", genre.getName(),id);
                     return ResponseEntity.ok(new GenreDTOResponse(genre.getName()));
                 })
                 .orElseGet(() -> {
@@ -108,16 +126,18 @@ public class GenreController {
     @PutMapping("/{id}")
     public ResponseEntity<GenreDTOResponse> updateGenre(@PathVariable Long id, @RequestBody GenreDTOResponse updatedGenre) {
         //Check if genre exists or not
-        logger.info("Update request received for genre with ID: {}", id);
+        logger.debug("Update request received for genre with ID: {}", id);
         return genreRepository.findById(id)
                 .map(existingGenre -> {
-                    logger.info("Genre found with ID: {}. Updating name from '{}' to '{}'",
+                    logger.debug("Genre found with ID: {}. Updating name from '{}' to '{}'",
                             id, existingGenre.getName(), updatedGenre.getName());
 
+                    String previousName = existingGenre.getName();
                     existingGenre.setName(updatedGenre.getName());
                     Genre savedGenre = genreRepository.save(existingGenre);
+                    eventPublisher.publishEvent(GenreChangedEvent.renamed(id, previousName, savedGenre.getName()));
 
-                    logger.info("Genre updated successfully with ID: {}", id);
+                    logger.debug("Genre updated successfully with ID: {}", id);
                     return ResponseEntity.ok(new GenreDTOResponse(savedGenre.getName()));
                 })
                 .orElseGet(() -> {
@@ -133,7 +153,7 @@ public class GenreController {
     })
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteGenre(@PathVariable Long id) {
-        logger.info("Delete request received for genre with ID: {}", id);
+        logger.debug("Delete request received for genre with ID: {}", id);
         //Check if genre exists or not
         if (!genreRepository.existsById(id)) {
             logger.warn("Genre with ID {} not found. Deletion aborted.", id);
@@ -141,7 +161,8 @@ public class GenreController {
         }
         //Delete the genre and return the response
         genreRepository.deleteById(id);
-        logger.info("Genre with ID {} deleted successfully.", id);
+        eventPublisher.publishEvent(GenreChangedEvent.deleted(id));
+        logger.debug("Genre with ID {} deleted successfully.", id);
         return ResponseEntity.ok("Genre deleted successfully.");
     }
 }
@@ -0,0 +1,103 @@
+package com.contenetwise.recommender.controllers;
+
+import com.contenetwise.recommender.dto.KeysetPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination shared by the listing endpoints. Pages are ordered by id and the
+ * continuation token is an opaque encoding of the last id returned, so every page is
+ * an index range scan bounded by the page size, wherever it is in the table. The
+ * token of the next page is returned in the {@value #CONTINUATION_HEADER} header and
+ * passed back in the {@code continuationToken} parameter.
+ */
+@Component
+public class KeysetPagination {
+
+    public static final String CONTINUATION_HEADER = "X-Continuation-Token";
+    private static final String TOKEN_PREFIX = "id:";
+
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public KeysetPagination(@Value("${recommender.pagination.default-page-size:100}") int defaultPageSize,
+                            @Value("${recommender.pagination.max-page-size:1000}") int maxPageSize) {
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    //Requested page size within the configured bounds, or null when it is not valid
+    public Integer pageSize(Integer size) {
+        if (size != null && size < 1) {
+            return null;
+        }
+        return Math.min(size == null ? defaultPageSize : size, maxPageSize);
+    }
+
+    //Requested page, or null when the token or the size is not valid
+    public Page request(String continuationToken, Integer size) {
+        Integer pageSize = pageSize(size);
+        if (pageSize == null) {
+            return null;
+        }
+        long after = Long.MIN_VALUE;
+        if (continuationToken != null && !continuationToken.isBlank()) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8);
+                if (!decoded.startsWith(TOKEN_PREFIX)) {
+                    return null;
+                }
+                after = Long.parseLong(decoded.substring(TOKEN_PREFIX.length()));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return new Page(after, pageSize);
+    }
+
+    //Page of the rows fetched with Page.limit(): drops the look-ahead row and maps the others
+    public <T, R> KeysetPage<R> load(Page page, List<T> rows, Function<T, Long> idOf, Function<List<T>, R> mapper) {
+        boolean hasMore = rows.size() > page.size();
+        List<T> pageRows = hasMore ? rows.subList(0, page.size()) : rows;
+        Long lastId = pageRows.isEmpty() ? null : idOf.apply(pageRows.get(pageRows.size() - 1));
+        return new KeysetPage<>(mapper.apply(pageRows), page.after(), lastId, hasMore);
+    }
+
+    //Response for a page, with the token of the next page when there is one
+    public <R> ResponseEntity<R> respond(KeysetPage<R> page) {
+        if (!page.hasMore()) {
+            return ResponseEntity.ok(page.body());
+        }
+        return ResponseEntity.ok()
+                .header(CONTINUATION_HEADER, encode(page.lastId()))
+                .body(page.body());
+    }
+
+    public <T, R> ResponseEntity<R> respond(Page page, List<T> rows, Function<T, Long> idOf,
+                                            Function<List<T>, R> mapper) {
+        return respond(load(page, rows, idOf, mapper));
+    }
+
+    static String encode(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((TOKEN_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rows with an id greater than {@code after}, at most {@code size} of them. One more
+     * row is fetched to know whether a next page exists.
+     */
+    public record Page(long after, int size) {
+
+        public Limit limit() {
+            return Limit.of(size + 1);
+        }
+    }
+}
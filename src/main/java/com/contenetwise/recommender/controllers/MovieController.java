@@ -2,24 +2,40 @@ package com.contenetwise.recommender.controllers;
 
 import com.contenetwise.recommender.domain.Genre;
 import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.dto.KeysetPage;
 import com.contenetwise.recommender.dto.MovieRequest;
 import com.contenetwise.recommender.dto.ResponseDTO;
 import com.contenetwise.recommender.repositories.GenreRepository;
 import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.services.CatalogCache;
+import com.contenetwise.recommender.services.CatalogExportService;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.QueryExecutor;
+import com.contenetwise.recommender.services.RatingIndexService;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import com.contenetwise.recommender.services.search.SimilarMovieIndex;
+import com.contenetwise.recommender.services.search.TitleSearchIndex;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.transaction.Transactional;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
@@ -27,76 +43,108 @@ import java.util.stream.Collectors;
 @Tag(name = "Movie API", description = "Operations related to movies")
 public class MovieController {
 
+    private static final String GENRE_MATCH_ANY = "any";
+    private static final String GENRE_MATCH_ALL = "all";
+
     private final MovieRepository movieRepository;
     private final GenreRepository genreRepository;
+    private final RatingIndexService ratingIndexService;
+    private final TitleSearchIndex titleSearchIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final KeysetPagination pagination;
+    private final CatalogExportService catalogExportService;
+    private final GenreIndex genreIndex;
+    private final CatalogCache catalogCache;
+    private final QueryExecutor queryExecutor;
+    private final SimilarMovieIndex similarMovieIndex;
     private static final Logger logger = LoggerFactory.getLogger(MovieController.class);
 
-    public MovieController(MovieRepository movieRepository, GenreRepository genreRepository) {
+    public MovieController(MovieRepository movieRepository, GenreRepository genreRepository, RatingIndexService ratingIndexService,
+                           TitleSearchIndex titleSearchIndex, ApplicationEventPublisher eventPublisher,
+                           KeysetPagination pagination, CatalogExportService catalogExportService,
+                           GenreIndex genreIndex, CatalogCache catalogCache, QueryExecutor queryExecutor,
+                           SimilarMovieIndex similarMovieIndex) {
         this.movieRepository = movieRepository;
         this.genreRepository = genreRepository;
+        this.ratingIndexService = ratingIndexService;
+        this.titleSearchIndex = titleSearchIndex;
+        this.eventPublisher = eventPublisher;
+        this.pagination = pagination;
+        this.catalogExportService = catalogExportService;
+        this.genreIndex = genreIndex;
+        this.catalogCache = catalogCache;
+        this.queryExecutor = queryExecutor;
+        this.similarMovieIndex = similarMovieIndex;
     }
 
 
-    @Operation(summary = "Filter movies by genres", description = "Retrieve a list of all movies belonging to specific genres")
+    @Operation(summary = "Filter movies by genres", description = "Retrieve a list of all movies belonging to specific genres, " +
+            "one page at a time. The token of the next page is returned in the " + KeysetPagination.CONTINUATION_HEADER + " header")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful retrieval"),
+            @ApiResponse(responseCode = "400", description = "Invalid continuation token or page size"),
             @ApiResponse(responseCode = "404", description = "Movies not found")
     })
     @GetMapping("/by-genre")
     @Transactional
-    public ResponseEntity<ResponseDTO> getMoviesByGenre(@RequestParam String genre) {
-        logger.info("Request received to get movies for genre: {}", genre);
-        //Find movies by genre
-        List<Movie> movies = movieRepository.findByGenre(genre);
-        if (movies.isEmpty()) {
+    public ResponseEntity<ResponseDTO> getMoviesByGenre(
+            @RequestParam String genre,
+            @RequestParam(required = false) String continuationToken,
+            @RequestParam(required = false) Integer size) {
+        logger.debug("Request received to get movies for genre: {}", genre);
+        KeysetPagination.Page page = pagination.request(continuationToken, size);
+        if (page == null) {
+            logger.warn("Invalid page request - continuationToken: {}, size: {}", continuationToken, size);
+            return ResponseEntity.badRequest().build();
+        }
+        //Find the ids of one page of movies from the genre index, then load these movies
+        KeysetPage<ResponseDTO> moviePage = catalogCache.getGenreMoviePage(genre, page.after(), page.size(), () -> pagination.load(page,
+                GenreIndex.page(genreIndex.anyOf(List.of(genre)), page.after(), page.size() + 1), id -> id,
+                pageIds -> {
+                    // Convert the movies of the page to MovieDTOs
+                    ResponseDTO responseDTO = new ResponseDTO();
+                    responseDTO.setMovies(movieRepository.findAllByIdInOrder(pageIds).stream()
+                            .map(MovieRequest::from)
+                            .collect(Collectors.toList()));
+                    return responseDTO;
+                }));
+        if (moviePage.isEmpty()) {
             logger.warn("No movies found for genre: {}", genre);
             return ResponseEntity.noContent().build();
         }
-        logger.info("Found {} movies for genre: {}", movies.size(), genre);
-        // Convert the list of Movie entities to MovieDTOs
-        List<MovieRequest> movieDTOs = movies.stream()
-                .map(movie -> {
-                    MovieRequest movieDTO = new MovieRequest();
-                    movieDTO.setTitle(movie.getTitle());
-                    movieDTO.setGenres(movie.getGenres().stream()
-                            .map(Genre::getName)
-                            .collect(Collectors.toSet()));
-                    return movieDTO;
-                })
-                .collect(Collectors.toList());
-
-        // Create ResponseDTO and add message
-        ResponseDTO responseDTO = new ResponseDTO();
-        responseDTO.setMovies(movieDTOs);
-
-        return ResponseEntity.ok(responseDTO);
+        logger.debug("Found {} movies for genre: {}", moviePage.body().getMovies().size(), genre);
+        return pagination.respond(moviePage);
     }
 
-    @Operation(summary = "Filter movies by ranking", description = "Retrieve a list of all movies rated higher than the passed ranking")
+    @Operation(summary = "Filter movies by ranking", description = "Retrieve the movies rated higher than the passed ranking, " +
+            "lowest average first, one page at a time")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful retrieval"),
+            @ApiResponse(responseCode = "400", description = "Invalid page or page size"),
             @ApiResponse(responseCode = "404", description = "Movies not found")
     })
     @GetMapping("/by-min-ranking")
-    public ResponseEntity<ResponseDTO> getMoviesByMinRanking(@RequestParam double minRanking) {
-        logger.info("Request received to get movies with minimum ranking: {}", minRanking);
-        //Find movies by minimum ranking
-        List<Movie> movies = movieRepository.findByMinRanking(minRanking);
+    public ResponseEntity<ResponseDTO> getMoviesByMinRanking(
+            @RequestParam double minRanking,
+            @RequestParam(required = false, defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        logger.debug("Request received to get movies with minimum ranking: {}", minRanking);
+        Integer pageSize = pagination.pageSize(size);
+        if (pageSize == null || page < 0) {
+            logger.warn("Invalid page request - page: {}, size: {}", page, size);
+            return ResponseEntity.badRequest().build();
+        }
+        //Find one page of movies by minimum ranking using the in-memory average rating index, in its order
+        List<Movie> movies = movieRepository.findAllByIdInOrder(
+                ratingIndexService.findMovieIdsByMinRanking(minRanking, (long) page * pageSize, pageSize));
         if (movies.isEmpty()) {
             logger.warn("No movies found with minimum ranking: {}", minRanking);
             return ResponseEntity.noContent().build();
         }
-        logger.info("Found {} movies with minimum ranking: {}", movies.size(), minRanking);
+        logger.debug("Found {} movies with minimum ranking: {}", movies.size(), minRanking);
         //Return the movies and convert to DTOs
         List<MovieRequest> movieDTOs = movies.stream()
-                .map(movie -> {
-                    MovieRequest movieDTO = new MovieRequest();
-                    movieDTO.setTitle(movie.getTitle());
-                    movieDTO.setGenres(movie.getGenres().stream()
-                            .map(Genre::getName)
-                            .collect(Collectors.toSet()));
-                    return movieDTO;
-                })
+                .map(MovieRequest::from)
                 .collect(Collectors.toList());
 
         // Create ResponseDTO and add message
@@ -108,25 +156,27 @@ public class MovieController {
 
 
     @GetMapping("/by-max-ranking")
-    public ResponseEntity<ResponseDTO> getMoviesByMaxRanking(@RequestParam double maxRanking) {
-        logger.info("Request received to get movies with maximum ranking: {}", maxRanking);
-        //Find movies by maximum ranking
-        List<Movie> movies = movieRepository.findByMaxRanking(maxRanking);
+    public ResponseEntity<ResponseDTO> getMoviesByMaxRanking(
+            @RequestParam double maxRanking,
+            @RequestParam(required = false, defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        logger.debug("Request received to get movies with maximum ranking: {}", maxRanking);
+        Integer pageSize = pagination.pageSize(size);
+        if (pageSize == null || page < 0) {
+            logger.warn("Invalid page request - page: {}, size: {}", page, size);
+            return ResponseEntity.badRequest().build();
+        }
+        //Find one page of movies by maximum ranking using the in-memory average rating index, in its order
+        List<Movie> movies = movieRepository.findAllByIdInOrder(
+                ratingIndexService.findMovieIdsByMaxRanking(maxRanking, (long) page * pageSize, pageSize));
         if (movies.isEmpty()) {
             logger.warn("No movies found with maximum ranking: {}", maxRanking);
             return ResponseEntity.noContent().build();
         }
         //Return the movies and convert to DTOs
-        logger.info("Found {} movies with maximum ranking: {}", movies.size(), maxRanking);
+        logger.debug("Found {} movies with maximum ranking: {}", movies.size(), maxRanking);
         List<MovieRequest> movieDTOs = movies.stream()
-                .map(movie -> {
-                    MovieRequest movieDTO = new MovieRequest();
-                    movieDTO.setTitle(movie.getTitle());
-                    movieDTO.setGenres(movie.getGenres().stream()
-                            .map(Genre::getName)
-                            .collect(Collectors.toSet()));
-                    return movieDTO;
-                })
+                .map(MovieRequest::from)
                 .collect(Collectors.toList());
 
         ResponseDTO responseDTO = new ResponseDTO();
@@ -145,42 +195,59 @@ public class MovieController {
     public ResponseEntity<ResponseDTO> searchMovies(
             @RequestParam(required = false) String title,
             @RequestParam(required = false) List<String> genres,
-            @RequestParam(required = false) String keyword) {
-        logger.info("Search request received with parameters - title: {}, genres: {}, keyword: {}",
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false, defaultValue = GENRE_MATCH_ANY) String genreMatch,
+            @RequestParam(required = false, defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        logger.debug("Search request received with parameters - title: {}, genres: {}, keyword: {}",
                 title, genres, keyword);
-        //Create a results array and put all matching movies in it
-        List<Movie> results = new ArrayList<>();
+        Integer pageSize = pagination.pageSize(size);
+        boolean allGenres = GENRE_MATCH_ALL.equalsIgnoreCase(genreMatch);
+        if (pageSize == null || page < 0 || !(allGenres || GENRE_MATCH_ANY.equalsIgnoreCase(genreMatch))) {
+            logger.warn("Invalid search request - genreMatch: {}, page: {}, size: {}", genreMatch, page, size);
+            return ResponseEntity.badRequest().build();
+        }
+        boolean byTitle = title != null && !title.isBlank();
+        boolean byGenres = genres != null && !genres.isEmpty();
+        boolean byKeyword = keyword != null && !keyword.isBlank();
+        //The criteria are independent: with more than one, they are looked up at the same time
+        boolean fanOut = (byTitle ? 1 : 0) + (byGenres ? 1 : 0) + (byKeyword ? 1 : 0) > 1;
         //Find movies using title
-        if (title != null && !title.isBlank()) {
-            logger.info("Searching for movies with title: {}", title);
-            results.addAll(movieRepository.findByTitleIgnoreCase(title));
+        CompletableFuture<List<Long>> titleMatches = byTitle
+                ? lookup(fanOut, () -> titleSearchIndex.findExact(title)) : null;
+        //Find movies using genres: any of them (bitmap union) or all of them (bitmap intersection)
+        CompletableFuture<Roaring64Bitmap> genreMatches = byGenres
+                ? lookup(fanOut, () -> allGenres ? genreIndex.allOf(genres) : genreIndex.anyOf(genres)) : null;
+        //Find movies using a keyword in its name, the title index returns the most relevant first
+        CompletableFuture<List<Long>> keywordMatches = byKeyword
+                ? lookup(fanOut, () -> titleSearchIndex.search(keyword)) : null;
+
+        //Ids of the matching movies without duplicates, up to the end of the requested page
+        Set<Long> results = new LinkedHashSet<>();
+        long wanted = (long) (page + 1) * pageSize;
+        if (titleMatches != null) {
+            logger.debug("Searching for movies with title: {}", title);
+            addUntil(results, QueryExecutor.join(titleMatches), wanted);
         }
-        //Find movies using genres
-        if (genres != null && !genres.isEmpty()) {
-            logger.info("Searching for movies with genres: {}", genres);
-            results.addAll(movieRepository.findByGenres(new HashSet<>(genres)));
+        if (genreMatches != null) {
+            logger.debug("Searching for movies with {} genres: {}", allGenres ? GENRE_MATCH_ALL : GENRE_MATCH_ANY, genres);
+            LongIterator iterator = QueryExecutor.join(genreMatches).getLongIterator();
+            while (iterator.hasNext() && results.size() < wanted) {
+                results.add(iterator.next());
+            }
         }
-        //Find movies using a keyword in its name
-        if (keyword != null && !keyword.isBlank()) {
-            logger.info("Searching for movies containing keyword: {}", keyword);
-            results.addAll(movieRepository.findByTitleContainingIgnoreCase(keyword));
+        if (keywordMatches != null) {
+            logger.debug("Searching for movies containing keyword: {}", keyword);
+            addUntil(results, QueryExecutor.join(keywordMatches), wanted);
         }
 
-        //Remove duplicates form the result list
-        List<Movie> distinctResults = results.stream().distinct().collect(Collectors.toList());
-        //Convert the list into movieDTOs
-        List<MovieRequest> movieDTOs = distinctResults.stream()
-                .map(movie -> {
-                    MovieRequest movieDTO = new MovieRequest();
-                    movieDTO.setTitle(movie.getTitle());
-                    movieDTO.setGenres(movie.getGenres().stream()
-                            .map(Genre::getName)
-                            .collect(Collectors.toSet()));
-                    return movieDTO;
-                })
+        //Only the movies of the requested page are loaded
+        List<Long> pageIds = results.stream().skip((long) page * pageSize).toList();
+        List<MovieRequest> movieDTOs = movieRepository.findAllByIdInOrder(pageIds).stream()
+                .map(MovieRequest::from)
                 .collect(Collectors.toList());
 
-        logger.info("Found {} movies for the search results.", movieDTOs.size());
+        logger.debug("Found {} movies for the search results.", movieDTOs.size());
         // Prepare ResponseDTO
         ResponseDTO responseDTO = new ResponseDTO();
         responseDTO.setMovies(movieDTOs);
@@ -188,6 +255,11 @@ public class MovieController {
         return ResponseEntity.ok(responseDTO);
     }
 
+    //A single lookup runs on the request thread, there is nothing to wait for in parallel
+    private <T> CompletableFuture<T> lookup(boolean fanOut, Supplier<T> lookup) {
+        return fanOut ? queryExecutor.submit(lookup) : CompletableFuture.completedFuture(lookup.get());
+    }
+
     @Operation(summary = "Create a new movie", description = "Add a new movie")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful retrieval"),
@@ -195,7 +267,7 @@ public class MovieController {
     })
     @PostMapping("/create")
     public ResponseEntity<MovieRequest> createMovie(@RequestBody MovieRequest movieRequest) {
-        logger.info("Received request to create movie with title: {}", movieRequest.getTitle());
+        logger.debug("Received request to create movie with title: {}", movieRequest.getTitle());
         //Check if the movie title is not null and not empty
         if (movieRequest.getTitle() == null || movieRequest.getTitle().isBlank()) {
             logger.warn("Movie creation failed: Title is blank or null.");
@@ -203,10 +275,14 @@ public class MovieController {
         }
 
         // Find or create genres
-        logger.info("Finding or creating genres for the movie: {}", movieRequest.getGenres());
+        logger.debug("Finding or creating genres for the movie: {}", movieRequest.getGenres());
         Set<Genre> genres = movieRequest.getGenres().stream()
                 .map(genreName -> genreRepository.findByName(genreName)
-                        .orElseGet(() -> genreRepository.save(Genre.builder().name(genreName).build())))
+                        .orElseGet(() -> {
+                            Genre savedGenre = genreRepository.save(Genre.builder().name(genreName).build());
+                            eventPublisher.publishEvent(GenreChangedEvent.created(savedGenre.getId(), savedGenre.getName()));
+                            return savedGenre;
+                        }))
                 .collect(Collectors.toSet());
 
         //Create and save the movie
@@ -215,38 +291,51 @@ public class MovieController {
         movie.setGenres(genres);
 
         Movie savedMovie = movieRepository.save(movie);
+        eventPublisher.publishEvent(MovieChangedEvent.created(savedMovie.getId(), savedMovie.getTitle(),
+                savedMovie.getGenres().stream().map(Genre::getName).collect(Collectors.toSet())));
 
         //Return the movie using MovieDTO
-        MovieRequest responseDTO = new MovieRequest();
-        responseDTO.setTitle(savedMovie.getTitle());
-        responseDTO.setGenres(savedMovie.getGenres().stream()
-                .map(Genre::getName)
-                .collect(Collectors.toSet()));
-        logger.info("Movie created successfully with title: {}", savedMovie.getTitle());
+        MovieRequest responseDTO = MovieRequest.from(savedMovie);
+        logger.debug("Movie created successfully with title: {}", savedMovie.getTitle());
         return ResponseEntity.ok(responseDTO);
     }
 
-    @Operation(summary = "Get a list of movies available", description = "Retrieval a list of movie")
+    @Operation(summary = "Get a list of movies available", description = "Retrieval a list of movie, one page at a time. " +
+            "The token of the next page is returned in the " + KeysetPagination.CONTINUATION_HEADER + " header")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful retrieval"),
+            @ApiResponse(responseCode = "400", description = "Invalid continuation token or page size")
     })
     @GetMapping
-    public ResponseEntity<List<MovieRequest>> getAllMovies() {
-        logger.info("Request received to get movies");
-        //Return all movies
-        List<Movie> movies = movieRepository.findAll();
-
-        List<MovieRequest> movieRequests = movies.stream().map(movie -> {
-            MovieRequest dto = new MovieRequest();
-            dto.setTitle(movie.getTitle());
-            Set<String> genres = movie.getGenres().stream()
-                    .map(g -> g.getName())
-                    .collect(Collectors.toSet());
-            dto.setGenres(genres);
-            return dto;
-        }).collect(Collectors.toList());
-
-        return ResponseEntity.ok(movieRequests);
+    public ResponseEntity<List<MovieRequest>> getAllMovies(
+            @RequestParam(required = false) String continuationToken,
+            @RequestParam(required = false) Integer size) {
+        logger.debug("Request received to get movies");
+        KeysetPagination.Page page = pagination.request(continuationToken, size);
+        if (page == null) {
+            logger.warn("Invalid page request - continuationToken: {}, size: {}", continuationToken, size);
+            return ResponseEntity.badRequest().build();
+        }
+        //Find the ids of one page of movies, then load these movies with their genres
+        return pagination.respond(catalogCache.getMoviePage(page.after(), page.size(), () -> pagination.load(page,
+                movieRepository.findIdPage(page.after(), page.limit()), id -> id,
+                pageIds -> movieRepository.findAllByIdInOrder(pageIds).stream()
+                        .map(MovieRequest::from)
+                        .collect(Collectors.toList()))));
+    }
+
+    @Operation(summary = "Export the catalog", description = "Stream every movie as newline-delimited JSON, one movie per line")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successful export"),
+    })
+    @GetMapping(value = "/export", produces = CatalogExportService.NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportMovies() {
+        logger.debug("Request received to export the catalog");
+        //Movies are written while they are read from the database
+        StreamingResponseBody body = catalogExportService::exportMovies;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(CatalogExportService.NDJSON))
+                .body(body);
     }
 
     @Operation(summary = "Get a movie by ID", description = "Retrieval of movie with ID")
@@ -257,19 +346,45 @@ public class MovieController {
     })
     @GetMapping("/{id}")
     public ResponseEntity<MovieRequest> getMovieById(@PathVariable Long id) {
-        logger.info("Request received to get movie with id {}", id);
+        logger.debug("Request received to get movie with id {}", id);
         //Find the movie with matching id
-        return movieRepository.findById(id)
-                .map(movie -> {
-                    MovieRequest dto = new MovieRequest();
-                    dto.setTitle(movie.getTitle());
-                    Set<String> genres = movie.getGenres().stream()
-                            .map(g -> g.getName())
-                            .collect(Collectors.toSet());
-                    dto.setGenres(genres);
-                    return ResponseEntity.ok(dto);
-                })
-                .orElse(ResponseEntity.notFound().build());
+        MovieRequest movie = catalogCache.getMovie(id, () -> movieRepository.findById(id)
+                .map(MovieRequest::from)
+                .orElse(null));
+        return movie == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(movie);
+    }
+
+    @Operation(summary = "Get similar movies", description = "Retrieval of the movies most similar to the movie with ID, " +
+            "by genres and by the users who ranked them, most similar first")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successful retrieval"),
+            @ApiResponse(responseCode = "204", description = "No similar movie known yet"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit"),
+            @ApiResponse(responseCode = "404", description = "Movie not found")
+    })
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<ResponseDTO> getSimilarMovies(@PathVariable Long id, @RequestParam(required = false) Integer limit) {
+        logger.debug("Request received to get movies similar to movie with id {} with limit: {}", id, limit);
+        Integer size = similarMovieIndex.limit(limit);
+        if (size == null) {
+            logger.warn("Invalid similar movies limit: {}", limit);
+            return ResponseEntity.badRequest().build();
+        }
+        //Find the nearest movies in the similarity graph, a movie missing from it may not exist
+        List<Long> similarIds = similarMovieIndex.similar(id, size).orElse(null);
+        if (similarIds == null && !movieRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (similarIds == null || similarIds.isEmpty()) {
+            logger.warn("No similar movies found for movie with id {}", id);
+            return ResponseEntity.noContent().build();
+        }
+        ResponseDTO responseDTO = new ResponseDTO();
+        responseDTO.setMovies(movieRepository.findAllByIdInOrder(similarIds).stream()
+                .map(MovieRequest::from)
+                .collect(Collectors.toList()));
+        logger.debug("Found {} movies similar to movie with id {}", responseDTO.getMovies().size(), id);
+        return ResponseEntity.ok(responseDTO);
     }
 
     @Operation(summary = "Delete a movie", description = "Delete of movie with ID")
@@ -280,16 +395,27 @@ public class MovieController {
     })
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteMovie(@PathVariable Long id) {
-        logger.info("Request received to delete movie with id {}", id);
+        logger.debug("Request received to delete movie with id {}", id);
         //Find movie with matching id
-        if (movieRepository.existsById(id)) {
-            //Delete movie
-            movieRepository.deleteById(id);
-            return ResponseEntity.ok("Movie deleted successfully.");
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+        return movieRepository.findById(id)
+                .map(movie -> {
+                    Set<String> genres = movie.getGenres().stream()
+                            .map(Genre::getName)
+                            .collect(Collectors.toSet());
+                    //Delete movie
+                    movieRepository.deleteById(id);
+                    eventPublisher.publishEvent(MovieChangedEvent.deleted(id, movie.getTitle(), genres));
+                    return ResponseEntity.ok("Movie deleted successfully.");
+                })
+                .orElse(ResponseEntity.notFound().build());
     }
 
-
+    private static void addUntil(Set<Long> results, List<Long> movieIds, long wanted) {
+        for (Long movieId : movieIds) {
+            if (results.size() >= wanted) {
+                return;
+            }
+            results.add(movieId);
+        }
+    }
 }
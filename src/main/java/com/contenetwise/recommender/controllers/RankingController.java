@@ -1,29 +1,39 @@
 package com.contenetwise.recommender.controllers;
 
 
-import com.contenetwise.recommender.domain.Genre;
 import com.contenetwise.recommender.domain.Movie;
 import com.contenetwise.recommender.domain.Ranking;
-import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.dto.BatchRankingResponse;
 import com.contenetwise.recommender.dto.MovieRequest;
 import com.contenetwise.recommender.dto.RankingDTOResponse;
+import com.contenetwise.recommender.dto.RankingEventRequest;
 import com.contenetwise.recommender.dto.ResponseDTO;
 import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingBatchRepository;
 import com.contenetwise.recommender.repositories.RankingRepository;
 import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.QueryExecutor;
+import com.contenetwise.recommender.services.RankingChangedEvent;
+import com.contenetwise.recommender.services.RankingIngestService;
+import com.contenetwise.recommender.services.RankingWriteGate;
+import com.contenetwise.recommender.services.recommendation.RecommendationMetrics;
+import com.contenetwise.recommender.services.recommendation.RecommendationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
@@ -33,59 +43,102 @@ import java.util.stream.Collectors;
 public class RankingController {
 
     private final RankingRepository rankingRepository;
+    private final RankingBatchRepository rankingBatchRepository;
     private final UserRepository userRepository;
     private final MovieRepository movieRepository;
+    private final RecommendationService recommendationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RankingIngestService rankingIngestService;
+    private final KeysetPagination pagination;
+    private final RecommendationMetrics metrics;
+    private final QueryExecutor queryExecutor;
+    private final RankingWriteGate writeGate;
+    private final int maxBatchSize;
+    private final int defaultLimit;
+    private final int maxLimit;
     private static final Logger logger = LoggerFactory.getLogger(RankingController.class);
 
-    public RankingController(RankingRepository rankingRepository, UserRepository userRepository, MovieRepository movieRepository) {
+    public RankingController(RankingRepository rankingRepository, RankingBatchRepository rankingBatchRepository,
+                             UserRepository userRepository, MovieRepository movieRepository,
+                             RecommendationService recommendationService, ApplicationEventPublisher eventPublisher,
+                             RankingIngestService rankingIngestService, KeysetPagination pagination,
+                             RecommendationMetrics metrics, QueryExecutor queryExecutor, RankingWriteGate writeGate,
+                             @Value("${recommender.rankings.max-batch-size:10000}") int maxBatchSize,
+                             @Value("${recommender.recommendations.default-limit:20}") int defaultLimit,
+                             @Value("${recommender.recommendations.max-limit:100}") int maxLimit) {
         this.rankingRepository = rankingRepository;
+        this.rankingBatchRepository = rankingBatchRepository;
         this.userRepository = userRepository;
         this.movieRepository = movieRepository;
+        this.recommendationService = recommendationService;
+        this.eventPublisher = eventPublisher;
+        this.rankingIngestService = rankingIngestService;
+        this.pagination = pagination;
+        this.metrics = metrics;
+        this.queryExecutor = queryExecutor;
+        this.writeGate = writeGate;
+        this.maxBatchSize = maxBatchSize;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
     }
 
     @Operation(summary = "Get the rankings for user by ID", description = "Retrieve a user's ranking history. The API has to provide an optional query\n" +
-            "parameter to retrieve ratings only, views only or both")
+            "parameter to retrieve ratings only, views only or both. Rankings are returned one page at a time, " +
+            "the token of the next page is returned in the " + KeysetPagination.CONTINUATION_HEADER + " header")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful retrieval"),
+            @ApiResponse(responseCode = "400", description = "Invalid continuation token or page size"),
             @ApiResponse(responseCode = "404", description = "Genre not found")
     })
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<RankingDTOResponse>> getUserRankings(
             @PathVariable Long userId,
-            @RequestParam(required = false, defaultValue = "both") String type) {
-        //Find all rankings given by user
-        logger.info("Request received for user rankings with userId: {} and type: {}", userId, type);
-        List<Ranking> rankings;
+            @RequestParam(required = false, defaultValue = "both") String type,
+            @RequestParam(required = false) String continuationToken,
+            @RequestParam(required = false) Integer size) {
+        //Find one page of the rankings given by user
+        logger.debug("Request received for user rankings with userId: {} and type: {}", userId, type);
+        KeysetPagination.Page page = pagination.request(continuationToken, size);
+        if (page == null) {
+            logger.warn("Invalid page request - continuationToken: {}, size: {}", continuationToken, size);
+            return ResponseEntity.badRequest().build();
+        }
+        boolean rank1Only = false;
+        boolean rank2Only = false;
 
         switch (type.toLowerCase()) {
             //return only ranks
             case "rank1":
-                logger.info("Fetching rankings for userId: {} with rank type 'rank1'", userId);
-                rankings = rankingRepository.findByUserRank1Only(userId);
+                logger.debug("Fetching rankings for userId: {} with rank type 'rank1'", userId);
+                rank1Only = true;
                 break;
             //return only views
             case "rank2":
-                logger.info("Fetching rankings for userId: {} with rank type 'rank2'", userId);
-                rankings = rankingRepository.findByUserRank2Only(userId);
+                logger.debug("Fetching rankings for userId: {} with rank type 'rank2'", userId);
+                rank2Only = true;
                 break;
             //return all rankings
             case "both":
             default:
-                logger.info("Fetching both rank types for userId: {}", userId);
-                rankings = rankingRepository.findByUser(userId);
+                logger.debug("Fetching both rank types for userId: {}", userId);
                 break;
         }
+        List<Ranking> rankings = rankingRepository.findPageByUser(userId, rank1Only, rank2Only, page.after(), page.limit());
         //Check if the list is empty or not
         if (rankings.isEmpty()) {
             logger.warn("No rankings found for userId: {} with type: {}", userId, type);
             return ResponseEntity.noContent().build();
         }
-        logger.info("Found {} rankings for userId: {} with type: {}", rankings.size(), userId, type);
-        List<RankingDTOResponse> rankingDTOs = rankings.stream()
-                .map(RankingDTOResponse::new)
-                .toList();
-
-        return ResponseEntity.ok(rankingDTOs);
+        logger.debug("Found {} rankings for userId: {} with type: {}", Math.min(rankings.size(), page.size()), userId, type);
+        return pagination.respond(page, rankings, Ranking::getId, pageRankings -> {
+            //Load the movies of the page with their genres in one query
+            Map<Long, Movie> movies = movieRepository.findAllById(pageRankings.stream().map(ranking -> ranking.getMovie().getId()).toList())
+                    .stream()
+                    .collect(Collectors.toMap(Movie::getId, movie -> movie));
+            return pageRankings.stream()
+                    .map(ranking -> new RankingDTOResponse(ranking, movies.getOrDefault(ranking.getMovie().getId(), ranking.getMovie())))
+                    .toList();
+        });
     }
 
     @Operation(summary = "Update or create a new ranking", description = "Ingest a new event for a movie by updating the user's ranking")
@@ -100,138 +153,103 @@ public class RankingController {
             @RequestParam(required = false) Integer rank1,
             @RequestParam(required = false) Integer rank2) {
 
-        logger.info("Received request to create or update ranking for userId: {} and movieId: {}", userId, movieId);
+        logger.debug("Received request to create or update ranking for userId: {} and movieId: {}", userId, movieId);
         if ((rank1 == null && rank2 == null) || (rank1 != null && rank2 != null)) {
             logger.warn("Bad request for userId: {} and movieId: {}. Both rank1 and rank2 are either null or both are provided.", userId, movieId);
             return ResponseEntity.badRequest().body("You must provide either rank1 or rank2, but not both.");
         }
 
-        // Retrieve the user and movie
-        logger.info("Retrieving user with userId: {}", userId);
-        User user = userRepository.findById(userId).orElse(null);
-        logger.info("Retrieving movie with movieId: {}", movieId);
-        Movie movie = movieRepository.findById(movieId).orElse(null);
-
-        if (user == null) {
-            return ResponseEntity.badRequest().body("User not found.");
+        // Create the ranking or update the given rank in a single statement, and publish the change
+        // before a rebuild of the indexes can take its snapshot
+        RankingBatchRepository.Upsert upsert;
+        try {
+            upsert = writeGate.write(() -> {
+                RankingBatchRepository.Upsert written = rankingBatchRepository.upsert(userId, movieId, rank1, rank2);
+                eventPublisher.publishEvent(new RankingChangedEvent(userId, movieId, written.previousScore(), written.score(), written.created()));
+                return written;
+            });
+        } catch (DataIntegrityViolationException e) {
+            String error = missingReference(e);
+            if (error == null) {
+                throw e;
+            }
+            logger.warn("Bad request for userId: {} and movieId: {}. {}", userId, movieId, error);
+            return ResponseEntity.badRequest().body(error);
         }
-        if (movie == null) {
-            return ResponseEntity.badRequest().body("Movie not found.");
+        if (upsert.created()) {
+            logger.debug("New ranking created successfully for userId: {} and movieId: {}", userId, movieId);
+            return ResponseEntity.ok("Ranking created successfully.");
         }
+        logger.debug("Updated {} for userId: {} and movieId: {}", rank1 != null ? "rank1" : "rank2", userId, movieId);
+        return ResponseEntity.ok("Ranking updated successfully.");
+    }
 
-        // Check if the ranking exists
-        Ranking existingRanking = rankingRepository.findByUserAndMovie(user, movie).orElse(null);
+    //Response to a write violating the foreign key of the user or the movie, null for any other violation
+    private static String missingReference(DataIntegrityViolationException e) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        if (message.contains(Ranking.USER_FOREIGN_KEY)) {
+            return "User not found.";
+        }
+        if (message.contains(Ranking.MOVIE_FOREIGN_KEY)) {
+            return "Movie not found.";
+        }
+        return null;
+    }
 
-        if (existingRanking != null) {
-            // Update the existing ranking
-            if (rank1 != null) {
-                logger.info("Updated rank1 for userId: {} and movieId: {} to {}", userId, movieId, rank1);
-                existingRanking.setRank1(rank1);
-            }
-            if (rank2 != null) {
-                logger.info("Updated rank2 for userId: {} and movieId: {} to {}", userId, movieId, rank2);
-                existingRanking.setRank2(rank2);
-            }
-            rankingRepository.save(existingRanking);
-            return ResponseEntity.ok("Ranking updated successfully.");
-        } else {
-            // Create a new ranking
-            Ranking newRanking = new Ranking();
-            newRanking.setUser(user);
-            newRanking.setMovie(movie);
-            newRanking.setRank1(rank1);
-            newRanking.setRank2(rank2);
-            rankingRepository.save(newRanking);
-            logger.info("New ranking created successfully for userId: {} and movieId: {}", userId, movieId);
-            return ResponseEntity.ok("Ranking created successfully.");
+    @Operation(summary = "Ingest a batch of ranking events", description = "Create or update many rankings in one transaction. " +
+            "Every event provides either rank1 or rank2; the response reports the status of every event by its index")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the per-event status"),
+            @ApiResponse(responseCode = "400", description = "Empty batch or batch larger than the maximum size")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<BatchRankingResponse> ingestRankings(@RequestBody List<RankingEventRequest> events) {
+        logger.debug("Received batch of {} ranking events", events.size());
+        if (events.isEmpty() || events.size() > maxBatchSize) {
+            logger.warn("Rejected ranking batch of {} events, the size must be between 1 and {}", events.size(), maxBatchSize);
+            return ResponseEntity.badRequest().build();
         }
+        return ResponseEntity.ok(rankingIngestService.ingest(events));
     }
 
-    @Operation(summary = "Recommend a new movie to a user", description = "Retrieve a list of recommended movies similar to the user preference")
+    @Operation(summary = "Recommend a new movie to a user", description = "Retrieve a list of recommended movies similar to the user preference, " +
+            "best first. The optional limit parameter sets the number of movies returned")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful retrieval"),
+            @ApiResponse(responseCode = "400", description = "User not found or invalid limit"),
             @ApiResponse(responseCode = "404", description = "Genre not found")
     })
     @GetMapping("/user/{userId}/recommendations")
-    public ResponseEntity<ResponseDTO> recommendMovies(@PathVariable Long userId) {
-        logger.info("Received request for movie recommendations for userId: {}", userId);
-        // Get the user
-        User user = userRepository.findById(userId).orElse(null);
-        if (user == null) {
-            logger.warn("User with userId: {} not found. Returning bad request response.", userId);
+    public ResponseEntity<ResponseDTO> recommendMovies(@PathVariable Long userId, @RequestParam(required = false) Integer limit) {
+        logger.debug("Received request for movie recommendations for userId: {} with limit: {}", userId, limit);
+        int size = limit == null ? defaultLimit : limit;
+        if (size < 1 || size > maxLimit) {
+            logger.warn("Invalid recommendation limit: {}, it must be between 1 and {}", limit, maxLimit);
             return ResponseEntity.badRequest().build();
         }
-
-        // Get movies the user has rated highly (rank1 >= 4 or mapped viewing >= 4)
-        List<Ranking> highlyRatedRankings = rankingRepository.findByUser(userId)
-                .stream()
-                .filter(r -> isHighlyRated(r))
-                .collect(Collectors.toList());
-
-        if (highlyRatedRankings.isEmpty()) {
-            logger.info("No highly rated rankings found for userId: {}. No recommendations available.", userId);
-            return ResponseEntity.ok((ResponseDTO) Collections.emptyList()); // No recommendations if no high ratings
+        // Check the user and run the configured recommendation engine at the same time
+        CompletableFuture<Boolean> userExists = queryExecutor.submit(
+                () -> metrics.time(RecommendationMetrics.USER, () -> userRepository.existsById(userId)));
+        CompletableFuture<RecommendationService.Recommendations> recommendations = queryExecutor.submit(
+                () -> recommendationService.recommendations(userId));
+        if (!QueryExecutor.join(userExists)) {
+            logger.warn("User with userId: {} not found. Returning bad request response.", userId);
+            //Do not keep an entry for every unknown id that is asked for
+            recommendations.whenComplete((result, error) -> recommendationService.evict(userId));
+            return ResponseEntity.badRequest().build();
         }
+        //Only the movies returned are loaded
+        List<Movie> recommendedMovies = recommendationService.load(QueryExecutor.join(recommendations), size);
 
-        // Extract genres from highly rated movies
-        Set<String> preferredGenres = highlyRatedRankings.stream()
-                .flatMap(r -> r.getMovie().getGenres().stream()) // Extract Genre objects
-                .map(Genre::getName) // Convert Genre objects to names
-                .collect(Collectors.toSet());
-
-        // Find movies by genre
-        List<Movie> recommendedMovies = movieRepository.findByGenreNames(preferredGenres);
-
-        // Exclude movies the user rated
-        Set<Long> ratedMovieIds = rankingRepository.findByUser(userId).stream()
-                .map(r -> r.getMovie().getId())
-                .collect(Collectors.toSet());
-
-        List<Movie> filteredMovies = recommendedMovies.stream()
-                .filter(movie -> !ratedMovieIds.contains(movie.getId())) // Exclude already rated
-                .collect(Collectors.toList());
-
-        //Sort by movies by number of rates
-        logger.info("Sorting recommended movies based on popularity for userId: {}", userId);
-        filteredMovies.sort(Comparator.comparingInt(movie -> rankingRepository.countByMovie(movie)));
-
-        List<MovieRequest> movieRequests = filteredMovies.stream()
-                .map(movie -> {
-                    MovieRequest dto = new MovieRequest();
-                    dto.setTitle(movie.getTitle());
-                    dto.setGenres(movie.getGenres().stream()
-                            .map(Genre::getName)
-                            .collect(Collectors.toSet()));
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        List<MovieRequest> movieRequests = metrics.time(RecommendationMetrics.MAPPING, () -> recommendedMovies.stream()
+                .map(MovieRequest::from)
+                .collect(Collectors.toList()));
 
         //Return the answer to ResponseDTO
-        logger.info("Returning recommendations for userId: {} with {} movies", userId, movieRequests.size());
+        logger.debug("Returning recommendations for userId: {} with {} movies", userId, movieRequests.size());
         ResponseDTO response = new ResponseDTO();
         response.setMovies(movieRequests);
 
         return ResponseEntity.ok(response);
     }
-
-    private boolean isHighlyRated(Ranking ranking) {
-        if (ranking.getRank1() != null && ranking.getRank1() >= 4) {
-            return true;
-        }
-        if (ranking.getRank2() != null) {
-            int mappedRank2 = mapRank2ToFiveScale(ranking.getRank2());
-            return mappedRank2 >= 4;
-        }
-        return false;
-    }
-
-    //Maps View (0-100) to a 1-5 scale used for mappings
-    private int mapRank2ToFiveScale(int rank2) {
-        if (rank2 >= 81) return 5;
-        if (rank2 >= 61) return 4;
-        if (rank2 >= 41) return 3;
-        if (rank2 >= 21) return 2;
-        return 1;
-    }
 }
-
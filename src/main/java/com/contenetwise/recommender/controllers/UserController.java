@@ -25,9 +25,11 @@ import java.util.stream.Collectors;
 public class UserController {
 
     private final UserRepository userRepository;
+    private final KeysetPagination pagination;
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
-    public UserController(UserRepository userRepository) {
+    public UserController(UserRepository userRepository, KeysetPagination pagination) {
         this.userRepository = userRepository;
+        this.pagination = pagination;
     }
 
     @Operation(summary = "Create a new user", description = "Add a new user")
@@ -37,7 +39,7 @@ public class UserController {
     })
     @PostMapping("/create")
     public ResponseEntity<UserDTOResponse> createUser(@RequestBody UserDTOResponse user) {
-        logger.info("Create request received for user with username: {}", user.getUsername());
+        logger.debug("Create request received for user with username: {}", user.getUsername());
         //Check if username is correct and not empty
         if (user.getUsername() == null || user.getUsername().isBlank()) {
             logger.warn("Invalid genre name provided: '{}'", user.getUsername());
@@ -56,24 +58,31 @@ public class UserController {
         userToSave.setUsername(user.getUsername());
         User savedUser = userRepository.save(userToSave);
 
-        logger.info("User created successfully with username: {}", savedUser.getUsername());
+        logger.debug("User created successfully with username: {}", savedUser.getUsername());
         return ResponseEntity.ok(new UserDTOResponse(savedUser.getUsername()));
     }
 
-    @Operation(summary = "Get a list of all users", description = "Retrieve the list of users")
+    @Operation(summary = "Get a list of all users", description = "Retrieve the list of users, one page at a time. " +
+            "The token of the next page is returned in the " + KeysetPagination.CONTINUATION_HEADER + " header")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful retrieval of users"),
+            @ApiResponse(responseCode = "400", description = "Invalid continuation token or page size")
     })
     @GetMapping
-    public ResponseEntity<List<UserDTOResponse>> getAllUsers() {
-        logger.info("Get request called for all users");
-        //Return all users
-        List<UserDTOResponse> userDTOs = userRepository.findAll()
-                .stream()
+    public ResponseEntity<List<UserDTOResponse>> getAllUsers(
+            @RequestParam(required = false) String continuationToken,
+            @RequestParam(required = false) Integer size) {
+        logger.debug("Get request called for all users");
+        KeysetPagination.Page page = pagination.request(continuationToken, size);
+        if (page == null) {
+            logger.warn("Invalid page request - continuationToken: {}, size: {}", continuationToken, size);
+            return ResponseEntity.badRequest().build();
+        }
+        //Return one page of users
+        List<User> users = userRepository.findPage(page.after(), page.limit());
+        return pagination.respond(page, users, User::getId, pageUsers -> pageUsers.stream()
                 .map(user -> new UserDTOResponse(user.getUsername()))
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(userDTOs);
+                .collect(Collectors.toList()));
     }
 
     @Operation(summary = "Get a user by ID", description = "Retrieve user by specifying the ID")
@@ -83,11 +92,11 @@ public class UserController {
     })
     @GetMapping("/{id}")
     public ResponseEntity<UserDTOResponse> getUserById(@PathVariable Long id) {
-        logger.info("Request called for user with ID: {}", id);
+        logger.debug("Request called for user with ID: {}", id);
         //Check if user exists or not
         return userRepository.findById(id)
                 .map(user -> {
-                    logger.info("User found: {} with ID: {}", user.getUsername(), id);
+                    logger.debug("User found: {} with ID: {}", user.getUsername(), id);
                     return ResponseEntity.ok(new UserDTOResponse(user.getUsername()));
                 })
                 .orElseGet(() -> {
@@ -104,11 +113,11 @@ public class UserController {
     })
     @PutMapping("/{id}")
     public ResponseEntity<UserDTOResponse> updateUser(@PathVariable Long id, @RequestBody UserDTOResponse updatedUser) {
-        logger.info("Update request received for user with ID: {}", id);
+        logger.debug("Update request received for user with ID: {}", id);
         //Check if user exists or not
         return userRepository.findById(id)
                 .map(existingUser -> {
-                    logger.info("User found with ID: {}. Updating username from '{}' to '{}'",
+                    logger.debug("User found with ID: {}. Updating username from '{}' to '{}'",
                             id, existingUser.getUsername(), updatedUser.getUsername());
 
                     existingUser.setUsername(updatedUser.getUsername());
@@ -116,7 +125,7 @@ public class UserController {
 
                     User savedUser = userRepository.save(existingUser);
 
-                    logger.info("User updated successfully with ID: {}", id);
+                    logger.debug("User updated successfully with ID: {}", id);
                     return ResponseEntity.ok(new UserDTOResponse(savedUser.getUsername()));
                 })
                 .orElseGet(() -> {
@@ -132,7 +141,7 @@ public class UserController {
     })
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteUser(@PathVariable Long id) {
-        logger.info("Delete request received for user with ID: {}", id);
+        logger.debug("Delete request received for user with ID: {}", id);
         //Check if user exists or not
         if (!userRepository.existsById(id)) {
             logger.warn("User with ID {} not found. Deletion aborted.", id);
@@ -140,7 +149,7 @@ public class UserController {
         }
         //Delete the user
         userRepository.deleteById(id);
-        logger.info("User with ID {} deleted successfully.", id);
+        logger.debug("User with ID {} deleted successfully.", id);
         return ResponseEntity.ok("User deleted successfully.");
     }
 }
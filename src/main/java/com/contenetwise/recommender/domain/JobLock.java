@@ -0,0 +1,28 @@
+package com.contenetwise.recommender.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Lease of a scheduled job shared by every instance. The instance named by
+ * {@code lockedBy} runs the job until {@code lockedUntil}; the lease is free again
+ * after it, so a crashed holder does not block the job for good.
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@Table(name = "job_locks")
+public class JobLock {
+
+    @Id
+    private String name;
+
+    private Instant lockedUntil;
+
+    private String lockedBy;
+}
@@ -13,23 +13,38 @@ import lombok.*;
 @Builder
 @Getter
 @Setter
-@Table(name = "ranking")
+@Table(name = "ranking", uniqueConstraints = @UniqueConstraint(name = Ranking.USER_MOVIE_KEY, columnNames = {"user_id", "movie_id"}))
 public class Ranking {
 
+    //Constraint names, to tell which reference is missing when a write fails
+    public static final String USER_MOVIE_KEY = "uk_ranking_user_movie";
+    public static final String USER_FOREIGN_KEY = "fk_ranking_user";
+    public static final String MOVIE_FOREIGN_KEY = "fk_ranking_movie";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(name = USER_FOREIGN_KEY))
     @JsonIgnore
     @JsonBackReference
     private User user;
 
     @ManyToOne
-    @JoinColumn(name = "movie_id", nullable = false)
+    @JoinColumn(name = "movie_id", nullable = false, foreignKey = @ForeignKey(name = MOVIE_FOREIGN_KEY))
     private Movie movie;
 
     private Integer rank1;
     private Integer rank2;
+
+    //Normalized 1-5 score, kept in sync with rank1 and rank2 on every write
+    @Setter(AccessLevel.NONE)
+    private Integer score;
+
+    @PrePersist
+    @PreUpdate
+    void normalizeScore() {
+        score = RankingScale.score(rank1, rank2);
+    }
 }
\ No newline at end of file
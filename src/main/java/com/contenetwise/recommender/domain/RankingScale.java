@@ -0,0 +1,48 @@
+package com.contenetwise.recommender.domain;
+
+/**
+ * Normalizes rankings to the 1..5 scale. A rating (rank1) is used as is, a view
+ * percentage (rank2) is mapped to five buckets of 20%. When both are present the
+ * rating wins. The score is persisted with every ranking for the aggregation queries.
+ */
+public final class RankingScale {
+
+    public static final int HIGHLY_RATED_THRESHOLD = 4;
+
+    private RankingScale() {
+    }
+
+    //Maps View (0-100) to a 1-5 scale used for mappings
+    public static int mapRank2ToFiveScale(int rank2) {
+        if (rank2 >= 81) return 5;
+        if (rank2 >= 61) return 4;
+        if (rank2 >= 41) return 3;
+        if (rank2 >= 21) return 2;
+        return 1;
+    }
+
+    //Normalized 1-5 score, or null if the ranking holds neither a rating nor a view
+    public static Integer score(Integer rank1, Integer rank2) {
+        if (rank1 != null) {
+            return rank1;
+        }
+        if (rank2 != null) {
+            return mapRank2ToFiveScale(rank2);
+        }
+        return null;
+    }
+
+    public static Integer score(Ranking ranking) {
+        return score(ranking.getRank1(), ranking.getRank2());
+    }
+
+    public static boolean isHighlyRated(Ranking ranking) {
+        if (ranking.getRank1() != null && ranking.getRank1() >= HIGHLY_RATED_THRESHOLD) {
+            return true;
+        }
+        if (ranking.getRank2() != null) {
+            return mapRank2ToFiveScale(ranking.getRank2()) >= HIGHLY_RATED_THRESHOLD;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,32 @@
+package com.contenetwise.recommender.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * One run of the offline recommendation job. Its generation numbers the rows it wrote
+ * to {@code user_recommendations}; they are served once the run is completed. Users
+ * with an id above {@code maxUserId} were created after the run started.
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@Table(name = "recommendation_runs")
+public class RecommendationRun {
+
+    @Id
+    private Long generation;
+
+    private Instant startedAt;
+
+    private Instant completedAt;
+
+    private Long maxUserId;
+
+    private Long users;
+}
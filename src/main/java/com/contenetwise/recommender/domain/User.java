@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -24,6 +25,11 @@ public class User {
 
     private String username;
 
+    //Last change of the user's rankings, written along with them in plain SQL only
+    @Column(insertable = false, updatable = false)
+    @JsonIgnore
+    private Instant rankingsChangedAt;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore
     private Set<Ranking> rankings = new HashSet<>();
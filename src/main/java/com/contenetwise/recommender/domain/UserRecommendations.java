@@ -0,0 +1,45 @@
+package com.contenetwise.recommender.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.Length;
+
+import java.io.Serializable;
+
+/**
+ * Top-N recommendations of a user computed by a run of the offline job: the movie ids,
+ * best first, and the genres the user rated highly, both as JSON arrays. Rows are
+ * written in bulk and read by primary key.
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@IdClass(UserRecommendations.Key.class)
+@Table(name = "user_recommendations")
+public class UserRecommendations {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    private Long generation;
+
+    @Column(name = "movie_ids", length = Length.LONG32)
+    private String movieIds;
+
+    @Column(name = "preferred_genres", length = Length.LONG32)
+    private String preferredGenres;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        private Long userId;
+        private Long generation;
+    }
+}
@@ -0,0 +1,26 @@
+package com.contenetwise.recommender.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class BatchRankingResponse {
+    private int created;
+    private int updated;
+    private int rejected;
+    private List<EventResult> results;
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    public static class EventResult {
+        private int index;
+        private String status;
+        private String message;
+    }
+}
@@ -0,0 +1,17 @@
+package com.contenetwise.recommender.dto;
+
+/**
+ * One page of a listing ordered by id: the response body for the ids in
+ * (after, lastId], and whether more rows follow. lastId is null for an empty page.
+ */
+public record KeysetPage<T>(T body, long after, Long lastId, boolean hasMore) {
+
+    public boolean isEmpty() {
+        return lastId == null;
+    }
+
+    //Whether creating or deleting the row with this id changes the page
+    public boolean covers(long id) {
+        return id > after && (!hasMore || id <= lastId);
+    }
+}
@@ -1,13 +1,26 @@
 package com.contenetwise.recommender.dto;
 
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Getter
 @Setter
 public class MovieRequest {
     private String title;
     private Set<String> genres;
-}
\ No newline at end of file
+
+    //Map a movie loaded with its genres
+    public static MovieRequest from(Movie movie) {
+        MovieRequest dto = new MovieRequest();
+        dto.setTitle(movie.getTitle());
+        dto.setGenres(movie.getGenres().stream()
+                .map(Genre::getName)
+                .collect(Collectors.toSet()));
+        return dto;
+    }
+}
@@ -1,11 +1,10 @@
 package com.contenetwise.recommender.dto;
 
+import com.contenetwise.recommender.domain.Movie;
 import com.contenetwise.recommender.domain.Ranking;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.stream.Collectors;
-
 @Getter
 @Setter
 public class RankingDTOResponse {
@@ -14,14 +13,12 @@ public class RankingDTOResponse {
     private Integer rank2;
 
     public RankingDTOResponse(Ranking ranking) {
-        this.movie = new MovieRequest();
-        this.movie.setTitle(ranking.getMovie().getTitle());
-        this.movie.setGenres(
-                ranking.getMovie().getGenres()
-                        .stream()
-                        .map(genre -> genre.getName())
-                        .collect(Collectors.toSet())
-        );
+        this(ranking, ranking.getMovie());
+    }
+
+    //Ranking with its movie loaded separately, with its genres
+    public RankingDTOResponse(Ranking ranking, Movie movie) {
+        this.movie = MovieRequest.from(movie);
         this.rank1 = ranking.getRank1();
         this.rank2 = ranking.getRank2();
     }
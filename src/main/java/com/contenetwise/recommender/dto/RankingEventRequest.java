@@ -0,0 +1,17 @@
+package com.contenetwise.recommender.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RankingEventRequest {
+    private Long userId;
+    private Long movieId;
+    private Integer rank1;
+    private Integer rank2;
+}
@@ -1,10 +1,18 @@
 package com.contenetwise.recommender.repositories;
 
 import com.contenetwise.recommender.domain.Genre;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface GenreRepository extends JpaRepository<Genre, Long> {
     Optional<Genre> findByName(String name);
+
+    // Page of genres ordered by id, starting after the given id
+    @Query("SELECT g FROM Genre g WHERE g.id > :after ORDER BY g.id")
+    List<Genre> findPage(@Param("after") long after, Limit limit);
 }
@@ -0,0 +1,47 @@
+package com.contenetwise.recommender.repositories;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Job leases in {@code job_locks}. Each one is taken, extended or released by a single
+ * statement, so two instances never hold the same lease.
+ */
+@Repository
+public class JobLockRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobLockRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Take the lease of the job until the given instant, false when another instance holds it
+    public boolean tryLock(String name, String owner, Instant until) {
+        if (jdbcTemplate.update("UPDATE job_locks SET locked_until = ?, locked_by = ? WHERE name = ? AND locked_until <= ?",
+                Timestamp.from(until), owner, name, Timestamp.from(Instant.now())) == 1) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO job_locks (name, locked_until, locked_by) VALUES (?, ?, ?)", name, Timestamp.from(until), owner);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    // Keep the lease until the given instant, false when it expired and may have been taken meanwhile
+    public boolean extend(String name, String owner, Instant until) {
+        return jdbcTemplate.update("UPDATE job_locks SET locked_until = ? WHERE name = ? AND locked_by = ? AND locked_until > ?",
+                Timestamp.from(until), name, owner, Timestamp.from(Instant.now())) == 1;
+    }
+
+    public void unlock(String name, String owner) {
+        jdbcTemplate.update("UPDATE job_locks SET locked_until = ? WHERE name = ? AND locked_by = ?",
+                Timestamp.from(Instant.now()), name, owner);
+    }
+}
@@ -2,65 +2,58 @@ package com.contenetwise.recommender.repositories;
 
 import com.contenetwise.recommender.domain.Genre;
 import com.contenetwise.recommender.domain.Movie;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Every finder returning movies to the API loads their genres in the same query,
+ * so mapping them to {@link com.contenetwise.recommender.dto.MovieRequest} does not
+ * issue one more statement per movie.
+ */
 public interface MovieRepository extends JpaRepository<Movie, Long> {
+    //Find all movies with their genres
+    @Override
+    @EntityGraph(attributePaths = "genres")
+    List<Movie> findAll();
+
+    //Find a movie with its genres
+    @Override
+    @EntityGraph(attributePaths = "genres")
+    Optional<Movie> findById(Long id);
+
+    //Find movies by ids with their genres
+    @Override
+    @EntityGraph(attributePaths = "genres")
+    List<Movie> findAllById(Iterable<Long> ids);
+
     //Find movie by genre
+    @EntityGraph(attributePaths = "genres")
     @Query("SELECT m FROM Movie m JOIN m.genres g WHERE g.name = :genreName")
     List<Movie> findByGenre(@Param("genreName") String genreName);
 
 
-    //Find movies rated higher a minimum number
-    @Query("""
-    SELECT m FROM Movie m\s
-    JOIN m.rankings r\s
-    WHERE r.rank1 IS NOT NULL OR r.rank2 IS NOT NULL
-    GROUP BY m\s
-    HAVING AVG(
-        CASE\s
-            WHEN r.rank1 IS NOT NULL THEN r.rank1\s
-            WHEN r.rank2 IS NOT NULL THEN\s
-                CASE\s
-                    WHEN r.rank2 BETWEEN 0 AND 20 THEN 1
-                    WHEN r.rank2 BETWEEN 21 AND 40 THEN 2
-                    WHEN r.rank2 BETWEEN 41 AND 60 THEN 3
-                    WHEN r.rank2 BETWEEN 61 AND 80 THEN 4
-                    WHEN r.rank2 BETWEEN 81 AND 100 THEN 5
-                    ELSE NULL
-                END
-            ELSE NULL
-        END
-    ) >= :minRanking
-   \s""")
+    //Find movies rated higher a minimum number, on the normalized score of their rankings
+    @Query("SELECT m FROM Movie m JOIN m.rankings r WHERE r.score IS NOT NULL GROUP BY m HAVING AVG(r.score) >= :minRanking")
     List<Movie> findByMinRanking(@Param("minRanking") double minRanking);
 
-    //Find movies rated lower a maximum number
-    @Query("""
-    SELECT m FROM Movie m
-    JOIN m.rankings r
-    WHERE r.rank1 IS NOT NULL OR r.rank2 IS NOT NULL
-    GROUP BY m
-    HAVING AVG(
-        CASE
-            WHEN r.rank1 IS NOT NULL THEN r.rank1
-            WHEN r.rank2 IS NOT NULL THEN
-                CASE
-                    WHEN r.rank2 BETWEEN 0 AND 20 THEN 1
-                    WHEN r.rank2 BETWEEN 21 AND 40 THEN 2
-                    WHEN r.rank2 BETWEEN 41 AND 60 THEN 3
-                    WHEN r.rank2 BETWEEN 61 AND 80 THEN 4
-                    WHEN r.rank2 BETWEEN 81 AND 100 THEN 5
-                    ELSE NULL
-                END
-            ELSE NULL
-        END
-    ) <= :maxRanking
-""")
+    //Find movies rated lower a maximum number, on the normalized score of their rankings
+    @Query("SELECT m FROM Movie m JOIN m.rankings r WHERE r.score IS NOT NULL GROUP BY m HAVING AVG(r.score) <= :maxRanking")
     List<Movie> findByMaxRanking(@Param("maxRanking") double maxRanking);
 
 
@@ -70,9 +63,11 @@ public interface MovieRepository extends JpaRepository<Movie, Long> {
     List<Movie> findByGenreNames(@Param("genreNames") Set<String> genreNames);
 
     //Find movies with title name
+    @EntityGraph(attributePaths = "genres")
     List<Movie> findByTitleIgnoreCase(String title);
 
     // Match movies by genres
+    @EntityGraph(attributePaths = "genres")
     @Query("SELECT DISTINCT m FROM Movie m JOIN m.genres g WHERE g.name IN :genres")
     List<Movie> findByGenres(@Param("genres") Set<String> genres);
 
@@ -80,4 +75,38 @@ public interface MovieRepository extends JpaRepository<Movie, Long> {
     @Query("SELECT m FROM Movie m WHERE LOWER(m.title) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Movie> findByTitleContainingIgnoreCase(@Param("keyword") String keyword);
 
+    // Ids among the given ones that belong to existing movies
+    @Query("SELECT m.id FROM Movie m WHERE m.id IN :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Page of movie ids ordered by id, starting after the given id. Loading the movies with
+    // their genres is a second query: a collection fetch cannot be limited in the database
+    @Query("SELECT m.id FROM Movie m WHERE m.id > :after ORDER BY m.id")
+    List<Long> findIdPage(@Param("after") long after, Limit limit);
+
+    // Id and title of every movie, for the in-memory title index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT m.id, m.title FROM Movie m")
+    Stream<Object[]> streamTitles();
+
+    // Stream (genreName, movieId) of every genre of every movie, for the in-memory genre index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT g.name, m.id FROM Movie m JOIN m.genres g")
+    Stream<Object[]> streamGenreMemberships();
+
+    // Stream (movieId, title, genreName) of the whole catalog ordered by movie, one row per genre.
+    // The fetch size lets the PostgreSQL driver read through a cursor instead of buffering every row
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT m.id, m.title, g.name FROM Movie m LEFT JOIN m.genres g ORDER BY m.id")
+    Stream<Object[]> streamCatalog();
+
+    // Movies with the given ids, in the order of the ids
+    default List<Movie> findAllByIdInOrder(List<Long> ids) {
+        Map<Long, Movie> moviesById = findAllById(ids).stream()
+                .collect(Collectors.toMap(Movie::getId, Function.identity()));
+        return ids.stream()
+                .map(moviesById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
 }
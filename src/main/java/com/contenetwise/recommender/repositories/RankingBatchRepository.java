@@ -0,0 +1,207 @@
+package com.contenetwise.recommender.repositories;
+
+import com.contenetwise.recommender.domain.RankingScale;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranking writes in plain SQL: rankings are upserted by user and movie, one or a whole
+ * batch at a time, in the caller's transaction when there is one. Only the ranks given
+ * are set, and the normalized score is stored along with them. Every write also stores
+ * the time of the change on the user, {@code users.rankings_changed_at}.
+ */
+@Repository
+public class RankingBatchRepository {
+
+    //On PostgreSQL, one statement for the whole batch. The stored rankings of the pairs are locked first, so
+    //their scores are the ones replaced. A rating already present keeps deciding the score when only a view
+    //is given. A pair created by another transaction after the lock is not updated nor returned, it is
+    //written again by the next statement
+    private static final String UPSERT = """
+            WITH input AS (
+                SELECT * FROM unnest(CAST(? AS BIGINT[]), CAST(? AS BIGINT[]), CAST(? AS INTEGER[]), CAST(? AS INTEGER[]),
+                                     CAST(? AS INTEGER[])) AS v(user_id, movie_id, rank1, rank2, score)
+            ), previous AS (
+                SELECT r.user_id, r.movie_id, r.score FROM ranking r
+                JOIN input v ON v.user_id = r.user_id AND v.movie_id = r.movie_id
+                ORDER BY r.user_id, r.movie_id
+                FOR UPDATE OF r
+            ), upserted AS (
+                INSERT INTO ranking AS r (user_id, movie_id, rank1, rank2, score)
+                SELECT user_id, movie_id, rank1, rank2, score FROM input ORDER BY user_id, movie_id
+                ON CONFLICT (user_id, movie_id) DO UPDATE SET
+                    rank1 = COALESCE(EXCLUDED.rank1, r.rank1),
+                    rank2 = COALESCE(EXCLUDED.rank2, r.rank2),
+                    score = CASE WHEN EXCLUDED.rank1 IS NULL AND r.rank1 IS NOT NULL THEN r.score ELSE EXCLUDED.score END
+                WHERE EXISTS (SELECT 1 FROM previous p WHERE p.user_id = r.user_id AND p.movie_id = r.movie_id)
+                RETURNING r.user_id, r.movie_id, r.score
+            ), changed AS (
+                UPDATE users SET rankings_changed_at = ? WHERE id IN (SELECT user_id FROM input)
+            )
+            SELECT u.user_id, u.movie_id, p.score, u.score, p.user_id IS NULL
+            FROM upserted u LEFT JOIN previous p ON p.user_id = u.user_id AND p.movie_id = u.movie_id
+            """;
+
+    //Elsewhere (H2): one merge per pair, reading the ranking it replaced from the old rows of the merge
+    private static final String MERGE = """
+            SELECT rank1, score FROM OLD TABLE (
+                MERGE INTO ranking r
+                USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS INTEGER)))
+                    AS v(user_id, movie_id, rank1, rank2, score)
+                ON r.user_id = v.user_id AND r.movie_id = v.movie_id
+                WHEN MATCHED THEN UPDATE SET
+                    rank1 = COALESCE(v.rank1, r.rank1),
+                    rank2 = COALESCE(v.rank2, r.rank2),
+                    score = CASE WHEN v.rank1 IS NULL AND r.rank1 IS NOT NULL THEN r.score ELSE v.score END
+                WHEN NOT MATCHED THEN INSERT (user_id, movie_id, rank1, rank2, score)
+                    VALUES (v.user_id, v.movie_id, v.rank1, v.rank2, v.score)
+            )
+            """;
+    private static final String MARK_CHANGED = "UPDATE users SET rankings_changed_at = ? WHERE id = ?";
+
+    //Statements run for a batch before giving up on pairs created again and again by other transactions
+    private static final int ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private volatile Boolean postgres;
+
+    public RankingBatchRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Create the ranking of the pair or set the given rank on it. A missing user or movie fails
+    // on its foreign key, Ranking.USER_FOREIGN_KEY or Ranking.MOVIE_FOREIGN_KEY
+    public Upsert upsert(long userId, long movieId, Integer rank1, Integer rank2) {
+        return upsertAll(List.of(new RankingRow(userId, movieId, rank1, rank2))).get(0);
+    }
+
+    // Upsert the rankings of distinct pairs, the results in the order of the rows
+    public List<Upsert> upsertAll(List<RankingRow> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        Map<RankingRow, Upsert> upserts = isPostgres() ? upsertPostgres(rows) : transactionTemplate.execute(status -> merge(rows));
+        return rows.stream().map(upserts::get).toList();
+    }
+
+    private Map<RankingRow, Upsert> upsertPostgres(List<RankingRow> rows) {
+        Map<Pair, RankingRow> pending = new HashMap<>();
+        rows.forEach(row -> pending.put(new Pair(row.userId(), row.movieId()), row));
+        Map<RankingRow, Upsert> upserts = new HashMap<>();
+        for (int attempt = 0; attempt < ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<RankingRow> batch = List.copyOf(pending.values());
+            jdbcTemplate.query(connection -> upsertStatement(connection, batch), resultSet -> {
+                RankingRow row = pending.remove(new Pair(resultSet.getLong(1), resultSet.getLong(2)));
+                upserts.put(row, new Upsert(resultSet.getObject(3, Integer.class), resultSet.getObject(4, Integer.class),
+                        resultSet.getBoolean(5)));
+            });
+        }
+        if (!pending.isEmpty()) {
+            throw new IllegalStateException("Rankings of " + pending.size() + " pairs kept being created concurrently");
+        }
+        return upserts;
+    }
+
+    private static PreparedStatement upsertStatement(Connection connection, List<RankingRow> rows) throws SQLException {
+        int size = rows.size();
+        Long[] userIds = new Long[size];
+        Long[] movieIds = new Long[size];
+        Integer[] rank1 = new Integer[size];
+        Integer[] rank2 = new Integer[size];
+        Integer[] scores = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            RankingRow row = rows.get(i);
+            userIds[i] = row.userId();
+            movieIds[i] = row.movieId();
+            rank1[i] = row.rank1();
+            rank2[i] = row.rank2();
+            scores[i] = RankingScale.score(row.rank1(), row.rank2());
+        }
+        PreparedStatement statement = connection.prepareStatement(UPSERT);
+        statement.setArray(1, connection.createArrayOf("bigint", userIds));
+        statement.setArray(2, connection.createArrayOf("bigint", movieIds));
+        statement.setArray(3, connection.createArrayOf("integer", rank1));
+        statement.setArray(4, connection.createArrayOf("integer", rank2));
+        statement.setArray(5, connection.createArrayOf("integer", scores));
+        statement.setTimestamp(6, Timestamp.from(Instant.now()));
+        return statement;
+    }
+
+    //Rows in user and movie order, so concurrent batches lock them in the same order
+    private Map<RankingRow, Upsert> merge(List<RankingRow> rows) {
+        Map<RankingRow, Upsert> upserts = new HashMap<>();
+        rows.stream()
+                .sorted(Comparator.comparing(RankingRow::userId).thenComparing(RankingRow::movieId))
+                .forEach(row -> upserts.put(row, merge(row)));
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(MARK_CHANGED, rows.stream()
+                .map(RankingRow::userId)
+                .distinct()
+                .sorted()
+                .map(userId -> new Object[]{now, userId})
+                .toList());
+        return upserts;
+    }
+
+    private Upsert merge(RankingRow row) {
+        Integer score = RankingScale.score(row.rank1(), row.rank2());
+        List<Integer[]> replaced = null;
+        for (int attempt = 1; replaced == null; attempt++) {
+            try {
+                replaced = jdbcTemplate.query(MERGE, (resultSet, rowNum) -> new Integer[]{
+                                resultSet.getObject(1, Integer.class), resultSet.getObject(2, Integer.class)},
+                        row.userId(), row.movieId(), row.rank1(), row.rank2(), score);
+            } catch (DuplicateKeyException e) {
+                //Created by another transaction during the merge, the next one updates it
+                if (attempt == ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        if (replaced.isEmpty()) {
+            return new Upsert(null, score, true);
+        }
+        Integer previousScore = replaced.get(0)[1];
+        return new Upsert(previousScore, row.rank1() == null && replaced.get(0)[0] != null ? previousScore : score, false);
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres"));
+        }
+        return postgres;
+    }
+
+    private record Pair(long userId, long movieId) {
+    }
+
+    /**
+     * Ranks to set on the ranking of a user and a movie, a null rank is left as stored.
+     */
+    public record RankingRow(Long userId, Long movieId, Integer rank1, Integer rank2) {
+    }
+
+    /**
+     * Normalized score of the ranking before and after an upsert, and whether the
+     * ranking was created.
+     */
+    public record Upsert(Integer previousScore, Integer score, boolean created) {
+    }
+}
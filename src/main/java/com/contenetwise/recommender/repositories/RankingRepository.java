@@ -3,30 +3,83 @@ package com.contenetwise.recommender.repositories;
 import com.contenetwise.recommender.domain.Movie;
 import com.contenetwise.recommender.domain.Ranking;
 import com.contenetwise.recommender.domain.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+/**
+ * The rankings of a user are loaded with their movie, and with its genres when the
+ * caller reads them.
+ */
 public interface RankingRepository extends JpaRepository<Ranking, Long> {
 
-    // Retrieve all rankings for a user
+    // Retrieve all rankings for a user, the genres of the user come from the profile store
+    @EntityGraph(attributePaths = "movie")
     @Query("SELECT r FROM Ranking r WHERE r.user.id = :userId")
     List<Ranking> findByUser(@Param("userId") Long userId);
 
+    // Retrieve all rankings of the given users
+    @EntityGraph(attributePaths = {"movie", "movie.genres"})
+    @Query("SELECT r FROM Ranking r WHERE r.user.id IN :userIds")
+    List<Ranking> findByUserIn(@Param("userIds") Collection<Long> userIds);
+
+    // (score, genreId) of every genre of every movie the user ranked, to rebuild their genre affinities
+    @Query("SELECT r.score, g.id FROM Ranking r JOIN r.movie m JOIN m.genres g WHERE r.user.id = :userId AND r.score IS NOT NULL")
+    List<Object[]> findGenreScoresByUser(@Param("userId") Long userId);
+
     // Retrieve only rank1 for a user
+    @EntityGraph(attributePaths = {"movie", "movie.genres"})
     @Query("SELECT r FROM Ranking r WHERE r.user.id = :userId AND r.rank1 IS NOT NULL")
     List<Ranking> findByUserRank1Only(@Param("userId") Long userId);
 
     // Retrieve only rank2 for a user
+    @EntityGraph(attributePaths = {"movie", "movie.genres"})
     @Query("SELECT r FROM Ranking r WHERE r.user.id = :userId AND r.rank2 IS NOT NULL")
     List<Ranking> findByUserRank2Only(@Param("userId") Long userId);
 
+    // Page of the rankings of a user ordered by id, starting after the given id,
+    // optionally restricted to rankings having a rank1 or a rank2
+    @EntityGraph(attributePaths = "movie")
+    @Query("""
+    SELECT r FROM Ranking r
+    WHERE r.user.id = :userId AND r.id > :after
+    AND (:rank1Only = false OR r.rank1 IS NOT NULL)
+    AND (:rank2Only = false OR r.rank2 IS NOT NULL)
+    ORDER BY r.id
+    """)
+    List<Ranking> findPageByUser(@Param("userId") Long userId, @Param("rank1Only") boolean rank1Only,
+                                 @Param("rank2Only") boolean rank2Only, @Param("after") long after, Limit limit);
 
     Optional<Ranking> findByUserAndMovie(User user, Movie movie);
 
     List<Ranking> findByUserAndRank1GreaterThanEqual(User user, int minRating);
     int countByMovie(Movie movie);
+
+    // Highest ranking id, a cheap first statement pinning the snapshot of a rebuild
+    @Query("SELECT MAX(r.id) FROM Ranking r")
+    Long findMaxId();
+
+    // Count rankings per movie, returned as (movieId, count) pairs
+    @Query("SELECT r.movie.id, COUNT(r) FROM Ranking r GROUP BY r.movie.id")
+    List<Object[]> countRankingsPerMovie();
+
+    // Stream (movieId, score) of every scored ranking, used to rebuild the rating index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT r.movie.id, r.score FROM Ranking r WHERE r.score IS NOT NULL")
+    Stream<Object[]> streamScores();
+
+    // Stream (userId, movieId, score) of every scored ranking, used to train the recommendation models
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT r.user.id, r.movie.id, r.score FROM Ranking r WHERE r.score IS NOT NULL")
+    Stream<Object[]> streamUserScores();
 }
@@ -0,0 +1,25 @@
+package com.contenetwise.recommender.repositories;
+
+import com.contenetwise.recommender.domain.RecommendationRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface RecommendationRunRepository extends JpaRepository<RecommendationRun, Long> {
+
+    // Last run whose recommendations were all written
+    Optional<RecommendationRun> findTopByCompletedAtIsNotNullOrderByGenerationDesc();
+
+    @Query("SELECT COALESCE(MAX(r.generation), 0) FROM RecommendationRun r")
+    long findMaxGeneration();
+
+    // Forget the runs before the given generation
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RecommendationRun r WHERE r.generation < :generation")
+    int deleteBefore(@Param("generation") long generation);
+}
@@ -0,0 +1,89 @@
+package com.contenetwise.recommender.repositories;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Precomputed recommendations in {@code user_recommendations}, written as JDBC batches
+ * by the offline job and read one user at a time by primary key, along with the last
+ * change of the user's rankings.
+ */
+@Repository
+public class UserRecommendationsRepository {
+
+    private static final TypeReference<List<Long>> MOVIE_IDS = new TypeReference<>() {
+    };
+    private static final TypeReference<Set<String>> GENRES = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public UserRecommendationsRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public void insertAll(long generation, Collection<Row> rows) {
+        List<Object[]> arguments = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            arguments.add(new Object[]{row.userId(), generation, write(row.movieIds()), write(row.preferredGenres())});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user_recommendations (user_id, generation, movie_ids, preferred_genres) VALUES (?, ?, ?, ?)",
+                arguments);
+    }
+
+    // Row of the user in the generation, null when they have none. Empty when the user does not exist
+    public Optional<Lookup> find(long userId, long generation) {
+        return jdbcTemplate.query("""
+                        SELECT r.movie_ids, r.preferred_genres, u.rankings_changed_at FROM users u
+                        LEFT JOIN user_recommendations r ON r.user_id = u.id AND r.generation = ?
+                        WHERE u.id = ?
+                        """,
+                (resultSet, rowNum) -> {
+                    String movieIds = resultSet.getString(1);
+                    Row row = movieIds == null ? null : new Row(userId, read(movieIds, MOVIE_IDS), read(resultSet.getString(2), GENRES));
+                    Timestamp changedAt = resultSet.getTimestamp(3);
+                    return new Lookup(row, changedAt == null ? null : changedAt.toInstant());
+                },
+                generation, userId).stream().findFirst();
+    }
+
+    // Drop the rows of the generations before the given one
+    public int deleteBefore(long generation) {
+        return jdbcTemplate.update("DELETE FROM user_recommendations WHERE generation < ?", generation);
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private <T> T read(String json, TypeReference<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable precomputed recommendations: " + json, e);
+        }
+    }
+
+    public record Row(Long userId, List<Long> movieIds, Set<String> preferredGenres) {
+    }
+
+    public record Lookup(Row row, Instant rankingsChangedAt) {
+    }
+}
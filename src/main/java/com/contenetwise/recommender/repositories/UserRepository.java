@@ -1,10 +1,31 @@
 package com.contenetwise.recommender.repositories;
 
 import com.contenetwise.recommender.domain.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    // Ids among the given ones that belong to existing users
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Page of users ordered by id, starting after the given id
+    @Query("SELECT u FROM User u WHERE u.id > :after ORDER BY u.id")
+    List<User> findPage(@Param("after") long after, Limit limit);
+
+    // Page of user ids ordered by id, after the given id and up to the last one
+    @Query("SELECT u.id FROM User u WHERE u.id > :after AND u.id <= :last ORDER BY u.id")
+    List<Long> findIdPage(@Param("after") long after, @Param("last") long last, Limit limit);
+
+    @Query("SELECT COALESCE(MAX(u.id), 0) FROM User u")
+    long findMaxId();
 }
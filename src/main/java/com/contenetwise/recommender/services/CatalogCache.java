@@ -0,0 +1,127 @@
+package com.contenetwise.recommender.services;
+
+import com.contenetwise.recommender.dto.GenreDTOResponse;
+import com.contenetwise.recommender.dto.KeysetPage;
+import com.contenetwise.recommender.dto.MovieRequest;
+import com.contenetwise.recommender.dto.ResponseDTO;
+import com.contenetwise.recommender.services.ingest.CsvImportService;
+import com.contenetwise.recommender.services.ingest.ImportCompletedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Ready-made catalog responses: movies by id, pages of the movie and genre listings,
+ * and pages of movies by genre. Entries are bounded in number and expire after a
+ * while, and catalog events evict exactly the entries a change affects: the movie
+ * itself and the pages whose id range contains it. A load still running when a change
+ * arrives is dropped once it completes, so it cannot cache what the change replaced.
+ * Hits, misses and evictions are published as cache metrics.
+ */
+@Component
+public class CatalogCache {
+
+    private final Cache<Long, MovieRequest> movies;
+    private final Cache<PageKey, KeysetPage<List<MovieRequest>>> moviePages;
+    private final Cache<PageKey, KeysetPage<List<GenreDTOResponse>>> genrePages;
+    private final Cache<PageKey, KeysetPage<ResponseDTO>> genreMoviePages;
+    //Bumped by every change before its eviction, loads spanning a bump are not kept
+    private final AtomicLong version = new AtomicLong();
+
+    public CatalogCache(MeterRegistry meterRegistry,
+                        @Value("${recommender.cache.catalog.max-size:10000}") long maxSize,
+                        @Value("${recommender.cache.catalog.ttl:PT10M}") Duration ttl) {
+        this.movies = monitor(meterRegistry, "catalog.movies", maxSize, ttl);
+        this.moviePages = monitor(meterRegistry, "catalog.movie-pages", maxSize, ttl);
+        this.genrePages = monitor(meterRegistry, "catalog.genre-pages", maxSize, ttl);
+        this.genreMoviePages = monitor(meterRegistry, "catalog.genre-movie-pages", maxSize, ttl);
+    }
+
+    private static <K, V> Cache<K, V> monitor(MeterRegistry meterRegistry, String name, long maxSize, Duration ttl) {
+        Cache<K, V> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    //Cached movie, loaded when missing. Unknown movies are not cached
+    public MovieRequest getMovie(Long movieId, Supplier<MovieRequest> loader) {
+        return load(movies, movieId, loader);
+    }
+
+    public KeysetPage<List<MovieRequest>> getMoviePage(long after, int size, Supplier<KeysetPage<List<MovieRequest>>> loader) {
+        return load(moviePages, new PageKey(null, after, size), loader);
+    }
+
+    public KeysetPage<List<GenreDTOResponse>> getGenrePage(long after, int size, Supplier<KeysetPage<List<GenreDTOResponse>>> loader) {
+        return load(genrePages, new PageKey(null, after, size), loader);
+    }
+
+    public KeysetPage<ResponseDTO> getGenreMoviePage(String genre, long after, int size, Supplier<KeysetPage<ResponseDTO>> loader) {
+        return load(genreMoviePages, new PageKey(genre, after, size), loader);
+    }
+
+    //Cached value, loaded when missing. A value loaded while a change came in may predate it and is evicted
+    private <K, V> V load(Cache<K, V> cache, K key, Supplier<V> loader) {
+        long stamp = version.get();
+        V value = cache.get(key, k -> loader.get());
+        if (value != null && version.get() != stamp) {
+            cache.asMap().remove(key, value);
+        }
+        return value;
+    }
+
+    @EventListener
+    public void onMovieChanged(MovieChangedEvent event) {
+        version.incrementAndGet();
+        long movieId = event.movieId();
+        movies.invalidate(movieId);
+        moviePages.asMap().values().removeIf(page -> page.covers(movieId));
+        genreMoviePages.asMap().entrySet().removeIf(entry ->
+                event.genres().contains(entry.getKey().scope()) && entry.getValue().covers(movieId));
+    }
+
+    @EventListener
+    public void onGenreChanged(GenreChangedEvent event) {
+        version.incrementAndGet();
+        long genreId = event.genreId();
+        genrePages.asMap().values().removeIf(page -> page.covers(genreId));
+        if (event.isRename()) {
+            // The genre name is embedded in every cached movie of the genre
+            String previousName = event.previousName();
+            movies.asMap().values().removeIf(movie -> movie.getGenres().contains(previousName));
+            moviePages.asMap().values().removeIf(page -> page.body().stream()
+                    .anyMatch(movie -> movie.getGenres().contains(previousName)));
+            genreMoviePages.asMap().entrySet().removeIf(entry -> previousName.equals(entry.getKey().scope())
+                    || entry.getValue().body().getMovies().stream().anyMatch(movie -> movie.getGenres().contains(previousName)));
+        }
+    }
+
+    @EventListener(condition = "#event.target() == '" + CsvImportService.MOVIES + "'")
+    public void onImportCompleted(ImportCompletedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        version.incrementAndGet();
+        movies.invalidateAll();
+        moviePages.invalidateAll();
+        genrePages.invalidateAll();
+        genreMoviePages.invalidateAll();
+    }
+
+    //Page of a listing; scope is the genre for movies by genre, null otherwise
+    private record PageKey(String scope, long after, int size) {
+    }
+}
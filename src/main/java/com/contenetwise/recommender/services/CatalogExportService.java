@@ -0,0 +1,90 @@
+package com.contenetwise.recommender.services;
+
+import com.contenetwise.recommender.dto.MovieRequest;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole catalog as newline-delimited JSON, one movie per line. Movies are
+ * read through a forward-only cursor of (id, title, genre) rows ordered by id, so
+ * only the movie being written is held in memory whatever the size of the catalog.
+ */
+@Service
+public class CatalogExportService {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    private final MovieRepository movieRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private static final Logger logger = LoggerFactory.getLogger(CatalogExportService.class);
+
+    public CatalogExportService(MovieRepository movieRepository, ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.movieRepository = movieRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // PostgreSQL only uses a cursor (and the fetch size) inside a transaction
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    //Write every movie to the stream and return the number of movies written
+    public long exportMovies(OutputStream target) {
+        long start = System.nanoTime();
+        Long exported = transactionTemplate.execute(status -> {
+            try (Stream<Object[]> rows = movieRepository.streamCatalog()) {
+                OutputStream out = new BufferedOutputStream(target);
+                long count = 0;
+                Long currentId = null;
+                MovieRequest current = null;
+                Iterator<Object[]> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    Object[] row = iterator.next();
+                    Long movieId = (Long) row[0];
+                    if (!movieId.equals(currentId)) {
+                        // Rows are ordered by movie, the previous movie is complete
+                        if (current != null) {
+                            writeLine(out, current);
+                            count++;
+                        }
+                        currentId = movieId;
+                        current = new MovieRequest();
+                        current.setTitle((String) row[1]);
+                        current.setGenres(new HashSet<>());
+                    }
+                    if (row[2] != null) {
+                        current.getGenres().add((String) row[2]);
+                    }
+                }
+                if (current != null) {
+                    writeLine(out, current);
+                    count++;
+                }
+                out.flush();
+                return count;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        logger.info("Exported {} movies in {} ms", exported, (System.nanoTime() - start) / 1_000_000);
+        return exported;
+    }
+
+    private void writeLine(OutputStream out, MovieRequest movie) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(movie));
+        out.write('\n');
+    }
+}
@@ -0,0 +1,25 @@
+package com.contenetwise.recommender.services;
+
+/**
+ * Published after a genre has been created, renamed or deleted, so in-memory indexes
+ * and caches keyed by genre can follow. The previous name is null for a new genre
+ * and the name is null for a deleted one.
+ */
+public record GenreChangedEvent(Long genreId, String previousName, String name) {
+
+    public static GenreChangedEvent created(Long genreId, String name) {
+        return new GenreChangedEvent(genreId, null, name);
+    }
+
+    public static GenreChangedEvent renamed(Long genreId, String previousName, String name) {
+        return new GenreChangedEvent(genreId, previousName, name);
+    }
+
+    public static GenreChangedEvent deleted(Long genreId) {
+        return new GenreChangedEvent(genreId, null, null);
+    }
+
+    public boolean isRename() {
+        return previousName != null && name != null;
+    }
+}
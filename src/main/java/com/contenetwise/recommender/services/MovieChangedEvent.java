@@ -0,0 +1,18 @@
+package com.contenetwise.recommender.services;
+
+import java.util.Set;
+
+/**
+ * Published after a movie has been created or deleted so in-memory catalog indexes
+ * can follow. Genre names are those of the movie at the time of the change.
+ */
+public record MovieChangedEvent(Long movieId, String title, Set<String> genres, boolean deleted) {
+
+    public static MovieChangedEvent created(Long movieId, String title, Set<String> genres) {
+        return new MovieChangedEvent(movieId, title, genres, false);
+    }
+
+    public static MovieChangedEvent deleted(Long movieId, String title, Set<String> genres) {
+        return new MovieChangedEvent(movieId, title, genres, true);
+    }
+}
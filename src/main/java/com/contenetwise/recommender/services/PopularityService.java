@@ -0,0 +1,154 @@
+package com.contenetwise.recommender.services;
+
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.ingest.CsvImportService;
+import com.contenetwise.recommender.services.ingest.ImportCompletedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the number of rankings per movie in memory so popularity can be read
+ * without a COUNT query. Counters are seeded from the ranking table at startup,
+ * incremented whenever a new ranking is created and dropped with their movie.
+ */
+@Service
+public class PopularityService {
+
+    private final RankingRepository rankingRepository;
+    private final RankingWriteGate writeGate;
+    private static final Logger logger = LoggerFactory.getLogger(PopularityService.class);
+
+    private volatile ConcurrentHashMap<Long, AtomicInteger> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger maxCount = new AtomicInteger();
+    //Changes made after the snapshot of a running rebuild, applied again on the rebuilt counters
+    private List<Consumer<Map<Long, AtomicInteger>>> pending;
+
+    public PopularityService(RankingRepository rankingRepository, RankingWriteGate writeGate) {
+        this.rankingRepository = rankingRepository;
+        this.writeGate = writeGate;
+    }
+
+    //Seed the counters once the application (and the seed data) is ready
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void rebuild() {
+        logger.info("Rebuilding movie popularity counters from the ranking table");
+        //The rankings created before the snapshot are counted on the current counters and in the
+        //snapshot, the ones created after it only in pending
+        writeGate.snapshot(() -> {
+            rankingRepository.findMaxId();
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+        });
+        try {
+            List<Object[]> rows = rankingRepository.countRankingsPerMovie();
+            ConcurrentHashMap<Long, AtomicInteger> rebuilt = new ConcurrentHashMap<>(Math.max(16, rows.size() * 2));
+            for (Object[] row : rows) {
+                rebuilt.put((Long) row[0], new AtomicInteger(((Number) row[1]).intValue()));
+            }
+            synchronized (this) {
+                pending.forEach(change -> change.accept(rebuilt));
+                counters = rebuilt;
+                maxCount.set(max(rebuilt));
+            }
+            logger.info("Popularity counters rebuilt for {} movies", rebuilt.size());
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+        }
+    }
+
+    //Number of rankings recorded for the movie
+    public int getCount(Long movieId) {
+        AtomicInteger counter = counters.get(movieId);
+        return counter == null ? 0 : counter.get();
+    }
+
+    //Highest number of rankings recorded for a movie
+    public int getMaxCount() {
+        return maxCount.get();
+    }
+
+    //Ids of the n movies with the most rankings, most popular first
+    public List<Long> mostPopular(int n) {
+        // Keep the best counts in a bounded min-heap
+        PriorityQueue<Map.Entry<Long, Integer>> best = new PriorityQueue<>(n + 1,
+                Map.Entry.<Long, Integer>comparingByValue().thenComparing(Map.Entry.<Long, Integer>comparingByKey().reversed()));
+        for (Map.Entry<Long, AtomicInteger> counter : counters.entrySet()) {
+            best.offer(Map.entry(counter.getKey(), counter.getValue().get()));
+            if (best.size() > n) {
+                best.poll();
+            }
+        }
+        List<Long> movieIds = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            movieIds.add(best.poll().getKey());
+        }
+        Collections.reverse(movieIds);
+        return movieIds;
+    }
+
+    //Bulk imported ratings bypass the ranking events, start over from the table
+    @EventListener(condition = "#event.target() == '" + CsvImportService.RATINGS + "'")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void onImportCompleted(ImportCompletedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onRankingChanged(RankingChangedEvent event) {
+        if (event.created()) {
+            increment(event.movieId());
+        }
+    }
+
+    //The rankings of a deleted movie are deleted with it, without a ranking event
+    @EventListener(condition = "#event.deleted()")
+    public void onMovieChanged(MovieChangedEvent event) {
+        remove(event.movieId());
+    }
+
+    //Record a newly created ranking for the movie
+    public synchronized void increment(Long movieId) {
+        Consumer<Map<Long, AtomicInteger>> change = counts -> counts.computeIfAbsent(movieId, id -> new AtomicInteger()).incrementAndGet();
+        if (pending != null) {
+            pending.add(change);
+        }
+        change.accept(counters);
+        maxCount.accumulateAndGet(getCount(movieId), Math::max);
+    }
+
+    //Forget the rankings of a deleted movie
+    public synchronized void remove(Long movieId) {
+        Consumer<Map<Long, AtomicInteger>> change = counts -> counts.remove(movieId);
+        if (pending != null) {
+            pending.add(change);
+        }
+        change.accept(counters);
+        maxCount.set(max(counters));
+    }
+
+    private static int max(Map<Long, AtomicInteger> counters) {
+        int max = 0;
+        for (AtomicInteger counter : counters.values()) {
+            max = Math.max(max, counter.get());
+        }
+        return max;
+    }
+}
@@ -0,0 +1,72 @@
+package com.contenetwise.recommender.services;
+
+import com.contenetwise.recommender.services.monitoring.StatementMonitor;
+import com.contenetwise.recommender.services.replica.ReplicaRoute;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool running the independent lookups of a request at the same time, so the
+ * request takes as long as the slowest of them rather than their sum. When the pool
+ * and its queue are full the lookup runs on the calling thread instead of failing.
+ *
+ * <p>A lookup runs outside the request's persistence context: entities it returns are
+ * detached.
+ */
+@Component
+public class QueryExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    public QueryExecutor(MeterRegistry meterRegistry,
+                         @Value("${recommender.query-executor.threads:8}") int threads,
+                         @Value("${recommender.query-executor.queue-capacity:256}") int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "query-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "query");
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> lookup) {
+        //The lookup reads from the same database, primary or replica, as the request, and its statements count for it
+        return CompletableFuture.supplyAsync(StatementMonitor.propagate(ReplicaRoute.propagate(lookup)), executor);
+    }
+
+    //Result of a lookup, throwing its exception as it would have been thrown on the calling thread
+    public static <T> T join(CompletableFuture<T> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,9 @@
+package com.contenetwise.recommender.services;
+
+/**
+ * Published after a ranking has been created or updated so in-memory indexes can
+ * apply the change incrementally. Scores are normalized to the 1..5 scale and are
+ * null when the ranking had (or has) no rating or view.
+ */
+public record RankingChangedEvent(Long userId, Long movieId, Integer previousScore, Integer newScore, boolean created) {
+}
@@ -0,0 +1,174 @@
+package com.contenetwise.recommender.services;
+
+import com.contenetwise.recommender.dto.BatchRankingResponse;
+import com.contenetwise.recommender.dto.RankingEventRequest;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingBatchRepository;
+import com.contenetwise.recommender.repositories.RankingBatchRepository.RankingRow;
+import com.contenetwise.recommender.repositories.RankingBatchRepository.Upsert;
+import com.contenetwise.recommender.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Applies a batch of ranking events with a constant number of queries: users and movies
+ * are looked up in bulk, the events are merged per (user, movie) pair, then every pair
+ * is upserted by one set-based write that locks the rankings it replaces. Ranking events
+ * are published once the transaction has committed.
+ */
+@Service
+public class RankingIngestService {
+
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String REJECTED = "REJECTED";
+
+    //Keeps IN lists well below the bind parameter limits of the database
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private final UserRepository userRepository;
+    private final MovieRepository movieRepository;
+    private final RankingBatchRepository rankingBatchRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final RankingWriteGate writeGate;
+    private static final Logger logger = LoggerFactory.getLogger(RankingIngestService.class);
+
+    public RankingIngestService(UserRepository userRepository, MovieRepository movieRepository,
+                                RankingBatchRepository rankingBatchRepository, ApplicationEventPublisher eventPublisher,
+                                PlatformTransactionManager transactionManager, RankingWriteGate writeGate) {
+        this.userRepository = userRepository;
+        this.movieRepository = movieRepository;
+        this.rankingBatchRepository = rankingBatchRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writeGate = writeGate;
+    }
+
+    public BatchRankingResponse ingest(List<RankingEventRequest> events) {
+        //The ranking events are published before a rebuild of the indexes can take its snapshot
+        BatchRankingResponse response = writeGate.write(() -> write(events));
+        logger.info("Ingested ranking batch: {} created, {} updated, {} rejected",
+                response.getCreated(), response.getUpdated(), response.getRejected());
+        return response;
+    }
+
+    private BatchRankingResponse write(List<RankingEventRequest> events) {
+        Map<PairKey, PairState> pairs = new LinkedHashMap<>();
+
+        BatchRankingResponse response = transactionTemplate.execute(status -> {
+            // Bulk lookups of the valid users and movies
+            Set<Long> userIds = new HashSet<>();
+            Set<Long> movieIds = new HashSet<>();
+            for (RankingEventRequest event : events) {
+                if (event.getUserId() != null && event.getMovieId() != null) {
+                    userIds.add(event.getUserId());
+                    movieIds.add(event.getMovieId());
+                }
+            }
+            Set<Long> existingUsers = inChunks(userIds, userRepository::findExistingIds);
+            Set<Long> existingMovies = inChunks(movieIds, movieRepository::findExistingIds);
+
+            // Merge the events in order into the ranks to set on every (user, movie) pair
+            String[] statuses = new String[events.size()];
+            String[] errors = new String[events.size()];
+            for (int index = 0; index < events.size(); index++) {
+                RankingEventRequest event = events.get(index);
+                errors[index] = validate(event, existingUsers, existingMovies);
+                if (errors[index] != null) {
+                    statuses[index] = REJECTED;
+                    continue;
+                }
+                PairState state = pairs.computeIfAbsent(new PairKey(event.getUserId(), event.getMovieId()), k -> new PairState());
+                if (event.getRank1() != null) {
+                    state.rank1 = event.getRank1();
+                }
+                if (event.getRank2() != null) {
+                    state.rank2 = event.getRank2();
+                }
+                state.events.add(index);
+            }
+
+            // Set-based write, the first event of a pair created it when the upsert did
+            List<RankingRow> rows = new ArrayList<>();
+            pairs.forEach((key, state) -> rows.add(new RankingRow(key.userId(), key.movieId(), state.rank1, state.rank2)));
+            List<Upsert> upserts = rankingBatchRepository.upsertAll(rows);
+            int pair = 0;
+            for (PairState state : pairs.values()) {
+                state.upsert = upserts.get(pair++);
+                for (int index : state.events) {
+                    statuses[index] = state.upsert.created() && index == state.events.get(0) ? CREATED : UPDATED;
+                }
+            }
+
+            List<BatchRankingResponse.EventResult> results = new ArrayList<>(events.size());
+            int created = 0;
+            int updated = 0;
+            int rejected = 0;
+            for (int index = 0; index < events.size(); index++) {
+                results.add(new BatchRankingResponse.EventResult(index, statuses[index], errors[index]));
+                if (CREATED.equals(statuses[index])) {
+                    created++;
+                } else if (UPDATED.equals(statuses[index])) {
+                    updated++;
+                } else {
+                    rejected++;
+                }
+            }
+            return new BatchRankingResponse(created, updated, rejected, results);
+        });
+
+        // Let the in-memory indexes catch up now that the batch is committed
+        pairs.forEach((key, state) -> eventPublisher.publishEvent(new RankingChangedEvent(key.userId(), key.movieId(),
+                state.upsert.previousScore(), state.upsert.score(), state.upsert.created())));
+        return response;
+    }
+
+    private static String validate(RankingEventRequest event, Set<Long> existingUsers, Set<Long> existingMovies) {
+        if (event.getUserId() == null || event.getMovieId() == null) {
+            return "userId and movieId are required.";
+        }
+        if ((event.getRank1() == null) == (event.getRank2() == null)) {
+            return "You must provide either rank1 or rank2, but not both.";
+        }
+        if (!existingUsers.contains(event.getUserId())) {
+            return "User not found.";
+        }
+        if (!existingMovies.contains(event.getMovieId())) {
+            return "Movie not found.";
+        }
+        return null;
+    }
+
+    private static Set<Long> inChunks(Set<Long> ids, Function<Collection<Long>, Set<Long>> lookup) {
+        Set<Long> found = new HashSet<>();
+        List<Long> all = new ArrayList<>(ids);
+        for (int i = 0; i < all.size(); i += LOOKUP_CHUNK) {
+            found.addAll(lookup.apply(all.subList(i, Math.min(all.size(), i + LOOKUP_CHUNK))));
+        }
+        return found;
+    }
+
+    private record PairKey(Long userId, Long movieId) {
+    }
+
+    private static final class PairState {
+        private final List<Integer> events = new ArrayList<>();
+        private Integer rank1;
+        private Integer rank2;
+        private Upsert upsert;
+    }
+}
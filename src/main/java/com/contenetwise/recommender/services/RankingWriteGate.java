@@ -0,0 +1,41 @@
+package com.contenetwise.recommender.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Orders the ranking writes with the snapshots of the in-memory indexes rebuilding
+ * from the ranking table. A write holds the gate from its statement until its
+ * {@link RankingChangedEvent} is published, and a rebuild takes its snapshot through
+ * the gate once no write is in between. A change is then either in the snapshot and
+ * published before the rebuild started, or committed after the snapshot and published
+ * during or after the rebuild, never both.
+ */
+@Component
+public class RankingWriteGate {
+
+    //Writes share the gate, a snapshot waits for the writes in progress and holds off new ones
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //Run a ranking write and the publication of its events
+    public <T> T write(Supplier<T> write) {
+        lock.readLock().lock();
+        try {
+            return write.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Run the first statement of a snapshot transaction, pinning its snapshot, between writes
+    public void snapshot(Runnable start) {
+        lock.writeLock().lock();
+        try {
+            start.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.contenetwise.recommender.services;
+
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.ingest.CsvImportService;
+import com.contenetwise.recommender.services.ingest.ImportCompletedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the average normalized score of every ranked movie.
+ * A running sum and count is kept per movie and the movies are ordered by their
+ * average, so minimum/maximum ranking filters are range scans instead of an
+ * aggregation over the whole ranking table.
+ */
+@Service
+public class RatingIndexService {
+
+    private final RankingRepository rankingRepository;
+    private final RankingWriteGate writeGate;
+    private static final Logger logger = LoggerFactory.getLogger(RatingIndexService.class);
+
+    private static final Comparator<ScoredMovie> BY_AVERAGE = Comparator
+            .comparingDouble(ScoredMovie::average)
+            .thenComparingLong(ScoredMovie::movieId);
+
+    //Both structures are guarded by the lock so readers never see a half-applied update
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, ScoreSum> sums = new HashMap<>();
+    private final NavigableSet<ScoredMovie> byAverage = new TreeSet<>(BY_AVERAGE);
+
+    public RatingIndexService(RankingRepository rankingRepository, RankingWriteGate writeGate) {
+        this.rankingRepository = rankingRepository;
+        this.writeGate = writeGate;
+    }
+
+    //Rebuild the whole index from the ranking table. Writers are blocked until it completes.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void rebuild() {
+        logger.info("Rebuilding the average rating index from the ranking table");
+        //The changes published before the snapshot are in it, the ones committed after it wait for the
+        //lock and are applied on the rebuilt index. The lock is taken between writes, after the gate as the
+        //writers do, so no change is applied in between and then cleared
+        writeGate.snapshot(() -> {
+            rankingRepository.findMaxId();
+            lock.writeLock().lock();
+        });
+        try (Stream<Object[]> rows = rankingRepository.streamScores()) {
+            sums.clear();
+            byAverage.clear();
+            rows.forEach(row -> sums.computeIfAbsent((Long) row[0], id -> new ScoreSum()).add((Integer) row[1]));
+            sums.forEach((movieId, sum) -> byAverage.add(new ScoredMovie(sum.average(), movieId)));
+            logger.info("Average rating index rebuilt for {} movies", sums.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //Bulk imported ratings bypass the ranking events, start over from the table
+    @EventListener(condition = "#event.target() == '" + CsvImportService.RATINGS + "'")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void onImportCompleted(ImportCompletedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onRankingChanged(RankingChangedEvent event) {
+        update(event.movieId(), event.previousScore(), event.newScore());
+    }
+
+    //The rankings of a deleted movie are deleted with it, without a ranking event
+    @EventListener(condition = "#event.deleted()")
+    public void onMovieChanged(MovieChangedEvent event) {
+        remove(event.movieId());
+    }
+
+    //Forget every score of the movie
+    public void remove(Long movieId) {
+        lock.writeLock().lock();
+        try {
+            ScoreSum sum = sums.remove(movieId);
+            if (sum != null && sum.count > 0) {
+                byAverage.remove(new ScoredMovie(sum.average(), movieId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //Replace a previous score of the movie (if any) with the new one (if any)
+    public void update(Long movieId, Integer previousScore, Integer newScore) {
+        if (previousScore == null && newScore == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            ScoreSum sum = sums.get(movieId);
+            if (sum == null) {
+                sum = new ScoreSum();
+                sums.put(movieId, sum);
+            } else if (sum.count > 0) {
+                byAverage.remove(new ScoredMovie(sum.average(), movieId));
+            }
+            if (previousScore != null) {
+                sum.remove(previousScore);
+            }
+            if (newScore != null) {
+                sum.add(newScore);
+            }
+            //Concurrent writers may publish a replacement before the creation it replaces, the sum is
+            //kept until both cancel out
+            if (sum.count > 0) {
+                byAverage.add(new ScoredMovie(sum.average(), movieId));
+            } else if (sum.count == 0 && sum.sum == 0) {
+                sums.remove(movieId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //Ids of the movies whose average score is at least minRanking, lowest average first
+    public List<Long> findMovieIdsByMinRanking(double minRanking) {
+        return findMovieIdsByMinRanking(minRanking, 0, Integer.MAX_VALUE);
+    }
+
+    //At most limit of these ids, after skipping the first ones
+    public List<Long> findMovieIdsByMinRanking(double minRanking, long skip, int limit) {
+        lock.readLock().lock();
+        try {
+            return movieIds(byAverage.tailSet(new ScoredMovie(minRanking, Long.MIN_VALUE), true), skip, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Ids of the movies whose average score is at most maxRanking, lowest average first
+    public List<Long> findMovieIdsByMaxRanking(double maxRanking) {
+        return findMovieIdsByMaxRanking(maxRanking, 0, Integer.MAX_VALUE);
+    }
+
+    //At most limit of these ids, after skipping the first ones
+    public List<Long> findMovieIdsByMaxRanking(double maxRanking, long skip, int limit) {
+        lock.readLock().lock();
+        try {
+            return movieIds(byAverage.headSet(new ScoredMovie(maxRanking, Long.MAX_VALUE), true), skip, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Average score of the movie, or null if it has never been ranked
+    public Double getAverage(Long movieId) {
+        lock.readLock().lock();
+        try {
+            ScoreSum sum = sums.get(movieId);
+            return sum == null || sum.count <= 0 ? null : sum.average();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<Long> movieIds(NavigableSet<ScoredMovie> range, long skip, int limit) {
+        List<Long> ids = new ArrayList<>();
+        for (ScoredMovie scoredMovie : range) {
+            if (ids.size() == limit) {
+                break;
+            }
+            if (skip > 0) {
+                skip--;
+            } else {
+                ids.add(scoredMovie.movieId());
+            }
+        }
+        return ids;
+    }
+
+    private record ScoredMovie(double average, long movieId) {
+    }
+
+    private static final class ScoreSum {
+        private long sum;
+        private int count;
+
+        void add(int score) {
+            sum += score;
+            count++;
+        }
+
+        void remove(int score) {
+            sum -= score;
+            count--;
+        }
+
+        double average() {
+            return (double) sum / count;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.contenetwise.recommender.services.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Command line import mode. Started with any of
+ * {@code --import.users=<file> --import.movies=<file> --import.ratings=<file>}, the
+ * application imports the files and exits (use {@code --spring.main.web-application-type=none}
+ * to skip starting the web server).
+ */
+@Component
+public class CsvImportRunner implements ApplicationRunner {
+
+    private final CsvImportService importService;
+    private final ConfigurableApplicationContext context;
+    private static final Logger logger = LoggerFactory.getLogger(CsvImportRunner.class);
+
+    public CsvImportRunner(CsvImportService importService, ConfigurableApplicationContext context) {
+        this.importService = importService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Path users = path(args, "import.users");
+        Path movies = path(args, "import.movies");
+        Path ratings = path(args, "import.ratings");
+        if (users == null && movies == null && ratings == null) {
+            return;
+        }
+
+        int exitCode = 0;
+        try {
+            List<ImportReport> reports = importService.importAll(users, movies, ratings);
+            reports.forEach(report -> logger.info("Imported {}: {} rows, {} rejected, {} rows/sec", report.file(),
+                    report.importedRows(), report.rejectedRows(), Math.round(report.rowsPerSecond())));
+        } catch (RuntimeException e) {
+            logger.error("Import failed, run the same command again to resume", e);
+            exitCode = 1;
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+
+    private static Path path(ApplicationArguments args, String option) {
+        List<String> values = args.getOptionValues(option);
+        return values == null || values.isEmpty() ? null : Path.of(values.get(0));
+    }
+}
@@ -0,0 +1,376 @@
+package com.contenetwise.recommender.services.ingest;
+
+import com.contenetwise.recommender.repositories.RankingBatchRepository;
+import com.contenetwise.recommender.repositories.RankingBatchRepository.RankingRow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Streams users.csv, movies.csv and ratings.csv files into the database. Files are
+ * read line by line and written in batches, each batch in its own transaction, so
+ * memory use does not depend on the file size. After every batch the number of
+ * processed lines is stored in a {@code .checkpoint} file next to the CSV; a failed
+ * import started again resumes after the last committed batch.
+ * <p>
+ * Rows the database rejects (unknown user or movie, duplicate id...) are retried one
+ * by one so a bad row only loses itself; any other database error stops the import.
+ * For PostgreSQL, add {@code reWriteBatchedInserts=true} to the JDBC URL to turn
+ * batches into multi-row inserts.
+ */
+@Service
+public class CsvImportService {
+
+    public static final String USERS = "users";
+    public static final String MOVIES = "movies";
+    public static final String RATINGS = "ratings";
+
+    private static final long PROGRESS_INTERVAL = 100_000;
+    private static final String BOM = "\uFEFF";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RankingBatchRepository rankingBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private static final Logger logger = LoggerFactory.getLogger(CsvImportService.class);
+
+    public CsvImportService(JdbcTemplate jdbcTemplate, RankingBatchRepository rankingBatchRepository,
+                            PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                            MeterRegistry meterRegistry, @Value("${recommender.import.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rankingBatchRepository = rankingBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+    }
+
+    //Import the given files in dependency order (users and movies before ratings); null paths are skipped
+    public List<ImportReport> importAll(Path users, Path movies, Path ratings) {
+        List<ImportReport> reports = new ArrayList<>();
+        if (users != null) {
+            reports.add(importUsers(users));
+        }
+        if (movies != null) {
+            reports.add(importMovies(movies));
+        }
+        if (ratings != null) {
+            reports.add(importRatings(ratings));
+        }
+        return reports;
+    }
+
+    //user_id,username
+    public ImportReport importUsers(Path file) {
+        return importFile(file, new Target(USERS, "user_id,username", 2) {
+            @Override
+            Object[] parse(List<String> fields) {
+                return new Object[]{Long.parseLong(fields.get(0).trim()), required(fields.get(1))};
+            }
+
+            @Override
+            void write(List<Object[]> rows) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (id, username) VALUES (?, ?)", rows);
+            }
+
+            @Override
+            void finish() {
+                resyncIdentity("users");
+            }
+        });
+    }
+
+    //movie_id,title,genres with genres separated by '|'
+    public ImportReport importMovies(Path file) {
+        Map<String, Long> genreIds = loadGenres();
+        return importFile(file, new Target(MOVIES, "movie_id,title,genres", 3) {
+            @Override
+            Object[] parse(List<String> fields) {
+                Long movieId = Long.parseLong(fields.get(0).trim());
+                List<Long> genres = new ArrayList<>();
+                for (String genre : fields.get(2).split("\\|")) {
+                    if (!genre.isBlank() && !genre.equals("(no genres listed)")) {
+                        genres.add(resolveGenre(genreIds, genre.trim()));
+                    }
+                }
+                return new Object[]{movieId, required(fields.get(1)), genres};
+            }
+
+            @Override
+            void write(List<Object[]> rows) {
+                List<Object[]> movies = new ArrayList<>(rows.size());
+                List<Object[]> movieGenres = new ArrayList<>();
+                for (Object[] row : rows) {
+                    movies.add(new Object[]{row[0], row[1]});
+                    for (Object genreId : (List<?>) row[2]) {
+                        movieGenres.add(new Object[]{row[0], genreId});
+                    }
+                }
+                jdbcTemplate.batchUpdate("INSERT INTO movies (id, title) VALUES (?, ?)", movies);
+                jdbcTemplate.batchUpdate("INSERT INTO movie_genre (movie_id, genre_id) VALUES (?, ?)", movieGenres);
+            }
+
+            @Override
+            void finish() {
+                resyncIdentity("movies");
+            }
+        });
+    }
+
+    //user_id,movie_id,rating,view_percentage where either rating or view_percentage may be empty. Rankings already
+    //stored are updated, like the ranking endpoints do
+    public ImportReport importRatings(Path file) {
+        return importFile(file, new Target(RATINGS, "user_id,movie_id,rating,view_percentage", 3) {
+            @Override
+            Object[] parse(List<String> fields) {
+                Integer rank1 = optionalInt(fields.get(2));
+                Integer rank2 = fields.size() > 3 ? optionalInt(fields.get(3)) : null;
+                if (rank1 == null && rank2 == null) {
+                    throw new IllegalArgumentException("Neither rating nor view percentage");
+                }
+                return new Object[]{Long.parseLong(fields.get(0).trim()), Long.parseLong(fields.get(1).trim()), rank1, rank2};
+            }
+
+            @Override
+            void write(List<Object[]> rows) {
+                //A pair repeated in the batch is upserted once, with the last rank given of each kind
+                Map<List<Long>, RankingRow> pairs = new LinkedHashMap<>();
+                for (Object[] row : rows) {
+                    RankingRow ranking = new RankingRow((Long) row[0], (Long) row[1], (Integer) row[2], (Integer) row[3]);
+                    pairs.merge(List.of(ranking.userId(), ranking.movieId()), ranking, (previous, next) -> new RankingRow(
+                            next.userId(), next.movieId(), next.rank1() != null ? next.rank1() : previous.rank1(),
+                            next.rank2() != null ? next.rank2() : previous.rank2()));
+                }
+                rankingBatchRepository.upsertAll(List.copyOf(pairs.values()));
+            }
+        });
+    }
+
+    private ImportReport importFile(Path file, Target target) {
+        Path checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        long resumeAfter = readCheckpoint(checkpointFile);
+        if (resumeAfter > 0) {
+            logger.info("Resuming import of {} after line {}", file, resumeAfter);
+        }
+        Counter imported = meterRegistry.counter("recommender.import.rows", "file", target.name, "outcome", "imported");
+        Counter rejected = meterRegistry.counter("recommender.import.rows", "file", target.name, "outcome", "rejected");
+
+        long start = System.nanoTime();
+        long importedRows = 0;
+        long rejectedRows = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            //Spreadsheet exports may start with a byte order mark and capitalize the column names
+            if (header != null && header.startsWith(BOM)) {
+                header = header.substring(BOM.length());
+            }
+            //Every column is compared, users.csv and ratings.csv start with the same one
+            if (header == null || !target.matches(CsvParser.parseLine(header))) {
+                //The header itself is not reported, it may come from any file
+                throw new IllegalArgumentException("Unexpected header in " + file.getFileName() + ", expected " + String.join(",", target.columns));
+            }
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            long lineNumber = 0;
+            long nextProgress = PROGRESS_INTERVAL;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= resumeAfter || line.isBlank()) {
+                    continue;
+                }
+                try {
+                    List<String> fields = CsvParser.parseLine(line);
+                    if (fields.size() < target.minColumns) {
+                        throw new IllegalArgumentException("Expected " + target.minColumns + " columns");
+                    }
+                    batch.add(target.parse(fields));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping malformed line {} of {}: {}", lineNumber, file, e.getMessage());
+                    rejectedRows++;
+                    rejected.increment();
+                }
+                if (batch.size() == batchSize) {
+                    int failed = flush(target, batch);
+                    importedRows += batch.size() - failed;
+                    rejectedRows += failed;
+                    imported.increment(batch.size() - failed);
+                    rejected.increment(failed);
+                    batch.clear();
+                    writeCheckpoint(checkpointFile, lineNumber);
+                    if (importedRows >= nextProgress) {
+                        logger.info("Imported {} rows of {} ({} rows/sec)", importedRows, file,
+                                Math.round(rate(importedRows, start)));
+                        nextProgress += PROGRESS_INTERVAL;
+                    }
+                }
+            }
+            int failed = flush(target, batch);
+            importedRows += batch.size() - failed;
+            rejectedRows += failed;
+            imported.increment(batch.size() - failed);
+            rejected.increment(failed);
+            target.finish();
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Import of " + file + " failed", e);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        ImportReport report = new ImportReport(file.toString(), importedRows, rejectedRows, resumeAfter,
+                seconds, rate(importedRows, start));
+        logger.info("Import of {} finished: {} rows imported, {} rejected in {} s ({} rows/sec)", file,
+                importedRows, rejectedRows, String.format("%.1f", seconds), Math.round(report.rowsPerSecond()));
+        eventPublisher.publishEvent(new ImportCompletedEvent(target.name, importedRows));
+        return report;
+    }
+
+    //Write the batch in one transaction; if the database rejects rows of it, retry row by row and return the rejected
+    //count. Other database errors fail the import, its checkpoint stays at the last committed batch
+    private int flush(Target target, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> target.write(batch));
+            return 0;
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Batch rejected by the database ({}), retrying {} rows one by one",
+                    e.getMostSpecificCause().getMessage(), batch.size());
+        }
+        int failed = 0;
+        for (Object[] row : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> target.write(List.<Object[]>of(row)));
+            } catch (DataIntegrityViolationException e) {
+                logger.warn("Rejected {} row {}: {}", target.name, row[0], e.getMostSpecificCause().getMessage());
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private Map<String, Long> loadGenres() {
+        Map<String, Long> genreIds = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM genres", rs -> {
+            genreIds.put(rs.getString("name"), rs.getLong("id"));
+        });
+        return genreIds;
+    }
+
+    //Genre id by name, creating the genre (outside the batch transaction) the first time it is seen
+    private Long resolveGenre(Map<String, Long> genreIds, String name) {
+        return genreIds.computeIfAbsent(name, genreName -> {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO genres (name) VALUES (?)", new String[]{"id"});
+                statement.setString(1, genreName);
+                return statement;
+            }, keyHolder);
+            return Objects.requireNonNull(keyHolder.getKey()).longValue();
+        });
+    }
+
+    //Explicit ids were inserted, move the PostgreSQL identity sequence past them
+    private void resyncIdentity(String table) {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if ("PostgreSQL".equals(database)) {
+            jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence('" + table + "', 'id'), "
+                    + "COALESCE((SELECT MAX(id) FROM " + table + "), 0) + 1, false)", Long.class);
+        }
+    }
+
+    private static long readCheckpoint(Path checkpointFile) {
+        try {
+            return Files.exists(checkpointFile) ? Long.parseLong(Files.readString(checkpointFile).trim()) : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCheckpoint(Path checkpointFile, long lineNumber) {
+        try {
+            Files.writeString(checkpointFile, Long.toString(lineNumber));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static double rate(long rows, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return seconds > 0 ? rows / seconds : 0;
+    }
+
+    private static String required(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing value");
+        }
+        return value.trim();
+    }
+
+    private static Integer optionalInt(String value) {
+        return value == null || value.isBlank() ? null : Integer.valueOf(value.trim());
+    }
+
+    //How one kind of file is parsed and written
+    private abstract static class Target {
+        private final String name;
+        private final List<String> columns;
+        private final int minColumns;
+
+        Target(String name, String header, int minColumns) {
+            this.name = name;
+            this.columns = CsvParser.parseLine(header);
+            this.minColumns = minColumns;
+        }
+
+        //Whether the header names the columns of the target, in order and ignoring case
+        boolean matches(List<String> header) {
+            if (header.size() != columns.size()) {
+                return false;
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (!header.get(i).trim().equalsIgnoreCase(columns.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //Typed row values; throws IllegalArgumentException for malformed rows
+        abstract Object[] parse(List<String> fields);
+
+        //Insert the rows, called inside a transaction
+        abstract void write(List<Object[]> rows);
+
+        void finish() {
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.contenetwise.recommender.services.ingest;
+
+/**
+ * Published after a CSV file has been imported so in-memory indexes built from the
+ * imported table can be rebuilt. The target is one of the CsvImportService file names.
+ */
+public record ImportCompletedEvent(String target, long importedRows) {
+}
@@ -0,0 +1,94 @@
+package com.contenetwise.recommender.services.ingest;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Actuator endpoint starting a CSV import in the background ({@code POST /actuator/imports}
+ * with users, movies and/or ratings file names) and reporting its progress
+ * ({@code GET /actuator/imports}). Only one import runs at a time. File names are
+ * resolved against {@code recommender.import.directory}, and names leading outside of
+ * it are rejected, so the endpoint cannot read or write other server files.
+ */
+@Component
+@Endpoint(id = "imports")
+public class ImportEndpoint {
+
+    private final CsvImportService importService;
+    private final Path directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "csv-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Logger logger = LoggerFactory.getLogger(ImportEndpoint.class);
+
+    private volatile ImportStatus status = new ImportStatus("IDLE", null, null, List.of(), null);
+
+    public ImportEndpoint(CsvImportService importService, @Value("${recommender.import.directory:imports}") String directory) {
+        this.importService = importService;
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+    }
+
+    @ReadOperation
+    public ImportStatus status() {
+        return status;
+    }
+
+    @WriteOperation
+    public synchronized ImportStatus start(@Nullable String users, @Nullable String movies, @Nullable String ratings) {
+        if ("RUNNING".equals(status.state())) {
+            return status;
+        }
+        Path usersFile = path(users);
+        Path moviesFile = path(movies);
+        Path ratingsFile = path(ratings);
+        status = new ImportStatus("RUNNING", Instant.now(), null, List.of(), null);
+        Instant started = status.startedAt();
+        executor.submit(() -> {
+            try {
+                List<ImportReport> reports = importService.importAll(usersFile, moviesFile, ratingsFile);
+                status = new ImportStatus("COMPLETED", started, Instant.now(), reports, null);
+            } catch (RuntimeException e) {
+                logger.error("Import job failed, start it again to resume", e);
+                status = new ImportStatus("FAILED", started, Instant.now(), List.of(), e.getMessage());
+            }
+        });
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //File of the import directory with that name, a name leading outside of the directory is a bad request
+    private Path path(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Path file = directory.resolve(value).normalize();
+        if (!file.startsWith(directory) || file.equals(directory)) {
+            logger.warn("Import rejected, {} is not a file of the import directory", value);
+            throw new InvalidEndpointRequestException("Not a file of the import directory: " + value, "Invalid file name");
+        }
+        return file;
+    }
+
+    public record ImportStatus(String state, Instant startedAt, Instant finishedAt, List<ImportReport> reports, String error) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.contenetwise.recommender.services.ingest;
+
+/**
+ * Outcome of importing one CSV file. Rows skipped because of a checkpoint are not
+ * counted as imported; rows rejected by the database are counted separately.
+ */
+public record ImportReport(String file, long importedRows, long rejectedRows, long resumedFromLine,
+                           double seconds, double rowsPerSecond) {
+}
@@ -0,0 +1,75 @@
+package com.contenetwise.recommender.services.monitoring;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Wraps the data sources in a {@link StatementTimingDataSource} and, when enabled, a
+ * {@link ConcurrencyLimitedDataSource} sized to the connection pool. The limiter is
+ * enabled by default with virtual threads, where request threads are no longer bounded
+ * by the Tomcat pool. The monitor is looked up on first use so that its meter registry
+ * is not created ahead of the other beans.
+ */
+@Component
+public class DataSourceInstrumentation implements BeanPostProcessor, MeterBinder {
+
+    private final ObjectProvider<StatementMonitor> monitor;
+    private final boolean limitConcurrency;
+    private final int permits;
+    private final Duration acquireTimeout;
+    private volatile ConcurrencyLimitedDataSource limiter;
+
+    public DataSourceInstrumentation(ObjectProvider<StatementMonitor> monitor,
+                                     @Value("${recommender.db.concurrency-limit.enabled:${spring.threads.virtual.enabled:false}}") boolean limitConcurrency,
+                                     @Value("${recommender.db.concurrency-limit.permits:0}") int permits,
+                                     @Value("${recommender.db.concurrency-limit.acquire-timeout:PT30S}") Duration acquireTimeout) {
+        this.monitor = monitor;
+        this.limitConcurrency = limitConcurrency;
+        this.permits = permits;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof StatementTimingDataSource)) {
+            if (limitConcurrency) {
+                //As many permits as connections unless configured otherwise
+                int poolSize = poolSize(dataSource);
+                limiter = new ConcurrencyLimitedDataSource(dataSource, permits > 0 ? permits : poolSize, acquireTimeout);
+                dataSource = limiter;
+            }
+            return new StatementTimingDataSource(dataSource, monitor::getObject);
+        }
+        return bean;
+    }
+
+    //Size of the pool, behind the replica routing if there is one
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            //Not a Hikari pool
+        }
+        return 10;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("recommender.db.concurrency.waiting", this, instrumentation ->
+                        instrumentation.limiter == null ? 0 : instrumentation.limiter.getWaiting())
+                .description("Callers waiting for a database connection permit")
+                .register(registry);
+    }
+}
@@ -0,0 +1,76 @@
+package com.contenetwise.recommender.services.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs one summary line per API request: endpoint, path variables, status, number of
+ * results and duration. Requests are sampled per URI template; failed requests are
+ * always logged.
+ */
+@Component
+public class RequestLogFilter extends OncePerRequestFilter {
+
+    //Set by ResultSizeAdvice when the response body is written
+    public static final String RESULT_SIZE_ATTRIBUTE = RequestLogFilter.class.getName() + ".resultSize";
+
+    private static final Logger logger = LoggerFactory.getLogger("com.contenetwise.recommender.requests");
+
+    private final double defaultSampleRate;
+    private final Map<String, Double> sampleRates = new HashMap<>();
+
+    public RequestLogFilter(@Value("${recommender.request-log.sample-rate:1.0}") double defaultSampleRate,
+                            @Value("${recommender.request-log.sample-rates:}") String sampleRates) {
+        this.defaultSampleRate = defaultSampleRate;
+        //uri-template=rate pairs separated by commas
+        for (String entry : sampleRates.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator > 0) {
+                this.sampleRates.put(entry.substring(0, separator).trim(), Double.parseDouble(entry.substring(separator + 1).trim()));
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? request.getRequestURI() : pattern.toString();
+            int status = response.getStatus();
+            if (logger.isInfoEnabled() && (status >= 400 || sampled(uri))) {
+                logger.info("method={} uri={} ids={} status={} results={} durationMs={}",
+                        request.getMethod(), uri, request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE),
+                        status, request.getAttribute(RESULT_SIZE_ATTRIBUTE),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+    }
+
+    private boolean sampled(String uri) {
+        double rate = sampleRates.getOrDefault(uri, defaultSampleRate);
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
@@ -0,0 +1,45 @@
+package com.contenetwise.recommender.services.monitoring;
+
+import com.contenetwise.recommender.dto.ResponseDTO;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Collection;
+
+/**
+ * Records the number of results of each response body for the request log.
+ */
+@ControllerAdvice
+public class ResultSizeAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body != null && request instanceof ServletServerHttpRequest servletRequest) {
+            servletRequest.getServletRequest().setAttribute(RequestLogFilter.RESULT_SIZE_ATTRIBUTE, resultSize(body));
+        }
+        return body;
+    }
+
+    private static int resultSize(Object body) {
+        if (body instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (body instanceof ResponseDTO responseDTO) {
+            return responseDTO.getMovies() == null ? 0 : responseDTO.getMovies().size();
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.contenetwise.recommender.services.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint listing the most recent statements slower than
+ * {@code recommender.db.slow-query.threshold} ({@code GET /actuator/slowqueries}) and
+ * emptying the list ({@code DELETE /actuator/slowqueries}).
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    private final StatementMonitor monitor;
+
+    public SlowQueryEndpoint(StatementMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @ReadOperation
+    public List<StatementMonitor.SlowStatement> slowQueries() {
+        return monitor.getSlowStatements();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        monitor.clear();
+    }
+}
@@ -0,0 +1,40 @@
+package com.contenetwise.recommender.services.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Counts the statements executed while handling each HTTP request, by URI template.
+ */
+@Component
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    //Tag of the requests no handler matched
+    public static final String UNMATCHED_URI = "UNKNOWN";
+
+    private final StatementMonitor monitor;
+
+    public StatementCountFilter(StatementMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        monitor.startRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            //The URI template keeps the number of series bounded, unmatched requests share one
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            monitor.endRequest(pattern == null ? UNMATCHED_URI : pattern.toString());
+        }
+    }
+}
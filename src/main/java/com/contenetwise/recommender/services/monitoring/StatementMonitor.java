@@ -0,0 +1,125 @@
+package com.contenetwise.recommender.services.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Receives every JDBC statement executed by the application (see
+ * {@link StatementTimingDataSource}). Each statement is timed, statements are counted
+ * per HTTP request, including the lookups the request runs on other threads (see
+ * {@link #propagate}), and statements slower than the threshold are sampled into a bounded
+ * buffer with their SQL, the types of their bind parameters and their duration.
+ */
+@Component
+public class StatementMonitor {
+
+    static final int MAX_SQL_LENGTH = 4000;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer statementTimer;
+    private final long thresholdNanos;
+    private final int capacity;
+    private final Deque<SlowStatement> slowStatements = new ArrayDeque<>();
+    //Statements of the request handled by the thread, shared with the lookups it runs on other threads
+    private static final ThreadLocal<AtomicInteger> REQUEST_STATEMENTS = new ThreadLocal<>();
+
+    public StatementMonitor(MeterRegistry meterRegistry,
+                            @Value("${recommender.db.slow-query.threshold:PT0.1S}") Duration threshold,
+                            @Value("${recommender.db.slow-query.capacity:100}") int capacity) {
+        this.meterRegistry = meterRegistry;
+        this.thresholdNanos = threshold.toNanos();
+        this.capacity = capacity;
+        this.statementTimer = Timer.builder("recommender.db.statement")
+                .description("Duration of the JDBC statements")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    //A statement was executed; batches are recorded once with the number of rows
+    public void record(String sql, List<String> bindShape, int batchSize, long nanos) {
+        statementTimer.record(nanos, TimeUnit.NANOSECONDS);
+        AtomicInteger counter = REQUEST_STATEMENTS.get();
+        if (counter != null) {
+            counter.incrementAndGet();
+        }
+        if (nanos >= thresholdNanos) {
+            String text = sql == null ? null : sql.length() > MAX_SQL_LENGTH ? sql.substring(0, MAX_SQL_LENGTH) + "..." : sql;
+            SlowStatement statement = new SlowStatement(Instant.now(), TimeUnit.NANOSECONDS.toMillis(nanos), text,
+                    List.copyOf(bindShape), batchSize, Thread.currentThread().getName());
+            synchronized (slowStatements) {
+                if (slowStatements.size() == capacity) {
+                    slowStatements.removeLast();
+                }
+                slowStatements.addFirst(statement);
+            }
+        }
+    }
+
+    //Start counting the statements of the request handled by the current thread
+    public void startRequest() {
+        REQUEST_STATEMENTS.set(new AtomicInteger());
+    }
+
+    //Stop counting and record the number of statements of the request
+    public void endRequest(String uri) {
+        AtomicInteger counter = REQUEST_STATEMENTS.get();
+        REQUEST_STATEMENTS.remove();
+        if (counter == null) {
+            return;
+        }
+        DistributionSummary.builder("recommender.db.request.statements")
+                .description("Number of JDBC statements executed by an HTTP request")
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(counter.get());
+    }
+
+    //The lookup running on another thread with its statements counted for the request of the calling thread
+    public static <T> Supplier<T> propagate(Supplier<T> lookup) {
+        AtomicInteger counter = REQUEST_STATEMENTS.get();
+        return () -> {
+            AtomicInteger previous = REQUEST_STATEMENTS.get();
+            REQUEST_STATEMENTS.set(counter);
+            try {
+                return lookup.get();
+            } finally {
+                REQUEST_STATEMENTS.set(previous);
+            }
+        };
+    }
+
+    //Slow statements, the most recent first
+    public List<SlowStatement> getSlowStatements() {
+        synchronized (slowStatements) {
+            return new ArrayList<>(slowStatements);
+        }
+    }
+
+    public void clear() {
+        synchronized (slowStatements) {
+            slowStatements.clear();
+        }
+    }
+
+    /**
+     * A statement slower than the threshold. The bind shape lists the type of each
+     * parameter (not its value); batchSize is 0 for statements that were not batched.
+     */
+    public record SlowStatement(Instant executedAt, long durationMs, String sql, List<String> bindShape,
+                                int batchSize, String thread) {
+    }
+}
@@ -0,0 +1,137 @@
+package com.contenetwise.recommender.services.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Data source whose statements report their SQL, bind parameter types and duration to
+ * the {@link StatementMonitor}. The pool stays reachable through unwrapping, so the
+ * pool metrics and health checks keep working.
+ */
+public class StatementTimingDataSource extends DelegatingDataSource {
+
+    private final Supplier<StatementMonitor> monitor;
+
+    public StatementTimingDataSource(DataSource targetDataSource, Supplier<StatementMonitor> monitor) {
+        super(targetDataSource);
+        this.monitor = monitor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(super.getConnection(username, password));
+    }
+
+    private Connection connection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            }
+            Object result = invoke(connection, method, args);
+            if (result instanceof CallableStatement statement) {
+                return proxy(CallableStatement.class, statement, new StatementHandler(statement, (String) args[0]));
+            }
+            if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, statement, new StatementHandler(statement, (String) args[0]));
+            }
+            if (result instanceof Statement statement) {
+                return proxy(Statement.class, statement, new StatementHandler(statement, null));
+            }
+            return result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StatementTimingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    //Collects the bind parameter types of a statement and times its executions
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final String preparedSql;
+        private final List<String> bindShape = new ArrayList<>();
+        private final List<String> batchSql = new ArrayList<>();
+        private int batchSize;
+
+        StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, name.equals("setNull") || args[1] == null ? "null"
+                        : name.equals("setObject") ? args[1].getClass().getSimpleName() : name.substring(3));
+            } else if (name.equals("clearParameters")) {
+                bindShape.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+                if (args != null && args.length == 1) {
+                    batchSql.add((String) args[0]);
+                }
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+                batchSql.clear();
+            } else if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            return StatementTimingDataSource.invoke(statement, method, args);
+        }
+
+        private void bind(int index, String type) {
+            while (bindShape.size() < index) {
+                bindShape.add("?");
+            }
+            bindShape.set(index - 1, type);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            boolean batch = method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch");
+            String sql = args != null && args.length > 0 && args[0] instanceof String text ? text
+                    : batch && !batchSql.isEmpty() ? String.join(";\n", batchSql) : preparedSql;
+            long start = System.nanoTime();
+            try {
+                return StatementTimingDataSource.invoke(statement, method, args);
+            } finally {
+                monitor.get().record(sql, bindShape, batch ? batchSize : 0, System.nanoTime() - start);
+                if (batch) {
+                    batchSize = 0;
+                    batchSql.clear();
+                }
+            }
+        }
+    }
+}
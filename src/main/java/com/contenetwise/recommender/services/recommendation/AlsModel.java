@@ -0,0 +1,65 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a trained matrix factorization. Factors are stored row-major
+ * in flat arrays: the factors of user u are at [u * rank, (u + 1) * rank).
+ */
+public final class AlsModel {
+
+    static final AlsModel EMPTY = new AlsModel(0, Map.of(), new long[0], new float[0], new float[0]);
+
+    private final int rank;
+    private final Map<Long, Integer> userIndexes;
+    private final long[] movieIds;
+    private final float[] userFactors;
+    private final float[] itemFactors;
+
+    AlsModel(int rank, Map<Long, Integer> userIndexes, long[] movieIds, float[] userFactors, float[] itemFactors) {
+        this.rank = rank;
+        this.userIndexes = userIndexes;
+        this.movieIds = movieIds;
+        this.userFactors = userFactors;
+        this.itemFactors = itemFactors;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int userCount() {
+        return userIndexes.size();
+    }
+
+    public int movieCount() {
+        return movieIds.length;
+    }
+
+    public boolean hasUser(Long userId) {
+        return userIndexes.containsKey(userId);
+    }
+
+    //Predicted preference of the user for every movie of the model, by item position (see movieId)
+    public float[] predict(Long userId) {
+        Integer user = userIndexes.get(userId);
+        float[] predictions = new float[movieIds.length];
+        if (user == null) {
+            return predictions;
+        }
+        int userOffset = user * rank;
+        for (int item = 0; item < movieIds.length; item++) {
+            int itemOffset = item * rank;
+            float dot = 0f;
+            for (int f = 0; f < rank; f++) {
+                dot += userFactors[userOffset + f] * itemFactors[itemOffset + f];
+            }
+            predictions[item] = dot;
+        }
+        return predictions;
+    }
+
+    public long movieId(int item) {
+        return movieIds[item];
+    }
+}
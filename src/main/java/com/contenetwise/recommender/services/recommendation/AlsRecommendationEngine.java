@@ -0,0 +1,69 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Ranking;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Recommends the movies with the highest predicted preference in the latest ALS model.
+ * Users unknown to the model (created after the last training) get no recommendations
+ * so the service falls back to the genre engine.
+ */
+@Component
+public class AlsRecommendationEngine implements RecommendationEngine {
+
+    public static final String NAME = "als";
+
+    private final AlsTrainer trainer;
+    private final int maxResults;
+
+    public AlsRecommendationEngine(AlsTrainer trainer, @Value("${recommender.als.max-results:100}") int maxResults) {
+        this.trainer = trainer;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Long> recommend(Long userId, List<Ranking> rankings) {
+        // Read the model once so the whole request uses the same snapshot
+        AlsModel model = trainer.getModel();
+        if (!model.hasUser(userId)) {
+            return List.of();
+        }
+        Set<Long> ratedMovieIds = rankings.stream()
+                .map(r -> r.getMovie().getId())
+                .collect(Collectors.toSet());
+
+        // Keep the best predictions in a bounded min-heap
+        float[] predictions = model.predict(userId);
+        PriorityQueue<Integer> best = new PriorityQueue<>(maxResults + 1,
+                (a, b) -> Float.compare(predictions[a], predictions[b]));
+        for (int item = 0; item < predictions.length; item++) {
+            if (ratedMovieIds.contains(model.movieId(item))) {
+                continue;
+            }
+            best.offer(item);
+            if (best.size() > maxResults) {
+                best.poll();
+            }
+        }
+
+        List<Long> movieIds = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            movieIds.add(model.movieId(best.poll()));
+        }
+        Collections.reverse(movieIds);
+        return movieIds;
+    }
+}
@@ -0,0 +1,369 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.repositories.RankingRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Alternating least squares trainer. User and item factors are solved alternately,
+ * each half-iteration split across a fork-join pool sized to the available cores.
+ * The trained model is published as an immutable {@link AlsModel} that readers pick
+ * up atomically, so requests keep using the previous model while training runs.
+ * <p>
+ * In explicit mode the normalized 1..5 scores are fitted directly. In implicit mode
+ * every ranking is an observed preference with confidence 1 + alpha * score.
+ */
+@Component
+public class AlsTrainer {
+
+    public static final String EXPLICIT = "explicit";
+    public static final String IMPLICIT = "implicit";
+
+    private static final int LEAF_ROWS = 32;
+
+    private final RankingRepository rankingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final boolean implicit;
+    private final int rank;
+    private final int iterations;
+    private final double lambda;
+    private final double alpha;
+    private final ForkJoinPool pool;
+    private static final Logger logger = LoggerFactory.getLogger(AlsTrainer.class);
+
+    private final AtomicReference<AlsModel> model = new AtomicReference<>(AlsModel.EMPTY);
+    private final Timer trainingTimer;
+    private final Timer iterationTimer;
+    private volatile double lastLoss = Double.NaN;
+    private volatile int lastIteration;
+
+    public AlsTrainer(RankingRepository rankingRepository, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                      @Value("${recommender.als.enabled:false}") boolean enabled,
+                      @Value("${recommender.als.mode:" + EXPLICIT + "}") String mode,
+                      @Value("${recommender.als.rank:20}") int rank,
+                      @Value("${recommender.als.iterations:10}") int iterations,
+                      @Value("${recommender.als.lambda:0.1}") double lambda,
+                      @Value("${recommender.als.alpha:10}") double alpha) {
+        this.rankingRepository = rankingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.implicit = IMPLICIT.equalsIgnoreCase(mode);
+        this.rank = rank;
+        this.iterations = iterations;
+        this.lambda = lambda;
+        this.alpha = alpha;
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        String modeTag = implicit ? IMPLICIT : EXPLICIT;
+        this.trainingTimer = Timer.builder("recommender.als.training")
+                .description("Duration of a full ALS training run")
+                .tag("mode", modeTag)
+                .register(meterRegistry);
+        this.iterationTimer = Timer.builder("recommender.als.iteration")
+                .description("Duration of one ALS iteration (user and item solves)")
+                .tag("mode", modeTag)
+                .register(meterRegistry);
+        Gauge.builder("recommender.als.loss", this, trainer -> trainer.lastLoss)
+                .description("Training loss after the last completed ALS iteration")
+                .tag("mode", modeTag)
+                .register(meterRegistry);
+        Gauge.builder("recommender.als.last.iteration", this, trainer -> trainer.lastIteration)
+                .description("Number of the last completed ALS iteration")
+                .tag("mode", modeTag)
+                .register(meterRegistry);
+    }
+
+    public AlsModel getModel() {
+        return model.get();
+    }
+
+    //Train once shortly after startup, then on the configured cron schedule
+    @Scheduled(initialDelayString = "${recommender.als.initial-delay:PT30S}")
+    @Scheduled(cron = "${recommender.als.cron:0 0 4 * * *}")
+    public void train() {
+        if (!enabled) {
+            return;
+        }
+        trainingTimer.record(() -> {
+            // Only the loading needs a connection, training runs outside the transaction
+            Ratings ratings = transactionTemplate.execute(status -> {
+                try (Stream<Object[]> rows = rankingRepository.streamUserScores()) {
+                    return Ratings.load(rows);
+                }
+            });
+            if (ratings.movieIds.length == 0) {
+                logger.info("No rankings available, skipping ALS training");
+                return;
+            }
+            model.set(fit(ratings));
+        });
+        logger.info("ALS model trained for {} users and {} movies, loss {}",
+                model.get().userCount(), model.get().movieCount(), lastLoss);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private AlsModel fit(Ratings ratings) {
+        int users = ratings.userIds.length;
+        int items = ratings.movieIds.length;
+        Random random = new Random(42);
+        float[] userFactors = randomFactors(users, random);
+        float[] itemFactors = randomFactors(items, random);
+
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            long start = System.nanoTime();
+            solve(ratings.userOffsets, ratings.userItems, ratings.userScores, itemFactors, items, userFactors);
+            solve(ratings.itemOffsets, ratings.itemUsers, ratings.itemScores, userFactors, users, itemFactors);
+            iterationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            lastLoss = loss(ratings, userFactors, itemFactors);
+            lastIteration = iteration;
+            logger.debug("ALS iteration {} finished with loss {}", iteration, lastLoss);
+        }
+
+        Map<Long, Integer> userIndexes = new HashMap<>(users * 2);
+        for (int u = 0; u < users; u++) {
+            userIndexes.put(ratings.userIds[u], u);
+        }
+        return new AlsModel(rank, userIndexes, ratings.movieIds, userFactors, itemFactors);
+    }
+
+    private float[] randomFactors(int rows, Random random) {
+        float[] factors = new float[rows * rank];
+        float scale = (float) (1d / Math.sqrt(rank));
+        for (int i = 0; i < factors.length; i++) {
+            factors[i] = random.nextFloat() * scale;
+        }
+        return factors;
+    }
+
+    //Solve the factors of every row of a CSR matrix while the other side stays fixed
+    private void solve(int[] offsets, int[] columns, float[] scores, float[] fixed, int fixedRows, float[] target) {
+        double[] gram = implicit ? gram(fixed, fixedRows) : null;
+        pool.invoke(new SolveRange(offsets, columns, scores, fixed, gram, target, 0, offsets.length - 1));
+    }
+
+    //Y^T Y of the fixed side, shared by every row in implicit mode
+    private double[] gram(float[] fixed, int fixedRows) {
+        double[] gram = new double[rank * rank];
+        for (int row = 0; row < fixedRows; row++) {
+            int offset = row * rank;
+            for (int a = 0; a < rank; a++) {
+                for (int b = 0; b < rank; b++) {
+                    gram[a * rank + b] += fixed[offset + a] * fixed[offset + b];
+                }
+            }
+        }
+        return gram;
+    }
+
+    private final class SolveRange extends RecursiveAction {
+        private final int[] offsets;
+        private final int[] columns;
+        private final float[] scores;
+        private final float[] fixed;
+        private final double[] gram;
+        private final float[] target;
+        private final int from;
+        private final int to;
+
+        SolveRange(int[] offsets, int[] columns, float[] scores, float[] fixed, double[] gram, float[] target, int from, int to) {
+            this.offsets = offsets;
+            this.columns = columns;
+            this.scores = scores;
+            this.fixed = fixed;
+            this.gram = gram;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SolveRange(offsets, columns, scores, fixed, gram, target, from, middle),
+                        new SolveRange(offsets, columns, scores, fixed, gram, target, middle, to));
+                return;
+            }
+            double[] a = new double[rank * rank];
+            double[] b = new double[rank];
+            for (int row = from; row < to; row++) {
+                int count = offsets[row + 1] - offsets[row];
+                if (count == 0) {
+                    continue;
+                }
+                if (gram != null) {
+                    System.arraycopy(gram, 0, a, 0, a.length);
+                } else {
+                    Arrays.fill(a, 0d);
+                }
+                Arrays.fill(b, 0d);
+                for (int p = offsets[row]; p < offsets[row + 1]; p++) {
+                    int offset = columns[p] * rank;
+                    // Explicit: fit the score. Implicit: fit preference 1 with confidence 1 + alpha * score.
+                    double weight = gram != null ? alpha * scores[p] : 1d;
+                    double value = gram != null ? 1d + alpha * scores[p] : scores[p];
+                    for (int i = 0; i < rank; i++) {
+                        double yi = fixed[offset + i];
+                        b[i] += value * yi;
+                        for (int j = 0; j <= i; j++) {
+                            a[i * rank + j] += weight * yi * fixed[offset + j];
+                        }
+                    }
+                }
+                // Weighted-lambda regularization for explicit feedback, plain lambda for implicit
+                double regularization = gram != null ? lambda : lambda * count;
+                for (int i = 0; i < rank; i++) {
+                    a[i * rank + i] += regularization;
+                    for (int j = 0; j < i; j++) {
+                        a[j * rank + i] = a[i * rank + j];
+                    }
+                }
+                choleskySolve(a, b, rank);
+                for (int i = 0; i < rank; i++) {
+                    target[row * rank + i] = (float) b[i];
+                }
+            }
+        }
+    }
+
+    //Solve A x = b in place for a symmetric positive definite A; the solution is left in b
+    static void choleskySolve(double[] a, double[] b, int n) {
+        for (int j = 0; j < n; j++) {
+            double diagonal = a[j * n + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= a[j * n + k] * a[j * n + k];
+            }
+            diagonal = Math.sqrt(Math.max(diagonal, 1e-12));
+            a[j * n + j] = diagonal;
+            for (int i = j + 1; i < n; i++) {
+                double value = a[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    value -= a[i * n + k] * a[j * n + k];
+                }
+                a[i * n + j] = value / diagonal;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            double value = b[i];
+            for (int k = 0; k < i; k++) {
+                value -= a[i * n + k] * b[k];
+            }
+            b[i] = value / a[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double value = b[i];
+            for (int k = i + 1; k < n; k++) {
+                value -= a[k * n + i] * b[k];
+            }
+            b[i] = value / a[i * n + i];
+        }
+    }
+
+    //RMSE over the observed scores (explicit) or confidence weighted error on the observed preferences (implicit)
+    private double loss(Ratings ratings, float[] userFactors, float[] itemFactors) {
+        double error = 0d;
+        double weights = 0d;
+        for (int u = 0; u < ratings.userIds.length; u++) {
+            for (int p = ratings.userOffsets[u]; p < ratings.userOffsets[u + 1]; p++) {
+                int item = ratings.userItems[p];
+                double prediction = 0d;
+                for (int f = 0; f < rank; f++) {
+                    prediction += userFactors[u * rank + f] * itemFactors[item * rank + f];
+                }
+                double confidence = implicit ? 1d + alpha * ratings.userScores[p] : 1d;
+                double expected = implicit ? 1d : ratings.userScores[p];
+                error += confidence * (expected - prediction) * (expected - prediction);
+                weights += confidence;
+            }
+        }
+        return Math.sqrt(error / weights);
+    }
+
+    //Ranking scores as user -> items and item -> users CSR matrices
+    private static final class Ratings {
+        private long[] userIds;
+        private long[] movieIds;
+        private int[] userOffsets;
+        private int[] userItems;
+        private float[] userScores;
+        private int[] itemOffsets;
+        private int[] itemUsers;
+        private float[] itemScores;
+
+        static Ratings load(Stream<Object[]> rows) {
+            Map<Long, Integer> userIndexes = new HashMap<>();
+            Map<Long, Integer> itemIndexes = new HashMap<>();
+            List<int[]> pairs = new ArrayList<>();
+            List<Float> scores = new ArrayList<>();
+            rows.forEach(row -> {
+                Integer score = (Integer) row[2];
+                int user = userIndexes.computeIfAbsent((Long) row[0], id -> userIndexes.size());
+                int item = itemIndexes.computeIfAbsent((Long) row[1], id -> itemIndexes.size());
+                pairs.add(new int[]{user, item});
+                scores.add(score.floatValue());
+            });
+
+            Ratings ratings = new Ratings();
+            ratings.userIds = new long[userIndexes.size()];
+            userIndexes.forEach((id, index) -> ratings.userIds[index] = id);
+            ratings.movieIds = new long[itemIndexes.size()];
+            itemIndexes.forEach((id, index) -> ratings.movieIds[index] = id);
+
+            ratings.userOffsets = new int[ratings.userIds.length + 1];
+            ratings.itemOffsets = new int[ratings.movieIds.length + 1];
+            for (int[] pair : pairs) {
+                ratings.userOffsets[pair[0] + 1]++;
+                ratings.itemOffsets[pair[1] + 1]++;
+            }
+            for (int u = 0; u < ratings.userIds.length; u++) {
+                ratings.userOffsets[u + 1] += ratings.userOffsets[u];
+            }
+            for (int i = 0; i < ratings.movieIds.length; i++) {
+                ratings.itemOffsets[i + 1] += ratings.itemOffsets[i];
+            }
+            ratings.userItems = new int[pairs.size()];
+            ratings.userScores = new float[pairs.size()];
+            ratings.itemUsers = new int[pairs.size()];
+            ratings.itemScores = new float[pairs.size()];
+            int[] userFill = Arrays.copyOf(ratings.userOffsets, ratings.userIds.length);
+            int[] itemFill = Arrays.copyOf(ratings.itemOffsets, ratings.movieIds.length);
+            for (int p = 0; p < pairs.size(); p++) {
+                int[] pair = pairs.get(p);
+                int userPosition = userFill[pair[0]]++;
+                ratings.userItems[userPosition] = pair[1];
+                ratings.userScores[userPosition] = scores.get(p);
+                int itemPosition = itemFill[pair[1]]++;
+                ratings.itemUsers[itemPosition] = pair[0];
+                ratings.itemScores[itemPosition] = scores.get(p);
+            }
+            return ratings;
+        }
+    }
+}
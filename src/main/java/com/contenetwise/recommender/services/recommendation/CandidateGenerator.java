@@ -0,0 +1,16 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+/**
+ * First stage of the recommendation pipeline: a source of movies worth scoring for a
+ * user. Every generator bean contributes to the candidates of every computation.
+ */
+public interface CandidateGenerator {
+
+    //Name reported in the candidate metrics
+    String getName();
+
+    //Ids of the candidate movies, the pipeline drops the ones the user already ranked
+    Roaring64Bitmap generate(UserProfile profile);
+}
@@ -0,0 +1,20 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Second stage of the recommendation pipeline: one criterion of the score of the
+ * candidates. The pipeline ranks the candidates by the weighted sum of every scorer bean.
+ */
+public interface CandidateScorer {
+
+    //Name used in the configuration of the weight
+    String getName();
+
+    //Weight of this scorer in the sum, 0 disables it
+    double getWeight();
+
+    //Score of a candidate movie for the user, higher is better. Called once per computation
+    //so the per-user work is done before scoring the candidates
+    LongToDoubleFunction prepare(UserProfile profile);
+}
@@ -0,0 +1,54 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.services.search.GenreIndex;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Mean affinity of the user to the genres of the movie: a movie of genres the user
+ * rated 5 scores higher than one of genres they rated 4, and genres they rated low
+ * pull the score down. Genres the user never ranked do not count.
+ */
+@Component
+public class GenreAffinityScorer implements CandidateScorer {
+
+    private final GenreIndex genreIndex;
+    private final double weight;
+
+    public GenreAffinityScorer(GenreIndex genreIndex, @Value("${recommender.pipeline.weights.genre:1.0}") double weight) {
+        this.genreIndex = genreIndex;
+        this.weight = weight;
+    }
+
+    @Override
+    public String getName() {
+        return "genre";
+    }
+
+    @Override
+    public double getWeight() {
+        return weight;
+    }
+
+    @Override
+    public LongToDoubleFunction prepare(UserProfile profile) {
+        Map<String, Double> affinities = profile.genreAffinities();
+        List<Map.Entry<String, Roaring64Bitmap>> genres = List.copyOf(genreIndex.byGenre(affinities.keySet()).entrySet());
+        return movieId -> {
+            double sum = 0d;
+            int count = 0;
+            for (Map.Entry<String, Roaring64Bitmap> genre : genres) {
+                if (genre.getValue().contains(movieId)) {
+                    sum += affinities.get(genre.getKey());
+                    count++;
+                }
+            }
+            return count == 0 ? 0d : sum / count;
+        };
+    }
+}
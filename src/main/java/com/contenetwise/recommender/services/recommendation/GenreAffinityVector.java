@@ -0,0 +1,66 @@
+package com.contenetwise.recommender.services.recommendation;
+
+
+import com.contenetwise.recommender.domain.RankingScale;
+import java.util.Arrays;
+
+/**
+ * Genre affinities of one user in primitive arrays indexed by genre id: for every genre,
+ * the sum of the affinities of the user's rankings of its movies, their number, and how
+ * many of them are high ratings. Ranking changes are applied in place.
+ */
+public final class GenreAffinityVector {
+
+    private float[] sums;
+    private int[] counts;
+    private int[] highlyRated;
+
+    GenreAffinityVector(int genres) {
+        this.sums = new float[genres];
+        this.counts = new int[genres];
+        this.highlyRated = new int[genres];
+    }
+
+    //Normalized 1..5 score mapped to -1..1, the middle of the scale is neutral
+    public static double affinity(int score) {
+        return (score - 3) / 2d;
+    }
+
+    //Replace the previous score of a ranking of a movie of the genre by the new one, either may be null
+    synchronized void update(int genreId, Integer previousScore, Integer score) {
+        if (genreId >= counts.length) {
+            int length = Math.max(genreId + 1, counts.length * 2);
+            sums = Arrays.copyOf(sums, length);
+            counts = Arrays.copyOf(counts, length);
+            highlyRated = Arrays.copyOf(highlyRated, length);
+        }
+        if (previousScore != null) {
+            sums[genreId] -= (float) affinity(previousScore);
+            counts[genreId]--;
+            if (previousScore >= RankingScale.HIGHLY_RATED_THRESHOLD) {
+                highlyRated[genreId]--;
+            }
+        }
+        if (score != null) {
+            sums[genreId] += (float) affinity(score);
+            counts[genreId]++;
+            if (score >= RankingScale.HIGHLY_RATED_THRESHOLD) {
+                highlyRated[genreId]++;
+            }
+        }
+    }
+
+    //Visit the genres the user ranked with their mean affinity
+    synchronized void forEach(GenreAffinityConsumer consumer) {
+        for (int genreId = 0; genreId < counts.length; genreId++) {
+            if (counts[genreId] > 0) {
+                consumer.accept(genreId, sums[genreId] / counts[genreId], highlyRated[genreId] > 0);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface GenreAffinityConsumer {
+        void accept(int genreId, double affinity, boolean highlyRated);
+    }
+}
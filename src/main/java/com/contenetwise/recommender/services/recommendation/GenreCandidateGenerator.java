@@ -0,0 +1,28 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.services.search.GenreIndex;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Movies of the genres of the movies the user rated highly.
+ */
+@Component
+public class GenreCandidateGenerator implements CandidateGenerator {
+
+    private final GenreIndex genreIndex;
+
+    public GenreCandidateGenerator(GenreIndex genreIndex) {
+        this.genreIndex = genreIndex;
+    }
+
+    @Override
+    public String getName() {
+        return "genre";
+    }
+
+    @Override
+    public Roaring64Bitmap generate(UserProfile profile) {
+        return genreIndex.anyOf(profile.preferredGenres());
+    }
+}
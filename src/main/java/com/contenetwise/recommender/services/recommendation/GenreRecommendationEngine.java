@@ -0,0 +1,72 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.services.PopularityService;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recommends the movies sharing a genre with any movie the user rated highly,
+ * ordered by popularity.
+ */
+@Component
+public class GenreRecommendationEngine implements RecommendationEngine {
+
+    public static final String NAME = "genre";
+
+    private final GenreIndex genreIndex;
+    private final PopularityService popularityService;
+    private final RecommendationMetrics metrics;
+
+    public GenreRecommendationEngine(GenreIndex genreIndex, PopularityService popularityService, RecommendationMetrics metrics) {
+        this.genreIndex = genreIndex;
+        this.popularityService = popularityService;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Long> recommend(Long userId, List<Ranking> rankings) {
+        // Extract genres from highly rated movies (rank1 >= 4 or mapped viewing >= 4)
+        return recommend(metrics.time(RecommendationMetrics.PREFERENCES, () -> UserProfile.of(userId, rankings)), rankings);
+    }
+
+    @Override
+    public List<Long> recommend(UserProfile profile, List<Ranking> rankings) {
+        Set<String> preferredGenres = profile.preferredGenres();
+        if (preferredGenres.isEmpty()) {
+            return List.of();
+        }
+
+        // Find movies by genre and exclude the rated ones
+        Roaring64Bitmap candidates = metrics.time(RecommendationMetrics.CANDIDATES, () -> genreIndex.anyOf(preferredGenres));
+        metrics.recordCandidates(NAME, candidates.getLongCardinality());
+        metrics.time(RecommendationMetrics.EXCLUSION, () -> {
+            rankings.forEach(r -> candidates.removeLong(r.getMovie().getId()));
+            return candidates;
+        });
+
+        // Sort them by number of rates, most rated first
+        List<Long> movieIds = metrics.time(RecommendationMetrics.RANKING, () -> {
+            List<Long> sorted = new ArrayList<>((int) candidates.getLongCardinality());
+            LongIterator iterator = candidates.getLongIterator();
+            while (iterator.hasNext()) {
+                sorted.add(iterator.next());
+            }
+            sorted.sort(Comparator.<Long>comparingInt(popularityService::getCount).reversed());
+            return sorted;
+        });
+        return movieIds;
+    }
+}
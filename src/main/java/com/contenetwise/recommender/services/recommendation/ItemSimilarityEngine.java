@@ -0,0 +1,73 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.RankingScale;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Item-item collaborative filtering. Each movie the user ranked contributes its
+ * precomputed neighbors weighted by similarity and by the user's score, so the cost
+ * depends on the user's history instead of the catalog size.
+ */
+@Component
+public class ItemSimilarityEngine implements RecommendationEngine {
+
+    public static final String NAME = "item-cf";
+
+    private final ItemSimilarityIndex similarityIndex;
+
+    public ItemSimilarityEngine(ItemSimilarityIndex similarityIndex) {
+        this.similarityIndex = similarityIndex;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Long> recommend(Long userId, List<Ranking> rankings) {
+        ItemSimilarityIndex.SimilarityModel model = similarityIndex.getModel();
+        Set<Long> ratedMovieIds = rankings.stream()
+                .map(r -> r.getMovie().getId())
+                .collect(Collectors.toSet());
+        double mean = rankings.stream()
+                .map(RankingScale::score)
+                .filter(score -> score != null)
+                .mapToInt(Integer::intValue)
+                .average()
+                .orElse(0d);
+
+        // Sum of similarity * (score - user mean) over the neighbors of every ranked movie
+        Map<Long, Double> scores = new HashMap<>();
+        for (Ranking ranking : rankings) {
+            Integer score = RankingScale.score(ranking);
+            if (score == null) {
+                continue;
+            }
+            double weight = score - mean;
+            if (weight == 0d) {
+                // A user with a flat history still prefers what they ranked
+                weight = score / 5d;
+            }
+            double finalWeight = weight;
+            model.forEachNeighbor(ranking.getMovie().getId(), (movieId, similarity) -> {
+                if (!ratedMovieIds.contains(movieId)) {
+                    scores.merge(movieId, similarity * finalWeight, Double::sum);
+                }
+            });
+        }
+
+        return scores.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0d)
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
@@ -0,0 +1,340 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.repositories.RankingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Item-item similarity model computed from the ranking table. Only the top-K most
+ * similar movies of every movie are kept, in flat primitive arrays. The model is
+ * recomputed in parallel on a background schedule and swapped in atomically.
+ */
+@Component
+public class ItemSimilarityIndex {
+
+    public static final String COSINE = "cosine";
+    public static final String ADJUSTED_COSINE = "adjusted-cosine";
+
+    private final RankingRepository rankingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int neighbors;
+    private final boolean adjusted;
+    private static final Logger logger = LoggerFactory.getLogger(ItemSimilarityIndex.class);
+
+    private volatile SimilarityModel model = SimilarityModel.EMPTY;
+
+    public ItemSimilarityIndex(RankingRepository rankingRepository, PlatformTransactionManager transactionManager,
+                               @Value("${recommender.item-cf.neighbors:50}") int neighbors,
+                               @Value("${recommender.item-cf.similarity:" + ADJUSTED_COSINE + "}") String similarity) {
+        this.rankingRepository = rankingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.neighbors = neighbors;
+        this.adjusted = ADJUSTED_COSINE.equalsIgnoreCase(similarity);
+    }
+
+    public SimilarityModel getModel() {
+        return model;
+    }
+
+    //Recompute the neighbor lists from the ranking table and publish the new model
+    @Scheduled(initialDelayString = "${recommender.item-cf.initial-delay:PT10S}",
+            fixedDelayString = "${recommender.item-cf.refresh-interval:PT30M}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        // Only the loading needs a connection, the similarities are computed outside the transaction
+        UserRatings ratings = transactionTemplate.execute(status -> {
+            try (Stream<Object[]> rows = rankingRepository.streamUserScores()) {
+                return UserRatings.load(rows);
+            }
+        });
+        model = compute(ratings);
+        logger.info("Item similarity model rebuilt for {} movies in {} ms",
+                model.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private SimilarityModel compute(UserRatings ratings) {
+        List<Long> itemIds = ratings.itemIds();
+        int itemCount = itemIds.size();
+        if (itemCount == 0) {
+            return SimilarityModel.EMPTY;
+        }
+
+        // User -> items matrix (CSR), centered on the user mean for adjusted cosine
+        List<RatingList> users = ratings.users();
+        int[] userOffsets = new int[users.size() + 1];
+        for (int u = 0; u < users.size(); u++) {
+            userOffsets[u + 1] = userOffsets[u] + users.get(u).size;
+        }
+        int[] userItems = new int[userOffsets[users.size()]];
+        float[] userValues = new float[userItems.length];
+        int[] itemDegree = new int[itemCount];
+        double[] itemNorms = new double[itemCount];
+        for (int u = 0; u < users.size(); u++) {
+            RatingList userRatings = users.get(u);
+            float mean = adjusted ? userRatings.mean() : 0f;
+            for (int i = 0; i < userRatings.size; i++) {
+                int position = userOffsets[u] + i;
+                float value = userRatings.scores[i] - mean;
+                userItems[position] = userRatings.items[i];
+                userValues[position] = value;
+                itemDegree[userRatings.items[i]]++;
+                itemNorms[userRatings.items[i]] += value * value;
+            }
+        }
+
+        // Item -> users matrix (CSR), the transpose of the above
+        int[] itemOffsets = new int[itemCount + 1];
+        for (int i = 0; i < itemCount; i++) {
+            itemOffsets[i + 1] = itemOffsets[i] + itemDegree[i];
+            itemNorms[i] = Math.sqrt(itemNorms[i]);
+        }
+        int[] itemUsers = new int[userItems.length];
+        float[] itemValues = new float[userItems.length];
+        int[] fill = Arrays.copyOf(itemOffsets, itemCount);
+        for (int u = 0; u < users.size(); u++) {
+            for (int p = userOffsets[u]; p < userOffsets[u + 1]; p++) {
+                int position = fill[userItems[p]]++;
+                itemUsers[position] = u;
+                itemValues[position] = userValues[p];
+            }
+        }
+
+        // Top-K neighbors per item, computed in parallel over chunks of items
+        int k = Math.min(neighbors, itemCount - 1);
+        int[] neighborItems = new int[itemCount * k];
+        float[] neighborSimilarities = new float[itemCount * k];
+        int[] neighborCounts = new int[itemCount];
+        int chunkSize = Math.max(64, itemCount / (Runtime.getRuntime().availableProcessors() * 4));
+        int chunks = (itemCount + chunkSize - 1) / chunkSize;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            double[] dots = new double[itemCount];
+            int[] touched = new int[itemCount];
+            int[] stamps = new int[itemCount];
+            TopK topK = new TopK(k);
+            int end = Math.min(itemCount, (chunk + 1) * chunkSize);
+            for (int i = chunk * chunkSize; i < end; i++) {
+                int touchedCount = 0;
+                for (int p = itemOffsets[i]; p < itemOffsets[i + 1]; p++) {
+                    int u = itemUsers[p];
+                    float value = itemValues[p];
+                    for (int q = userOffsets[u]; q < userOffsets[u + 1]; q++) {
+                        int j = userItems[q];
+                        if (j == i) {
+                            continue;
+                        }
+                        if (stamps[j] != i + 1) {
+                            stamps[j] = i + 1;
+                            touched[touchedCount++] = j;
+                        }
+                        dots[j] += value * userValues[q];
+                    }
+                }
+                topK.clear();
+                for (int t = 0; t < touchedCount; t++) {
+                    int j = touched[t];
+                    double denominator = itemNorms[i] * itemNorms[j];
+                    if (denominator > 0d && dots[j] > 0d) {
+                        topK.offer(j, (float) (dots[j] / denominator));
+                    }
+                    dots[j] = 0d;
+                }
+                neighborCounts[i] = topK.drainTo(neighborItems, neighborSimilarities, i * k);
+            }
+        });
+
+        long[] ids = new long[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            ids[i] = itemIds.get(i);
+        }
+        return new SimilarityModel(ids, ratings.itemIndexes(), k, neighborItems, neighborSimilarities, neighborCounts);
+    }
+
+    /**
+     * Immutable snapshot of the neighbor lists. Neighbors of item i are stored at
+     * [i * k, i * k + counts[i]) in the item and similarity arrays, best first.
+     */
+    public static final class SimilarityModel {
+
+        static final SimilarityModel EMPTY = new SimilarityModel(new long[0], Map.of(), 0, new int[0], new float[0], new int[0]);
+
+        private final long[] movieIds;
+        private final Map<Long, Integer> indexes;
+        private final int k;
+        private final int[] neighborItems;
+        private final float[] neighborSimilarities;
+        private final int[] neighborCounts;
+
+        SimilarityModel(long[] movieIds, Map<Long, Integer> indexes, int k,
+                        int[] neighborItems, float[] neighborSimilarities, int[] neighborCounts) {
+            this.movieIds = movieIds;
+            this.indexes = indexes;
+            this.k = k;
+            this.neighborItems = neighborItems;
+            this.neighborSimilarities = neighborSimilarities;
+            this.neighborCounts = neighborCounts;
+        }
+
+        public int size() {
+            return movieIds.length;
+        }
+
+        //Visit the neighbors of a movie, best first
+        public void forEachNeighbor(Long movieId, NeighborConsumer consumer) {
+            Integer item = indexes.get(movieId);
+            if (item == null) {
+                return;
+            }
+            int start = item * k;
+            for (int n = start; n < start + neighborCounts[item]; n++) {
+                consumer.accept(movieIds[neighborItems[n]], neighborSimilarities[n]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface NeighborConsumer {
+        void accept(long movieId, float similarity);
+    }
+
+    //Normalized scores grouped by user, with dense indexes assigned to movies
+    private record UserRatings(Map<Long, Integer> itemIndexes, List<Long> itemIds, List<RatingList> users) {
+
+        static UserRatings load(Stream<Object[]> rows) {
+            Map<Long, Integer> itemIndexes = new HashMap<>();
+            List<Long> itemIds = new ArrayList<>();
+            Map<Long, RatingList> ratingsByUser = new HashMap<>();
+            rows.forEach(row -> {
+                Integer score = (Integer) row[2];
+                int item = itemIndexes.computeIfAbsent((Long) row[1], movieId -> {
+                    itemIds.add(movieId);
+                    return itemIds.size() - 1;
+                });
+                ratingsByUser.computeIfAbsent((Long) row[0], userId -> new RatingList()).add(item, score);
+            });
+            return new UserRatings(itemIndexes, itemIds, new ArrayList<>(ratingsByUser.values()));
+        }
+    }
+
+    //Growable list of (item, score) pairs of one user
+    private static final class RatingList {
+        private int[] items = new int[8];
+        private float[] scores = new float[8];
+        private int size;
+
+        void add(int item, float score) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            items[size] = item;
+            scores[size] = score;
+            size++;
+        }
+
+        float mean() {
+            float sum = 0f;
+            for (int i = 0; i < size; i++) {
+                sum += scores[i];
+            }
+            return sum / size;
+        }
+    }
+
+    //Bounded min-heap keeping the k highest similarities
+    private static final class TopK {
+        private final int[] items;
+        private final float[] similarities;
+        private int size;
+
+        TopK(int k) {
+            this.items = new int[k];
+            this.similarities = new float[k];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void offer(int item, float similarity) {
+            if (items.length == 0) {
+                return;
+            }
+            if (size < items.length) {
+                items[size] = item;
+                similarities[size] = similarity;
+                siftUp(size++);
+            } else if (similarity > similarities[0]) {
+                items[0] = item;
+                similarities[0] = similarity;
+                siftDown(0);
+            }
+        }
+
+        //Write the heap content best first at the offset and return the number of entries
+        int drainTo(int[] targetItems, float[] targetSimilarities, int offset) {
+            int count = size;
+            while (size > 0) {
+                targetItems[offset + size - 1] = items[0];
+                targetSimilarities[offset + size - 1] = similarities[0];
+                size--;
+                items[0] = items[size];
+                similarities[0] = similarities[size];
+                siftDown(0);
+            }
+            return count;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (similarities[parent] <= similarities[position]) {
+                    return;
+                }
+                swap(parent, position);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && similarities[left] < similarities[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && similarities[right] < similarities[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                swap(smallest, position);
+                position = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int item = items[a];
+            items[a] = items[b];
+            items[b] = item;
+            float similarity = similarities[a];
+            similarities[a] = similarities[b];
+            similarities[b] = similarity;
+        }
+    }
+}
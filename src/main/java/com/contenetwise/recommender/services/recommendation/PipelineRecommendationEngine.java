@@ -0,0 +1,115 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Ranking;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Recommends in three stages: every {@link CandidateGenerator} bean contributes movies
+ * worth considering, every {@link CandidateScorer} bean scores them, and only the
+ * best {@code recommender.recommendations.max-limit} are kept in a bounded heap. New
+ * generators and scorers are picked up by declaring them as beans.
+ */
+@Component
+public class PipelineRecommendationEngine implements RecommendationEngine {
+
+    public static final String NAME = "pipeline";
+
+    //Lowest score first, and the highest id first among equal scores, so the head is the worst kept movie
+    private static final Comparator<ScoredMovie> WORST_FIRST = Comparator.comparingDouble(ScoredMovie::score)
+            .thenComparing(Comparator.comparingLong(ScoredMovie::movieId).reversed());
+
+    private final List<CandidateGenerator> generators;
+    private final List<CandidateScorer> scorers;
+    private final RecommendationMetrics metrics;
+    private final int maxResults;
+    private static final Logger logger = LoggerFactory.getLogger(PipelineRecommendationEngine.class);
+
+    public PipelineRecommendationEngine(List<CandidateGenerator> generators, List<CandidateScorer> scorers,
+                                        RecommendationMetrics metrics,
+                                        @Value("${recommender.recommendations.max-limit:100}") int maxResults) {
+        this.generators = List.copyOf(generators);
+        this.scorers = scorers.stream().filter(scorer -> scorer.getWeight() != 0d).toList();
+        this.metrics = metrics;
+        this.maxResults = maxResults;
+        logger.info("Recommendation pipeline with generators {} and scorers {}",
+                generators.stream().map(CandidateGenerator::getName).toList(),
+                this.scorers.stream().map(scorer -> scorer.getName() + "=" + scorer.getWeight()).toList());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Long> recommend(Long userId, List<Ranking> rankings) {
+        return recommend(metrics.time(RecommendationMetrics.PREFERENCES, () -> UserProfile.of(userId, rankings)), rankings);
+    }
+
+    @Override
+    public List<Long> recommend(UserProfile profile, List<Ranking> rankings) {
+        // Union of the candidates of every generator, without the movies the user ranked
+        Roaring64Bitmap candidates = metrics.time(RecommendationMetrics.CANDIDATES, () -> {
+            Roaring64Bitmap union = new Roaring64Bitmap();
+            generators.forEach(generator -> union.or(generator.generate(profile)));
+            return union;
+        });
+        metrics.recordCandidates(NAME, candidates.getLongCardinality());
+        metrics.time(RecommendationMetrics.EXCLUSION, () -> {
+            profile.rankedMovieIds().forEach(candidates::removeLong);
+            return candidates;
+        });
+
+        return metrics.time(RecommendationMetrics.RANKING, () -> top(profile, candidates));
+    }
+
+    //The best scored candidates, best first
+    private List<Long> top(UserProfile profile, Roaring64Bitmap candidates) {
+        List<LongToDoubleFunction> functions = new ArrayList<>(scorers.size());
+        double[] weights = new double[scorers.size()];
+        for (int s = 0; s < scorers.size(); s++) {
+            functions.add(scorers.get(s).prepare(profile));
+            weights[s] = scorers.get(s).getWeight();
+        }
+
+        // Keep the best scores in a bounded min-heap
+        PriorityQueue<ScoredMovie> best = new PriorityQueue<>(maxResults + 1, WORST_FIRST);
+        LongIterator iterator = candidates.getLongIterator();
+        while (iterator.hasNext()) {
+            long movieId = iterator.next();
+            double score = 0d;
+            for (int s = 0; s < weights.length; s++) {
+                score += weights[s] * functions.get(s).applyAsDouble(movieId);
+            }
+            ScoredMovie scored = new ScoredMovie(movieId, score);
+            if (best.size() < maxResults) {
+                best.offer(scored);
+            } else if (WORST_FIRST.compare(scored, best.peek()) > 0) {
+                best.poll();
+                best.offer(scored);
+            }
+        }
+
+        List<Long> movieIds = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            movieIds.add(best.poll().movieId());
+        }
+        Collections.reverse(movieIds);
+        return movieIds;
+    }
+
+    private record ScoredMovie(long movieId, double score) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.services.PopularityService;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The most popular movies of the catalog, so users with few rankings still get
+ * candidates. The list is shared by every computation and recomputed after the
+ * refresh interval.
+ */
+@Component
+public class PopularCandidateGenerator implements CandidateGenerator {
+
+    private final PopularityService popularityService;
+    private final int count;
+    private final long refreshIntervalNanos;
+
+    private volatile Snapshot snapshot;
+
+    public PopularCandidateGenerator(PopularityService popularityService,
+                                     @Value("${recommender.pipeline.popular.count:200}") int count,
+                                     @Value("${recommender.pipeline.popular.refresh-interval:PT1M}") Duration refreshInterval) {
+        this.popularityService = popularityService;
+        this.count = count;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+    }
+
+    @Override
+    public String getName() {
+        return "popular";
+    }
+
+    @Override
+    public Roaring64Bitmap generate(UserProfile profile) {
+        Snapshot current = snapshot;
+        long now = System.nanoTime();
+        if (current == null || now - current.computedAt() > refreshIntervalNanos) {
+            // Concurrent computations may both recompute, the last one wins
+            current = new Snapshot(popularityService.mostPopular(count), now);
+            snapshot = current;
+        }
+        Roaring64Bitmap candidates = new Roaring64Bitmap();
+        current.movieIds().forEach(candidates::addLong);
+        return candidates;
+    }
+
+    private record Snapshot(List<Long> movieIds, long computedAt) {
+    }
+}
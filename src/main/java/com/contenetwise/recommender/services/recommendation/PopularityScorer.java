@@ -0,0 +1,42 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.services.PopularityService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Number of rankings of the movie on a log scale, from 0 (never ranked) to 1 (the
+ * most ranked movie), so a few blockbusters do not outweigh the other criteria.
+ */
+@Component
+public class PopularityScorer implements CandidateScorer {
+
+    private final PopularityService popularityService;
+    private final double weight;
+
+    public PopularityScorer(PopularityService popularityService, @Value("${recommender.pipeline.weights.popularity:0.5}") double weight) {
+        this.popularityService = popularityService;
+        this.weight = weight;
+    }
+
+    @Override
+    public String getName() {
+        return "popularity";
+    }
+
+    @Override
+    public double getWeight() {
+        return weight;
+    }
+
+    @Override
+    public LongToDoubleFunction prepare(UserProfile profile) {
+        double max = Math.log1p(popularityService.getMaxCount());
+        if (max == 0d) {
+            return movieId -> 0d;
+        }
+        return movieId -> Math.log1p(popularityService.getCount(movieId)) / max;
+    }
+}
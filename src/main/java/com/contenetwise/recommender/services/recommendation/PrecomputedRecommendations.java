@@ -0,0 +1,100 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.RecommendationRun;
+import com.contenetwise.recommender.repositories.RecommendationRunRepository;
+import com.contenetwise.recommender.repositories.UserRecommendationsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Serves the recommendations computed by the last completed run of the offline job.
+ * A user has none when they were created after the run started, when they changed
+ * a ranking since then, as recorded with their rankings, or when the run has no row
+ * for them: their recommendations are computed live instead. The run may complete on
+ * another instance, the last completed one is looked up again on the reload interval.
+ */
+@Component
+public class PrecomputedRecommendations {
+
+    private final UserRecommendationsRepository userRecommendationsRepository;
+    private final RecommendationRunRepository runRepository;
+    private final Counter served;
+    private final Counter live;
+    private static final Logger logger = LoggerFactory.getLogger(PrecomputedRecommendations.class);
+
+    private volatile RecommendationRun current;
+
+    public PrecomputedRecommendations(UserRecommendationsRepository userRecommendationsRepository,
+                                      RecommendationRunRepository runRepository, MeterRegistry meterRegistry) {
+        this.userRecommendationsRepository = userRecommendationsRepository;
+        this.runRepository = runRepository;
+        this.served = Counter.builder("recommender.recommendations.lookups")
+                .description("Recommendation computations answered by the offline job or computed live")
+                .tag("source", "precomputed")
+                .register(meterRegistry);
+        this.live = Counter.builder("recommender.recommendations.lookups")
+                .description("Recommendation computations answered by the offline job or computed live")
+                .tag("source", "live")
+                .register(meterRegistry);
+    }
+
+    //Pick up the last completed run
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        runRepository.findTopByCompletedAtIsNotNullOrderByGenerationDesc().ifPresent(this::publish);
+    }
+
+    //Pick up a run completed by another instance
+    @Scheduled(initialDelayString = "${recommender.recommendations.precompute.reload-interval:PT1M}",
+            fixedDelayString = "${recommender.recommendations.precompute.reload-interval:PT1M}")
+    public void reload() {
+        load();
+    }
+
+    //Precomputed recommendations of the user, empty when they have to be computed live
+    public Optional<RecommendationService.Recommendations> find(Long userId) {
+        RecommendationRun run = current;
+        if (run == null || userId > run.getMaxUserId()) {
+            live.increment();
+            return Optional.empty();
+        }
+        Optional<UserRecommendationsRepository.Lookup> lookup = userRecommendationsRepository.find(userId, run.getGeneration());
+        Instant changedAt = lookup.map(UserRecommendationsRepository.Lookup::rankingsChangedAt).orElse(null);
+        if (changedAt != null && changedAt.isAfter(run.getStartedAt())) {
+            live.increment();
+            return Optional.empty();
+        }
+        if (lookup.isEmpty()) {
+            //Unknown user
+            served.increment();
+            return Optional.of(RecommendationService.Recommendations.EMPTY);
+        }
+        //Users without rankings have no row, nor do any users once the run is dropped
+        UserRecommendationsRepository.Row row = lookup.get().row();
+        if (row == null) {
+            live.increment();
+            return Optional.empty();
+        }
+        served.increment();
+        return Optional.of(new RecommendationService.Recommendations(row.movieIds(), row.preferredGenres()));
+    }
+
+    //Serve the rows of the completed run, unless a later one is already served
+    synchronized void publish(RecommendationRun run) {
+        RecommendationRun previous = current;
+        if (previous != null && previous.getGeneration() >= run.getGeneration()) {
+            return;
+        }
+        current = run;
+        logger.info("Serving precomputed recommendations of generation {} computed at {}", run.getGeneration(), run.getCompletedAt());
+    }
+}
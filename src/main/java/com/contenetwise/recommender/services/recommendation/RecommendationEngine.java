@@ -0,0 +1,23 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Ranking;
+
+import java.util.List;
+
+/**
+ * A strategy producing movie recommendations for a user. Engines are Spring beans
+ * selected by name through the {@code recommender.engine} property.
+ */
+public interface RecommendationEngine {
+
+    //Name used to select the engine in the configuration
+    String getName();
+
+    //Ids of the recommended movies, best first, excluding the movies the user already ranked
+    List<Long> recommend(Long userId, List<Ranking> rankings);
+
+    //Same, for a user whose profile is already built. Engines reading the genre affinities use it
+    default List<Long> recommend(UserProfile profile, List<Ranking> rankings) {
+        return recommend(profile.userId(), rankings);
+    }
+}
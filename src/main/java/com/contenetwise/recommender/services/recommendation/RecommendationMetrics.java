@@ -0,0 +1,76 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Timers of the stages of a recommendation request, from loading the user to mapping
+ * the response, and the number of candidates and results of the engines. Timers
+ * publish histograms so latency percentiles can be aggregated across instances.
+ */
+@Component
+public class RecommendationMetrics {
+
+    public static final String USER = "user";
+    public static final String CACHE = "cache";
+    public static final String RANKINGS = "rankings";
+    public static final String PREFERENCES = "preferences";
+    public static final String CANDIDATES = "candidates";
+    public static final String EXCLUSION = "exclusion";
+    public static final String RANKING = "ranking";
+    public static final String HYDRATION = "hydration";
+    public static final String MAPPING = "mapping";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> engineTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> candidateSummaries = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> resultSummaries = new ConcurrentHashMap<>();
+
+    public RecommendationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T time(String stage, Supplier<T> work) {
+        return stageTimers.computeIfAbsent(stage, name -> Timer.builder("recommender.recommendation.stage")
+                        .description("Duration of a stage of the recommendation requests")
+                        .tag("stage", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(work);
+    }
+
+    //Run the engine, recording its duration and the number of movies it recommended
+    public List<Long> timeEngine(String engine, Supplier<List<Long>> work) {
+        List<Long> movieIds = engineTimers.computeIfAbsent(engine, name -> Timer.builder("recommender.recommendation.engine")
+                        .description("Duration of a recommendation engine run")
+                        .tag("engine", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(work);
+        resultSummaries.computeIfAbsent(engine, name -> DistributionSummary.builder("recommender.recommendation.results")
+                        .description("Number of movies recommended by an engine run")
+                        .tag("engine", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(movieIds.size());
+        return movieIds;
+    }
+
+    //Number of movies an engine considered before excluding and ranking them
+    public void recordCandidates(String engine, long candidates) {
+        candidateSummaries.computeIfAbsent(engine, name -> DistributionSummary.builder("recommender.recommendation.candidates")
+                        .description("Number of candidate movies considered by an engine run")
+                        .tag("engine", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(candidates);
+    }
+}
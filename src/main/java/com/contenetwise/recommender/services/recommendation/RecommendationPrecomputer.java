@@ -0,0 +1,206 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.RecommendationRun;
+import com.contenetwise.recommender.repositories.JobLockRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.RecommendationRunRepository;
+import com.contenetwise.recommender.repositories.UserRecommendationsRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Offline job computing the top-N recommendations of every user ahead of the evening
+ * peak. Users are split into partitions of consecutive ids, which are computed across
+ * a fork-join pool: each partition loads the rankings of its users in one query, runs
+ * the engine for each of them and writes their rows in one batch. The rows of a run
+ * share a generation number and are served once the whole run is completed. The
+ * generation served before is kept until the next run, for the instances which have
+ * not switched yet, and the older ones are dropped. A run holds the lease of the job in
+ * {@code job_locks}, so a single instance allocates generations and drops rows at a time.
+ */
+@Component
+public class RecommendationPrecomputer {
+
+    private static final String LOCK = "recommendation-precompute";
+
+    private final RecommendationService recommendationService;
+    private final PrecomputedRecommendations precomputedRecommendations;
+    private final UserRepository userRepository;
+    private final RankingRepository rankingRepository;
+    private final UserRecommendationsRepository userRecommendationsRepository;
+    private final RecommendationRunRepository runRepository;
+    private final JobLockRepository jobLockRepository;
+    private final boolean enabled;
+    private final int topN;
+    private final int partitionSize;
+    private final Duration lockTimeout;
+    private final ForkJoinPool pool;
+    private final Timer runTimer;
+    private final AtomicBoolean running = new AtomicBoolean();
+    //Holder of the lease, unique to this instance
+    private final String owner = UUID.randomUUID().toString();
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationPrecomputer.class);
+
+    public RecommendationPrecomputer(RecommendationService recommendationService, PrecomputedRecommendations precomputedRecommendations,
+                                     UserRepository userRepository, RankingRepository rankingRepository,
+                                     UserRecommendationsRepository userRecommendationsRepository,
+                                     RecommendationRunRepository runRepository, JobLockRepository jobLockRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${recommender.recommendations.precompute.enabled:true}") boolean enabled,
+                                     @Value("${recommender.recommendations.precompute.top-n:100}") int topN,
+                                     @Value("${recommender.recommendations.precompute.partition-size:500}") int partitionSize,
+                                     @Value("${recommender.recommendations.precompute.parallelism:4}") int parallelism,
+                                     @Value("${recommender.recommendations.precompute.lock-timeout:PT2H}") Duration lockTimeout) {
+        this.recommendationService = recommendationService;
+        this.precomputedRecommendations = precomputedRecommendations;
+        this.userRepository = userRepository;
+        this.rankingRepository = rankingRepository;
+        this.userRecommendationsRepository = userRecommendationsRepository;
+        this.runRepository = runRepository;
+        this.jobLockRepository = jobLockRepository;
+        this.enabled = enabled;
+        this.topN = topN;
+        this.partitionSize = partitionSize;
+        this.lockTimeout = lockTimeout;
+        this.pool = new ForkJoinPool(parallelism);
+        this.runTimer = Timer.builder("recommender.recommendations.precompute")
+                .description("Duration of a run of the offline recommendation job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${recommender.recommendations.precompute.cron:0 0 17 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    //Compute and publish a new generation, unless a run is already going on here or on another instance
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("Recommendation precomputation already running, skipping");
+            return;
+        }
+        try {
+            if (!jobLockRepository.tryLock(LOCK, owner, Instant.now().plus(lockTimeout))) {
+                logger.info("Recommendation precomputation running on another instance, skipping");
+                return;
+            }
+            try {
+                runTimer.record(this::precompute);
+            } finally {
+                jobLockRepository.unlock(LOCK, owner);
+            }
+        } catch (RuntimeException e) {
+            //The rows of the failed generation are dropped by the next completed run
+            logger.error("Recommendation precomputation failed, still serving the previous generation", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void precompute() {
+        long generation = runRepository.findMaxGeneration() + 1;
+        RecommendationRun run = runRepository.save(RecommendationRun.builder()
+                .generation(generation)
+                .startedAt(Instant.now())
+                .maxUserId(userRepository.findMaxId())
+                .build());
+        logger.info("Precomputing recommendations of generation {} for users up to id {}", generation, run.getMaxUserId());
+
+        //Partitions of consecutive user ids
+        List<List<Long>> partitions = new ArrayList<>();
+        long after = 0;
+        List<Long> userIds;
+        while (!(userIds = userRepository.findIdPage(after, run.getMaxUserId(), Limit.of(partitionSize))).isEmpty()) {
+            partitions.add(userIds);
+            after = userIds.get(userIds.size() - 1);
+        }
+        AtomicLong users = new AtomicLong();
+        pool.invoke(new ComputePartitions(partitions, generation, users, 0, partitions.size()));
+
+        //After the lock timeout another instance may have started a run, whose generation is the one to keep
+        if (!jobLockRepository.extend(LOCK, owner, Instant.now().plus(lockTimeout))) {
+            throw new IllegalStateException("Lock of the job expired before generation " + generation + " was completed");
+        }
+        //Other instances still serve the previous completed generation until they reload
+        long previous = runRepository.findTopByCompletedAtIsNotNullOrderByGenerationDesc()
+                .map(RecommendationRun::getGeneration)
+                .orElse(generation);
+        run.setCompletedAt(Instant.now());
+        run.setUsers(users.get());
+        precomputedRecommendations.publish(runRepository.save(run));
+        int dropped = userRecommendationsRepository.deleteBefore(previous);
+        runRepository.deleteBefore(previous);
+        logger.info("Precomputed recommendations of generation {} for {} users, dropped {} older rows", generation, users.get(), dropped);
+    }
+
+    private void computePartition(List<Long> userIds, long generation, AtomicLong users) {
+        Map<Long, List<Ranking>> rankingsByUser = rankingRepository.findByUserIn(userIds).stream()
+                .collect(Collectors.groupingBy(ranking -> ranking.getUser().getId()));
+        List<UserRecommendationsRepository.Row> rows = new ArrayList<>(rankingsByUser.size());
+        rankingsByUser.forEach((userId, rankings) -> {
+            RecommendationService.Recommendations recommendations = recommendationService.compute(userId, rankings);
+            List<Long> movieIds = recommendations.movieIds();
+            rows.add(new UserRecommendationsRepository.Row(userId, movieIds.subList(0, Math.min(topN, movieIds.size())),
+                    recommendations.preferredGenres()));
+        });
+        userRecommendationsRepository.insertAll(generation, rows);
+        users.addAndGet(rows.size());
+    }
+
+    private final class ComputePartitions extends RecursiveAction {
+        private final List<List<Long>> partitions;
+        private final long generation;
+        private final AtomicLong users;
+        private final int from;
+        private final int to;
+
+        ComputePartitions(List<List<Long>> partitions, long generation, AtomicLong users, int from, int to) {
+            this.partitions = partitions;
+            this.generation = generation;
+            this.users = users;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ComputePartitions(partitions, generation, users, from, middle),
+                        new ComputePartitions(partitions, generation, users, middle, to));
+                return;
+            }
+            if (to > from) {
+                computePartition(partitions.get(from), generation, users);
+            }
+        }
+    }
+}
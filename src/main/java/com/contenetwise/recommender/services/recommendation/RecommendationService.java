@@ -0,0 +1,206 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.RankingChangedEvent;
+import com.contenetwise.recommender.services.ingest.ImportCompletedEvent;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the configured recommendation engine for a user. When the engine has nothing
+ * to offer (for example the similarity model has not been computed yet) the genre
+ * engine is used as a fallback.
+ *
+ * <p>Results are cached per user. Concurrent misses for the same user wait for a single
+ * computation, which reads the recommendations precomputed by the offline job when the
+ * user has some. Once cached, a result is recomputed in the background when the user's
+ * rankings change, when a movie of one of the user's preferred genres is created or
+ * deleted, or when it gets old. Requests keep getting the previous result until the
+ * new one is ready.
+ */
+@Service
+public class RecommendationService {
+
+    private final RankingRepository rankingRepository;
+    private final MovieRepository movieRepository;
+    private final RecommendationEngine engine;
+    private final RecommendationEngine fallbackEngine;
+    private final RecommendationMetrics metrics;
+    private final PrecomputedRecommendations precomputedRecommendations;
+    private final UserProfileStore profileStore;
+    private final ExecutorService refreshExecutor;
+    private final LoadingCache<Long, Recommendations> cache;
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationService.class);
+
+    public RecommendationService(RankingRepository rankingRepository, MovieRepository movieRepository,
+                                 List<RecommendationEngine> engines, MeterRegistry meterRegistry, RecommendationMetrics metrics,
+                                 PrecomputedRecommendations precomputedRecommendations, UserProfileStore profileStore,
+                                 @Value("${recommender.engine:" + GenreRecommendationEngine.NAME + "}") String engineName,
+                                 @Value("${recommender.recommendations.cache.max-size:100000}") long maxSize,
+                                 @Value("${recommender.recommendations.cache.refresh-after:PT5M}") Duration refreshAfter,
+                                 @Value("${recommender.recommendations.cache.expire-after:PT1H}") Duration expireAfter,
+                                 @Value("${recommender.recommendations.cache.refresh-threads:2}") int refreshThreads) {
+        this.rankingRepository = rankingRepository;
+        this.movieRepository = movieRepository;
+        this.metrics = metrics;
+        this.precomputedRecommendations = precomputedRecommendations;
+        this.profileStore = profileStore;
+        Map<String, RecommendationEngine> enginesByName = engines.stream()
+                .collect(Collectors.toMap(RecommendationEngine::getName, Function.identity()));
+        this.engine = enginesByName.get(engineName);
+        this.fallbackEngine = enginesByName.get(GenreRecommendationEngine.NAME);
+        if (engine == null) {
+            throw new IllegalStateException("Unknown recommendation engine '" + engineName + "', available: " + enginesByName.keySet());
+        }
+        this.refreshExecutor = Executors.newFixedThreadPool(refreshThreads);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .executor(refreshExecutor)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    //A miss is answered by the offline job when it can
+                    @Override
+                    public Recommendations load(Long userId) {
+                        return precomputedRecommendations.find(userId).orElseGet(() -> compute(userId));
+                    }
+
+                    //A refresh follows a change, or an old result: compute it again
+                    @Override
+                    public Recommendations reload(Long userId, Recommendations previous) {
+                        return compute(userId);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "recommendations");
+        logger.info("Using the '{}' recommendation engine", engineName);
+    }
+
+    //Recommended movies for the user, best first
+    public List<Movie> recommend(Long userId) {
+        return load(recommendations(userId));
+    }
+
+    //Recommended movie ids for the user, from the cache or computed on a miss
+    public Recommendations recommendations(Long userId) {
+        return metrics.time(RecommendationMetrics.CACHE, () -> cache.get(userId));
+    }
+
+    //Load the movies and keep the order chosen by the engine
+    public List<Movie> load(Recommendations recommendations) {
+        return metrics.time(RecommendationMetrics.HYDRATION, () -> movieRepository.findAllByIdInOrder(recommendations.movieIds()));
+    }
+
+    //Load the first limit movies, best first
+    public List<Movie> load(Recommendations recommendations, int limit) {
+        List<Long> movieIds = recommendations.movieIds();
+        List<Long> first = movieIds.subList(0, Math.min(limit, movieIds.size()));
+        return metrics.time(RecommendationMetrics.HYDRATION, () -> movieRepository.findAllByIdInOrder(first));
+    }
+
+    //Drop the cached result of a user, for example one looked up before the user was known not to exist
+    public void evict(Long userId) {
+        cache.invalidate(userId);
+    }
+
+    //Run the engine for the user, bypassing the cache. The genre affinities come from the profile store
+    public Recommendations compute(Long userId) {
+        List<Ranking> rankings = metrics.time(RecommendationMetrics.RANKINGS, () -> rankingRepository.findByUser(userId));
+        if (rankings.isEmpty()) {
+            return Recommendations.EMPTY;
+        }
+        return compute(metrics.time(RecommendationMetrics.PREFERENCES, () -> profileStore.profile(userId, rankings)), rankings);
+    }
+
+    //Run the engine on rankings of the user already loaded with the genres of their movies
+    public Recommendations compute(Long userId, List<Ranking> rankings) {
+        if (rankings.isEmpty()) {
+            return Recommendations.EMPTY;
+        }
+        return compute(UserProfile.of(userId, rankings), rankings);
+    }
+
+    private Recommendations compute(UserProfile profile, List<Ranking> rankings) {
+        List<Long> movieIds = metrics.timeEngine(engine.getName(), () -> engine.recommend(profile, rankings));
+        if (movieIds.isEmpty() && engine != fallbackEngine) {
+            logger.debug("The '{}' engine has no recommendations for userId: {}, falling back to '{}'",
+                    engine.getName(), profile.userId(), fallbackEngine.getName());
+            movieIds = metrics.timeEngine(fallbackEngine.getName(), () -> fallbackEngine.recommend(profile, rankings));
+        }
+
+        // Genres of the movies the user rated highly, to know which catalog changes concern them
+        return new Recommendations(List.copyOf(movieIds), profile.preferredGenres());
+    }
+
+    @EventListener
+    public void onRankingChanged(RankingChangedEvent event) {
+        //Only a cached result is refreshed, the next request computes a missing one
+        if (cache.policy().getIfPresentQuietly(event.userId()) != null) {
+            cache.refresh(event.userId());
+        }
+    }
+
+    @EventListener
+    public void onMovieChanged(MovieChangedEvent event) {
+        refreshIf(recommendations -> !Collections.disjoint(recommendations.preferredGenres(), event.genres())
+                || (event.deleted() && recommendations.movieIds().contains(event.movieId())));
+    }
+
+    @EventListener(condition = "#event.isRename()")
+    public void onGenreChanged(GenreChangedEvent event) {
+        refreshIf(recommendations -> recommendations.preferredGenres().contains(event.previousName()));
+    }
+
+    @EventListener
+    public void onImportCompleted(ImportCompletedEvent event) {
+        cache.invalidateAll();
+    }
+
+    //Recompute in the background the cached results matching the predicate
+    private void refreshIf(Predicate<Recommendations> stale) {
+        cache.asMap().forEach((userId, recommendations) -> {
+            if (stale.test(recommendations)) {
+                cache.refresh(userId);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Recommended movie ids of a user, best first, and the genres the user rated
+     * highly when they were computed.
+     */
+    public record Recommendations(List<Long> movieIds, Set<String> preferredGenres) {
+
+        static final Recommendations EMPTY = new Recommendations(List.of(), Set.of());
+    }
+}
@@ -0,0 +1,32 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Neighbors of the movies the user rated highly in the item similarity model.
+ */
+@Component
+public class SimilarCandidateGenerator implements CandidateGenerator {
+
+    private final ItemSimilarityIndex similarityIndex;
+
+    public SimilarCandidateGenerator(ItemSimilarityIndex similarityIndex) {
+        this.similarityIndex = similarityIndex;
+    }
+
+    @Override
+    public String getName() {
+        return "similar";
+    }
+
+    @Override
+    public Roaring64Bitmap generate(UserProfile profile) {
+        ItemSimilarityIndex.SimilarityModel model = similarityIndex.getModel();
+        Roaring64Bitmap candidates = new Roaring64Bitmap();
+        for (Long movieId : profile.likedMovieIds()) {
+            model.forEachNeighbor(movieId, (neighbor, similarity) -> candidates.addLong(neighbor));
+        }
+        return candidates;
+    }
+}
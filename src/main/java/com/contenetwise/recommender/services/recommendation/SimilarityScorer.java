@@ -0,0 +1,49 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Similarity of the movie to the movies the user ranked, each one weighted by the
+ * user's score mapped to -1..1, so neighbors of movies rated low count against it.
+ */
+@Component
+public class SimilarityScorer implements CandidateScorer {
+
+    private final ItemSimilarityIndex similarityIndex;
+    private final double weight;
+
+    public SimilarityScorer(ItemSimilarityIndex similarityIndex, @Value("${recommender.pipeline.weights.similarity:1.0}") double weight) {
+        this.similarityIndex = similarityIndex;
+        this.weight = weight;
+    }
+
+    @Override
+    public String getName() {
+        return "similarity";
+    }
+
+    @Override
+    public double getWeight() {
+        return weight;
+    }
+
+    @Override
+    public LongToDoubleFunction prepare(UserProfile profile) {
+        // Sum of similarity * score over the neighbors of every ranked movie, computed once
+        ItemSimilarityIndex.SimilarityModel model = similarityIndex.getModel();
+        Map<Long, Double> scores = new HashMap<>();
+        profile.scores().forEach((rankedMovieId, score) -> {
+            double affinity = GenreAffinityVector.affinity(score);
+            if (affinity != 0d) {
+                model.forEachNeighbor(rankedMovieId, (movieId, similarity) ->
+                        scores.merge(movieId, similarity * affinity, Double::sum));
+            }
+        });
+        return movieId -> scores.getOrDefault(movieId, 0d);
+    }
+}
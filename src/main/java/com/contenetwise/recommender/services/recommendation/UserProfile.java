@@ -0,0 +1,69 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.RankingScale;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the recommendation engines know about a user: the movies they ranked with their
+ * normalized score, their mean affinity to every genre they ranked, from -1 (only rated 1)
+ * to 1 (only rated 5), and the genres of the movies they rated highly. The genre part
+ * comes from the {@link UserProfileStore} on the request path.
+ */
+public record UserProfile(Long userId, Set<Long> rankedMovieIds, Map<Long, Integer> scores,
+                          Map<String, Double> genreAffinities, Set<String> preferredGenres) {
+
+    //Profile with the genre part derived from the genres of the ranked movies
+    public static UserProfile of(Long userId, List<Ranking> rankings) {
+        Map<String, double[]> sums = new HashMap<>();
+        Set<String> preferredGenres = new HashSet<>();
+        for (Ranking ranking : rankings) {
+            Integer score = RankingScale.score(ranking);
+            if (score == null) {
+                continue;
+            }
+            for (Genre genre : ranking.getMovie().getGenres()) {
+                double[] sum = sums.computeIfAbsent(genre.getName(), name -> new double[2]);
+                sum[0] += GenreAffinityVector.affinity(score);
+                sum[1]++;
+                if (score >= RankingScale.HIGHLY_RATED_THRESHOLD) {
+                    preferredGenres.add(genre.getName());
+                }
+            }
+        }
+        Map<String, Double> genreAffinities = new HashMap<>();
+        sums.forEach((genre, sum) -> genreAffinities.put(genre, sum[0] / sum[1]));
+        return of(userId, rankings, genreAffinities, preferredGenres);
+    }
+
+    public static UserProfile of(Long userId, List<Ranking> rankings, Map<String, Double> genreAffinities, Set<String> preferredGenres) {
+        Set<Long> rankedMovieIds = new HashSet<>();
+        Map<Long, Integer> scores = new HashMap<>();
+        for (Ranking ranking : rankings) {
+            Long movieId = ranking.getMovie().getId();
+            rankedMovieIds.add(movieId);
+            Integer score = RankingScale.score(ranking);
+            if (score != null) {
+                scores.put(movieId, score);
+            }
+        }
+        return new UserProfile(userId, rankedMovieIds, scores, genreAffinities, preferredGenres);
+    }
+
+    //Movies the user rated highly
+    public Set<Long> likedMovieIds() {
+        Set<Long> movieIds = new HashSet<>();
+        scores.forEach((movieId, score) -> {
+            if (score >= RankingScale.HIGHLY_RATED_THRESHOLD) {
+                movieIds.add(movieId);
+            }
+        });
+        return movieIds;
+    }
+}
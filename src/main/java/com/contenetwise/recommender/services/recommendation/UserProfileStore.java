@@ -0,0 +1,210 @@
+package com.contenetwise.recommender.services.recommendation;
+
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.RankingChangedEvent;
+import com.contenetwise.recommender.services.ingest.CsvImportService;
+import com.contenetwise.recommender.services.ingest.ImportCompletedEvent;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Genre affinity vectors of the users, so building the profile of a user for a
+ * recommendation costs no query and no walk through the genres of their movies. A
+ * missing vector is rebuilt from the ranking table in one query, then every ranking
+ * change of the user is applied to it in place, with the genres of the movie read from
+ * the genre index. A change arriving while the vector is being rebuilt may or may not be
+ * in what the query read, so that vector serves the profile being built and is dropped.
+ * Vectors are rebuilt after their max age, which bounds the drift of any change missed.
+ */
+@Component
+public class UserProfileStore {
+
+    private final RankingRepository rankingRepository;
+    private final GenreRepository genreRepository;
+    private final GenreIndex genreIndex;
+    private final Cache<Long, GenreAffinityVector> vectors;
+    //Users whose vector is being rebuilt from the ranking table, and whether a ranking of theirs changed meanwhile
+    private final Map<Long, Boolean> rebuilding = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileStore.class);
+
+    //Genre names indexed by genre id, replaced as a whole when a genre changes
+    private volatile String[] genreNames = new String[0];
+    private volatile Map<String, Integer> genreIds = Map.of();
+
+    public UserProfileStore(RankingRepository rankingRepository, GenreRepository genreRepository, GenreIndex genreIndex,
+                            MeterRegistry meterRegistry, @Value("${recommender.profiles.max-size:100000}") long maxSize,
+                            @Value("${recommender.profiles.max-age:PT1H}") Duration maxAge) {
+        this.rankingRepository = rankingRepository;
+        this.genreRepository = genreRepository;
+        this.genreIndex = genreIndex;
+        this.vectors = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                //Counted from the rebuild, the updates in place do not extend it
+                .expireAfter(new Expiry<Long, GenreAffinityVector>() {
+                    @Override
+                    public long expireAfterCreate(Long userId, GenreAffinityVector vector, long currentTime) {
+                        return maxAge.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long userId, GenreAffinityVector vector, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long userId, GenreAffinityVector vector, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, vectors, "user-profiles");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void loadGenres() {
+        List<Genre> genres = genreRepository.findAll();
+        String[] names = new String[genres.stream().mapToInt(genre -> genre.getId().intValue() + 1).max().orElse(0)];
+        genres.forEach(genre -> names[genre.getId().intValue()] = genre.getName());
+        setGenreNames(names);
+        logger.info("User profiles indexed by {} genres", genres.size());
+    }
+
+    //Profile of the user, their genre affinities coming from the store
+    public UserProfile profile(Long userId, List<Ranking> rankings) {
+        GenreAffinityVector vector = vector(userId);
+        String[] names = genreNames;
+        Map<String, Double> affinities = new HashMap<>();
+        Set<String> preferredGenres = new HashSet<>();
+        vector.forEach((genreId, affinity, highlyRated) -> {
+            String name = genreId < names.length ? names[genreId] : null;
+            if (name != null) {
+                affinities.put(name, affinity);
+                if (highlyRated) {
+                    preferredGenres.add(name);
+                }
+            }
+        });
+        return UserProfile.of(userId, rankings, affinities, preferredGenres);
+    }
+
+    //Drop the vector of the user, the next profile rebuilds it from the ranking table
+    public void rebuild(Long userId) {
+        vectors.invalidate(userId);
+    }
+
+    //Stored vector of the user, or the one rebuilt by this call, dropped when a ranking changed during the rebuild
+    private GenreAffinityVector vector(Long userId) {
+        boolean[] rebuilt = {false};
+        GenreAffinityVector vector = null;
+        try {
+            vector = vectors.get(userId, id -> {
+                rebuilt[0] = true;
+                rebuilding.put(id, false);
+                return load(id);
+            });
+            return vector;
+        } finally {
+            if (rebuilt[0]) {
+                GenreAffinityVector built = vector;
+                rebuilding.compute(userId, (id, changed) -> {
+                    if (Boolean.TRUE.equals(changed) && built != null) {
+                        vectors.asMap().remove(id, built);
+                    }
+                    return null;
+                });
+            }
+        }
+    }
+
+    private GenreAffinityVector load(Long userId) {
+        String[] names = genreNames;
+        GenreAffinityVector vector = new GenreAffinityVector(names.length);
+        boolean unknownGenre = false;
+        for (Object[] row : rankingRepository.findGenreScoresByUser(userId)) {
+            int genreId = ((Long) row[1]).intValue();
+            unknownGenre |= genreId >= names.length || names[genreId] == null;
+            vector.update(genreId, null, (Integer) row[0]);
+        }
+        //A genre written without publishing its event, reload the names
+        if (unknownGenre) {
+            loadGenres();
+        }
+        return vector;
+    }
+
+    @EventListener
+    public void onRankingChanged(RankingChangedEvent event) {
+        //Only a stored vector is updated, a missing one is rebuilt when needed
+        rebuilding.computeIfPresent(event.userId(), (userId, changed) -> true);
+        Map<String, Integer> ids = genreIds;
+        vectors.asMap().computeIfPresent(event.userId(), (userId, vector) -> {
+            for (String genre : genreIndex.genresOf(event.movieId())) {
+                Integer genreId = ids.get(genre);
+                if (genreId == null) {
+                    return null;
+                }
+                vector.update(genreId, event.previousScore(), event.newScore());
+            }
+            return vector;
+        });
+    }
+
+    @EventListener
+    public synchronized void onGenreChanged(GenreChangedEvent event) {
+        int genreId = event.genreId().intValue();
+        String[] names = Arrays.copyOf(genreNames, Math.max(genreNames.length, genreId + 1));
+        names[genreId] = event.name();
+        setGenreNames(names);
+    }
+
+    //Rankings of a deleted movie are deleted with it
+    @EventListener(condition = "#event.deleted()")
+    public void onMovieChanged(MovieChangedEvent event) {
+        vectors.invalidateAll();
+    }
+
+    //Bulk imported movies and ratings bypass the events, start over
+    @EventListener(condition = "#event.target() != '" + CsvImportService.USERS + "'")
+    public void onImportCompleted(ImportCompletedEvent event) {
+        if (CsvImportService.MOVIES.equals(event.target())) {
+            loadGenres();
+        }
+        vectors.invalidateAll();
+    }
+
+    private void setGenreNames(String[] names) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int genreId = 0; genreId < names.length; genreId++) {
+            if (names[genreId] != null) {
+                ids.put(names[genreId], genreId);
+            }
+        }
+        genreNames = names;
+        genreIds = ids;
+    }
+}
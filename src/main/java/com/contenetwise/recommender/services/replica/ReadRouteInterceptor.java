@@ -0,0 +1,80 @@
+package com.contenetwise.recommender.services.replica;
+
+import com.contenetwise.recommender.services.RankingChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Sends the GET requests of the API to the read replicas. A user who has just changed a
+ * ranking reads their own rankings and recommendations from the primary until every
+ * replica still serving reads is known to have the change: the lag tolerance plus the
+ * time between two lag measurements. The route is cleared when the request thread is
+ * released, also when an async handler, such as the catalog export, goes on elsewhere.
+ */
+@Component
+public class ReadRouteInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+
+    private static final String USER_ID_VARIABLE = "userId";
+
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadRouteInterceptor(@Value("${recommender.datasource.replica.max-lag:PT5S}") Duration maxLag,
+                                @Value("${recommender.datasource.replica.check-interval:PT5S}") Duration checkInterval) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(maxLag.plus(checkInterval))
+                .build();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns("/api/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if ("GET".equals(request.getMethod())) {
+            ReplicaRoute.useReplica(!wroteRecently(request));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaRoute.clear();
+    }
+
+    //Called instead of afterCompletion when the handler goes on on an async thread
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaRoute.clear();
+    }
+
+    @EventListener
+    public void onRankingChanged(RankingChangedEvent event) {
+        recentWriters.put(event.userId(), Boolean.TRUE);
+    }
+
+    private boolean wroteRecently(HttpServletRequest request) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables instanceof Map<?, ?> map && map.get(USER_ID_VARIABLE) instanceof String userId) {
+            try {
+                return recentWriters.getIfPresent(Long.valueOf(userId)) != null;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
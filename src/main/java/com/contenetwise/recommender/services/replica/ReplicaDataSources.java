@@ -0,0 +1,95 @@
+package com.contenetwise.recommender.services.replica;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Puts the primary data source behind a {@link ReplicaRoutingDataSource} when read
+ * replicas are configured. Every replica gets its own read-only pool with the settings
+ * and credentials of the primary pool. Runs before the other data source wrappers so
+ * that they see the statements of the replicas too.
+ */
+@Component
+public class ReplicaDataSources implements BeanPostProcessor, Ordered, MeterBinder, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaDataSources.class);
+
+    private final List<String> replicaUrls = new ArrayList<>();
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private volatile ReplicaRoutingDataSource routing;
+
+    public ReplicaDataSources(@Value("${recommender.datasource.replicas:}") String replicaUrls,
+                              @Value("${recommender.datasource.replica.lag-query:SELECT 0}") String lagQuery,
+                              @Value("${recommender.datasource.replica.max-lag:PT5S}") Duration maxLag,
+                              @Value("${recommender.datasource.replica.check-interval:PT5S}") Duration checkInterval) {
+        for (String url : replicaUrls.split(",")) {
+            if (!url.isBlank()) {
+                this.replicaUrls.add(url.trim());
+            }
+        }
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (replicaUrls.isEmpty() || !(bean instanceof HikariDataSource primary)) {
+            return bean;
+        }
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setJdbcUrl(replicaUrls.get(i));
+            config.setPoolName((primary.getPoolName() == null ? beanName : primary.getPoolName()) + "-replica-" + i);
+            config.setReadOnly(true);
+            replicas.add(new HikariDataSource(config));
+        }
+        routing = new ReplicaRoutingDataSource(primary, replicas, lagQuery, maxLag);
+        routing.start(checkInterval);
+        logger.info("Routing read-only requests to {} replicas, lag tolerance {}", replicas.size(), maxLag);
+        return routing;
+    }
+
+    @Override
+    public int getOrder() {
+        return 0;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("recommender.db.replicas.in-sync", this, replicas ->
+                        replicas.routing == null ? 0 : replicas.routing.getInSyncReplicas())
+                .description("Read replicas within the lag tolerance, serving reads")
+                .register(registry);
+        Gauge.builder("recommender.db.replicas.lag", this, replicas ->
+                        replicas.routing == null ? 0 : replicas.routing.getMaxLagSeconds())
+                .description("Highest replication lag of the read replicas")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        if (routing != null) {
+            routing.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.contenetwise.recommender.services.replica;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether the statements of the current thread may be answered by a read replica. It is
+ * set for the duration of a read-only request; everything else, writes and background
+ * work, goes to the primary.
+ */
+public final class ReplicaRoute {
+
+    private static final ThreadLocal<Boolean> REPLICA = new ThreadLocal<>();
+
+    private ReplicaRoute() {
+    }
+
+    public static boolean isReplica() {
+        return Boolean.TRUE.equals(REPLICA.get());
+    }
+
+    public static void useReplica(boolean replica) {
+        if (replica) {
+            REPLICA.set(Boolean.TRUE);
+        } else {
+            REPLICA.remove();
+        }
+    }
+
+    public static void clear() {
+        REPLICA.remove();
+    }
+
+    //The lookup running on another thread with the route of the calling thread
+    public static <T> Supplier<T> propagate(Supplier<T> lookup) {
+        boolean replica = isReplica();
+        return () -> {
+            boolean previous = isReplica();
+            useReplica(replica);
+            try {
+                return lookup.get();
+            } finally {
+                useReplica(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package com.contenetwise.recommender.services.replica;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections to the primary, or to one of the read replicas when the current
+ * thread is on the {@link ReplicaRoute replica route}. Replicas take turns. The lag of
+ * every replica is measured periodically with the lag query, which returns the lag in
+ * seconds; a replica lagging more than the tolerance, or failing the query, is left out
+ * until it catches up. With no replica in sync, reads go to the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService lagChecker;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, String lagQuery, Duration maxLag) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+    }
+
+    //Measure the lag of the replicas now and then every interval
+    public void start(Duration interval) {
+        lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecker.scheduleWithFixedDelay(this::checkLag, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void checkLag() {
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            boolean wasInSync = replica.inSync;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                replica.lagSeconds = resultSet.next() ? resultSet.getDouble(1) : Double.NaN;
+                replica.inSync = replica.lagSeconds * 1000 <= maxLag.toMillis();
+            } catch (SQLException | RuntimeException e) {
+                logger.debug("Lag query failed on replica {}", i, e);
+                replica.lagSeconds = Double.NaN;
+                replica.inSync = false;
+            }
+            if (wasInSync != replica.inSync) {
+                logger.warn("Replica {} {} reads, lag: {} s", i, replica.inSync ? "back to serving" : "no longer serving", replica.lagSeconds);
+            }
+        }
+    }
+
+    public int getInSyncReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.inSync).count();
+    }
+
+    //Highest lag of the replicas, in seconds, NaN when one could not be measured
+    public double getMaxLagSeconds() {
+        return replicas.stream().mapToDouble(replica -> replica.lagSeconds).max().orElse(0);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return target().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return target().getConnection(username, password);
+    }
+
+    private DataSource target() {
+        if (!ReplicaRoute.isReplica()) {
+            return primary;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.inSync) {
+                return replica.dataSource;
+            }
+        }
+        return primary;
+    }
+
+    //Pool settings are read from the primary
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? (T) this : primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    @Override
+    public void close() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        replicas.forEach(replica -> {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.warn("Could not close a replica pool", e);
+                }
+            }
+        });
+    }
+
+    private static class Replica {
+
+        private final DataSource dataSource;
+        //Out of rotation until the first lag measurement
+        private volatile boolean inSync;
+        private volatile double lagSeconds = Double.NaN;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
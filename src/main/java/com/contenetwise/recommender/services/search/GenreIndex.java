@@ -0,0 +1,217 @@
+package com.contenetwise.recommender.services.search;
+
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.ingest.CsvImportService;
+import com.contenetwise.recommender.services.ingest.ImportCompletedEvent;
+import org.roaringbitmap.longlong.PeekableLongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Compressed bitmap of movie ids per genre name. Genre filters are answered with
+ * bitmap unions (any of the genres) or intersections (all of the genres) instead of
+ * joining movies to their genres, and the matching ids come out in ascending order
+ * so callers only load the page they return.
+ */
+@Component
+public class GenreIndex {
+
+    private final MovieRepository movieRepository;
+    private static final Logger logger = LoggerFactory.getLogger(GenreIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Roaring64Bitmap> moviesByGenre = new HashMap<>();
+    //Movie and genre changes seen while a rebuild is running, applied again once the rebuilt bitmaps are swapped in
+    private List<Runnable> pending;
+
+    public GenreIndex(MovieRepository movieRepository) {
+        this.movieRepository = movieRepository;
+    }
+
+    //Load the genres of every movie of the catalog
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Map<String, Roaring64Bitmap> bitmaps = new HashMap<>();
+            try (Stream<Object[]> rows = movieRepository.streamGenreMemberships()) {
+                rows.forEach(row -> bitmaps.computeIfAbsent((String) row[0], genre -> new Roaring64Bitmap())
+                        .addLong((Long) row[1]));
+            }
+            bitmaps.values().forEach(Roaring64Bitmap::runOptimize);
+            lock.writeLock().lock();
+            try {
+                moviesByGenre.clear();
+                moviesByGenre.putAll(bitmaps);
+                //Applying a change again is harmless when the catalog already had it
+                pending.forEach(Runnable::run);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Genre index built for {} genres", bitmaps.size());
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @EventListener(condition = "#event.target() == '" + CsvImportService.MOVIES + "'")
+    @Transactional(readOnly = true)
+    public void onImportCompleted(ImportCompletedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onMovieChanged(MovieChangedEvent event) {
+        apply(() -> {
+            for (String genre : event.genres()) {
+                if (event.deleted()) {
+                    Roaring64Bitmap movies = moviesByGenre.get(genre);
+                    if (movies != null) {
+                        movies.removeLong(event.movieId());
+                    }
+                } else {
+                    moviesByGenre.computeIfAbsent(genre, g -> new Roaring64Bitmap()).addLong(event.movieId());
+                }
+            }
+        });
+    }
+
+    @EventListener(condition = "#event.isRename()")
+    public void onGenreChanged(GenreChangedEvent event) {
+        apply(() -> {
+            Roaring64Bitmap movies = moviesByGenre.remove(event.previousName());
+            if (movies != null) {
+                moviesByGenre.put(event.name(), movies);
+            }
+        });
+    }
+
+    //Apply a change to the bitmaps, and again to the rebuilt ones when a rebuild is running
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //Movies having at least one of the genres
+    public Roaring64Bitmap anyOf(Collection<String> genres) {
+        Roaring64Bitmap result = new Roaring64Bitmap();
+        lock.readLock().lock();
+        try {
+            for (String genre : genres) {
+                Roaring64Bitmap movies = moviesByGenre.get(genre);
+                if (movies != null) {
+                    result.or(movies);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    //Genres of the movie
+    public Set<String> genresOf(long movieId) {
+        Set<String> genres = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            moviesByGenre.forEach((genre, movies) -> {
+                if (movies.contains(movieId)) {
+                    genres.add(genre);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return genres;
+    }
+
+    //Copy of the movies of each of the genres known to the index
+    public Map<String, Roaring64Bitmap> byGenre(Collection<String> genres) {
+        Map<String, Roaring64Bitmap> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String genre : genres) {
+                Roaring64Bitmap movies = moviesByGenre.get(genre);
+                if (movies != null) {
+                    result.put(genre, movies.clone());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    //Movies having every one of the genres
+    public Roaring64Bitmap allOf(Collection<String> genres) {
+        if (genres.isEmpty()) {
+            return new Roaring64Bitmap();
+        }
+        lock.readLock().lock();
+        try {
+            // Start from the smallest bitmap so the intersection only shrinks from there
+            List<Roaring64Bitmap> bitmaps = new ArrayList<>(genres.size());
+            for (String genre : genres) {
+                Roaring64Bitmap movies = moviesByGenre.get(genre);
+                if (movies == null) {
+                    return new Roaring64Bitmap();
+                }
+                bitmaps.add(movies);
+            }
+            bitmaps.sort((a, b) -> Long.compare(a.getLongCardinality(), b.getLongCardinality()));
+            Roaring64Bitmap result = bitmaps.get(0).clone();
+            for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+                result.and(bitmaps.get(i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //At most limit ids of the bitmap greater than after, in ascending order
+    public static List<Long> page(Roaring64Bitmap movies, long after, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        // The bitmap orders ids as unsigned values, movie ids are never negative
+        PeekableLongIterator iterator = after < 0 ? movies.getLongIterator() : movies.getLongIteratorFrom(after + 1);
+        while (iterator.hasNext() && ids.size() < limit) {
+            ids.add(iterator.next());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,485 @@
+package com.contenetwise.recommender.services.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical navigable small world graph over unit vectors, for approximate nearest
+ * neighbor queries by cosine distance. Every vector is a node of layer 0 and of a random
+ * number of upper layers, each layer linking a node to at most m close nodes (2m on
+ * layer 0). A query descends greedily from the single node of the top layer, then
+ * explores layer 0 keeping the ef closest nodes: a larger ef gives a better recall for
+ * a longer query. Vectors and neighbor lists are stored in primitive arrays.
+ *
+ * <p>Queries run concurrently, additions and removals take an exclusive lock. A removed
+ * node stays in the graph to keep it navigable and is left out of the results, so an
+ * index with many removals should be built again.
+ */
+public final class HnswIndex {
+
+    //Shared by the indexes, so replacing an index does not leave a buffer behind in every thread
+    private static final ThreadLocal<Visited> VISITED = ThreadLocal.withInitial(Visited::new);
+
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors;
+    private long[] ids;
+    //Neighbors of a node per layer, the first element of each list is the number of neighbors
+    private int[][][] neighbors;
+    private final Map<Long, Integer> nodes = new HashMap<>();
+    private final BitSet removed = new BitSet();
+    private int size;
+    private int entryPoint = -1;
+    private int topLayer = -1;
+
+    public HnswIndex(int dimensions, int m, int efConstruction, long seed) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.vectors = new float[16 * dimensions];
+        this.ids = new long[16];
+        this.neighbors = new int[16][][];
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    //Number of ids in the index
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Number of removed nodes still in the graph
+    public int removed() {
+        lock.readLock().lock();
+        try {
+            return removed.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return nodes.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Add the vector of the id, replacing its previous vector
+    public void add(long id, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodes.remove(id);
+            if (previous != null) {
+                removed.set(previous);
+            }
+            int node = allocate(id, vector);
+            nodes.put(id, node);
+            link(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodes.remove(id);
+            if (node != null) {
+                removed.set(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //At most k ids closest to the id, closest first, without the id itself. Null when the id is not indexed
+    public List<Long> neighbors(long id, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodes.get(id);
+            if (node == null) {
+                return null;
+            }
+            return search(Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions), k, ef, node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //At most k ids closest to the vector, closest first
+    public List<Long> search(float[] vector, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            return search(normalize(vector), k, ef, -1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> search(float[] query, int k, int ef, int excluded) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int entry = entryPoint;
+        for (int layer = topLayer; layer > 0; layer--) {
+            entry = closest(query, entry, layer);
+        }
+        //Removed nodes and the excluded one take places among the ef closest
+        NodeHeap found = searchLayer(query, entry, Math.max(ef, k) + 1, 0);
+        int[] closest = found.sortedNodes();
+        List<Long> result = new ArrayList<>(Math.min(k, closest.length));
+        for (int i = 0; i < closest.length && result.size() < k; i++) {
+            if (closest[i] != excluded && !removed.get(closest[i])) {
+                result.add(ids[closest[i]]);
+            }
+        }
+        return result;
+    }
+
+    private int allocate(long id, float[] vector) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            vectors = Arrays.copyOf(vectors, capacity * dimensions);
+            ids = Arrays.copyOf(ids, capacity);
+            neighbors = Arrays.copyOf(neighbors, capacity);
+        }
+        int node = size++;
+        System.arraycopy(normalize(vector), 0, vectors, node * dimensions, dimensions);
+        ids[node] = id;
+        int layers = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier) + 1;
+        neighbors[node] = new int[layers][];
+        for (int layer = 0; layer < layers; layer++) {
+            neighbors[node][layer] = new int[capacity(layer) + 1];
+        }
+        return node;
+    }
+
+    //Connect a new node to its closest nodes on each of its layers
+    private void link(int node) {
+        int nodeTop = neighbors[node].length - 1;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLayer = nodeTop;
+            return;
+        }
+        float[] query = Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+        int entry = entryPoint;
+        for (int layer = topLayer; layer > nodeTop; layer--) {
+            entry = closest(query, entry, layer);
+        }
+        for (int layer = Math.min(topLayer, nodeTop); layer >= 0; layer--) {
+            NodeHeap found = searchLayer(query, entry, efConstruction, layer);
+            int[] candidates = found.sortedNodes();
+            int[] selected = select(node, candidates, capacity(layer));
+            int[] list = neighbors[node][layer];
+            list[0] = selected.length;
+            System.arraycopy(selected, 0, list, 1, selected.length);
+            for (int neighbor : selected) {
+                connect(neighbor, node, layer);
+            }
+            entry = candidates[0];
+        }
+        if (nodeTop > topLayer) {
+            entryPoint = node;
+            topLayer = nodeTop;
+        }
+    }
+
+    //Add the node to the neighbors of the other one, keeping the best ones when the list is full
+    private void connect(int from, int node, int layer) {
+        int[] list = neighbors[from][layer];
+        int count = list[0];
+        if (count < list.length - 1) {
+            list[count + 1] = node;
+            list[0] = count + 1;
+            return;
+        }
+        int[] candidates = Arrays.copyOfRange(list, 1, count + 2);
+        candidates[count] = node;
+        float[] distances = new float[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            distances[i] = distance(from, candidates[i]);
+        }
+        sortByDistance(candidates, distances);
+        int[] selected = select(from, candidates, count);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    //Keep candidates (closest first) that are closer to the node than to any kept one, so the
+    //links point in different directions, then fill up with the closest remaining ones
+    private int[] select(int node, int[] candidates, int capacity) {
+        int[] selected = new int[Math.min(capacity, candidates.length)];
+        boolean[] kept = new boolean[candidates.length];
+        int count = 0;
+        for (int c = 0; c < candidates.length && count < selected.length; c++) {
+            float toNode = distance(node, candidates[c]);
+            boolean diverse = true;
+            for (int s = 0; s < count && diverse; s++) {
+                diverse = distance(candidates[c], selected[s]) > toNode;
+            }
+            if (diverse) {
+                selected[count++] = candidates[c];
+                kept[c] = true;
+            }
+        }
+        for (int c = 0; c < candidates.length && count < selected.length; c++) {
+            if (!kept[c]) {
+                selected[count++] = candidates[c];
+            }
+        }
+        return selected;
+    }
+
+    //Greedy walk to the node closest to the query on an upper layer
+    private int closest(float[] query, int entry, int layer) {
+        int current = entry;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] list = neighbors[current][layer];
+            for (int i = 1; i <= list[0]; i++) {
+                float d = distance(query, list[i]);
+                if (d < currentDistance) {
+                    current = list[i];
+                    currentDistance = d;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    //Best-first exploration of a layer keeping the ef closest nodes
+    private NodeHeap searchLayer(float[] query, int entry, int ef, int layer) {
+        Visited seen = VISITED.get();
+        seen.reset(size);
+        NodeHeap candidates = new NodeHeap(ef, false);
+        NodeHeap found = new NodeHeap(ef, true);
+        float entryDistance = distance(query, entry);
+        seen.add(entry);
+        candidates.push(entry, entryDistance);
+        found.push(entry, entryDistance);
+        while (candidates.size() > 0) {
+            float candidateDistance = candidates.topDistance();
+            if (found.size() >= ef && candidateDistance > found.topDistance()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int[][] layers = neighbors[candidate];
+            if (layer >= layers.length) {
+                continue;
+            }
+            int[] list = layers[layer];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbor = list[i];
+                if (!seen.add(neighbor)) {
+                    continue;
+                }
+                float d = distance(query, neighbor);
+                if (found.size() < ef || d < found.topDistance()) {
+                    candidates.push(neighbor, d);
+                    found.push(neighbor, d);
+                    if (found.size() > ef) {
+                        found.pop();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int capacity(int layer) {
+        return layer == 0 ? 2 * m : m;
+    }
+
+    private float distance(float[] query, int node) {
+        float dot = 0f;
+        int offset = node * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * vectors[offset + i];
+        }
+        return 1f - dot;
+    }
+
+    private float distance(int a, int b) {
+        float dot = 0f;
+        int offsetA = a * dimensions;
+        int offsetB = b * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            dot += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return 1f - dot;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0d;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] unit = vector.clone();
+        if (norm > 0d) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < unit.length; i++) {
+                unit[i] *= scale;
+            }
+        }
+        return unit;
+    }
+
+    //Insertion sort of a few nodes by distance
+    private static void sortByDistance(int[] nodes, float[] distances) {
+        for (int i = 1; i < nodes.length; i++) {
+            int node = nodes[i];
+            float d = distances[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > d) {
+                nodes[j + 1] = nodes[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            distances[j + 1] = d;
+        }
+    }
+
+    //Binary heap of nodes by distance, the farthest on top for a max heap
+    private static final class NodeHeap {
+        private int[] nodes;
+        private float[] distances;
+        private final boolean max;
+        private int size;
+
+        NodeHeap(int capacity, boolean max) {
+            this.nodes = new int[capacity + 1];
+            this.distances = new float[capacity + 1];
+            this.max = max;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topDistance() {
+            return distances[0];
+        }
+
+        void push(int node, float distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int position = size++;
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (!before(distance, distances[parent])) {
+                    break;
+                }
+                nodes[position] = nodes[parent];
+                distances[position] = distances[parent];
+                position = parent;
+            }
+            nodes[position] = node;
+            distances[position] = distance;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            int node = nodes[size];
+            float distance = distances[size];
+            int position = 0;
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(distances[child + 1], distances[child])) {
+                    child++;
+                }
+                if (!before(distances[child], distance)) {
+                    break;
+                }
+                nodes[position] = nodes[child];
+                distances[position] = distances[child];
+                position = child;
+            }
+            nodes[position] = node;
+            distances[position] = distance;
+            return top;
+        }
+
+        //Nodes from the closest to the farthest, emptying the heap
+        int[] sortedNodes() {
+            int[] sorted = new int[size];
+            if (max) {
+                for (int i = sorted.length - 1; i >= 0; i--) {
+                    sorted[i] = pop();
+                }
+            } else {
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i] = pop();
+                }
+            }
+            return sorted;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+
+    //Nodes seen by the current search of the thread, cleared by bumping a stamp. Sized for the largest index searched
+    private static final class Visited {
+        private int[] stamps = new int[0];
+        private int stamp;
+
+        void reset(int size) {
+            if (stamps.length < size) {
+                stamps = new int[Math.max(size, stamps.length * 2)];
+                stamp = 0;
+            }
+            stamp++;
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+        }
+
+        //Mark the node, false when it was already seen
+        boolean add(int node) {
+            if (stamps[node] == stamp) {
+                return false;
+            }
+            stamps[node] = stamp;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.contenetwise.recommender.services.search;
+
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Movies similar to a movie, answered from an HNSW graph over movie embeddings. The
+ * embedding of a movie joins two unit vectors:
+ * <ul>
+ *     <li>one dimension per genre, set for the genres of the movie,</li>
+ *     <li>a sketch of who ranked it: every user adds their centered score to each
+ *     dimension, with a sign given by a hash of the user and the dimension, so movies
+ *     rated alike by the same users point the same way.</li>
+ * </ul>
+ * The cosine similarity of two embeddings is the genre similarity and the rating
+ * similarity averaged with the genre weight.
+ *
+ * <p>The graph is built in the background and built again on a schedule to take the new
+ * rankings into account. Created movies are added right away with their genres only,
+ * deleted movies are removed, including those changed while a build is running.
+ */
+@Component
+public class SimilarMovieIndex {
+
+    private final MovieRepository movieRepository;
+    private final RankingRepository rankingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int genreDimensions;
+    private final int ratingDimensions;
+    private final float genreScale;
+    private final float ratingScale;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final Timer searchTimer;
+    private static final Logger logger = LoggerFactory.getLogger(SimilarMovieIndex.class);
+
+    private volatile HnswIndex index;
+    //Dimension of every genre, new genres take the next free one and then share them
+    private Map<String, Integer> genreSlots = new HashMap<>();
+    //Movie changes seen while a build is running, applied to the new graph before it is published
+    private List<MovieChangedEvent> pending;
+
+    public SimilarMovieIndex(MovieRepository movieRepository, RankingRepository rankingRepository,
+                             PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                             @Value("${recommender.similar.genre-dimensions:32}") int genreDimensions,
+                             @Value("${recommender.similar.rating-dimensions:32}") int ratingDimensions,
+                             @Value("${recommender.similar.genre-weight:0.5}") double genreWeight,
+                             @Value("${recommender.similar.m:16}") int m,
+                             @Value("${recommender.similar.ef-construction:100}") int efConstruction,
+                             @Value("${recommender.similar.ef-search:50}") int efSearch,
+                             @Value("${recommender.similar.default-limit:10}") int defaultLimit,
+                             @Value("${recommender.similar.max-limit:100}") int maxLimit) {
+        if (ratingDimensions > Long.SIZE) {
+            throw new IllegalArgumentException("recommender.similar.rating-dimensions must not exceed " + Long.SIZE);
+        }
+        this.movieRepository = movieRepository;
+        this.rankingRepository = rankingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.genreDimensions = genreDimensions;
+        this.ratingDimensions = ratingDimensions;
+        this.genreScale = (float) Math.sqrt(genreWeight);
+        this.ratingScale = (float) Math.sqrt(1 - genreWeight);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        this.index = newIndex();
+        this.searchTimer = Timer.builder("recommender.similar.search")
+                .description("Duration of a similar movies query")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("recommender.similar.movies", this, similar -> similar.index.size())
+                .description("Number of movies in the similar movies index")
+                .register(meterRegistry);
+    }
+
+    //Number of similar movies to return, or null when the requested limit is not between 1 and the max limit
+    public Integer limit(Integer limit) {
+        int size = limit == null ? defaultLimit : limit;
+        return size < 1 || size > maxLimit ? null : size;
+    }
+
+    //Ids of at most k movies similar to the movie, most similar first. Empty when the movie is not indexed
+    public Optional<List<Long>> similar(long movieId, int k) {
+        return Optional.ofNullable(searchTimer.record(() -> index.neighbors(movieId, k, Math.max(efSearch, k))));
+    }
+
+    //Compute the embeddings of every movie and build a new graph
+    @Scheduled(initialDelayString = "${recommender.similar.initial-delay:PT20S}",
+            fixedDelayString = "${recommender.similar.refresh-interval:PT1H}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        try {
+            // Only the loading needs a connection, the graph is built outside the transaction
+            Embeddings embeddings = transactionTemplate.execute(status -> load());
+            HnswIndex built = newIndex();
+            embeddings.vectors().forEach(built::add);
+            synchronized (this) {
+                genreSlots = embeddings.genreSlots();
+                pending.forEach(event -> apply(built, event));
+                index = built;
+            }
+            logger.info("Similar movies index built for {} movies in {} ms", built.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+        }
+    }
+
+    @EventListener
+    public synchronized void onMovieChanged(MovieChangedEvent event) {
+        apply(index, event);
+        if (pending != null) {
+            pending.add(event);
+        }
+    }
+
+    @EventListener(condition = "#event.isRename()")
+    public synchronized void onGenreChanged(GenreChangedEvent event) {
+        Integer slot = genreSlots.remove(event.previousName());
+        if (slot != null) {
+            genreSlots.put(event.name(), slot);
+        }
+    }
+
+    private void apply(HnswIndex target, MovieChangedEvent event) {
+        if (event.deleted()) {
+            target.remove(event.movieId());
+        } else {
+            target.add(event.movieId(), embedding(genreVector(event.genres(), genreSlots), null));
+        }
+    }
+
+    private Embeddings load() {
+        Map<Long, List<String>> genres = new HashMap<>();
+        try (Stream<Object[]> rows = movieRepository.streamCatalog()) {
+            rows.forEach(row -> {
+                List<String> movieGenres = genres.computeIfAbsent((Long) row[0], movieId -> new ArrayList<>());
+                if (row[2] != null) {
+                    movieGenres.add((String) row[2]);
+                }
+            });
+        }
+        // Genres in name order take the first dimensions, so a catalog always gets the same ones
+        Map<String, Integer> slots = new HashMap<>();
+        TreeSet<String> names = new TreeSet<>();
+        genres.values().forEach(names::addAll);
+        names.forEach(name -> slots.put(name, slots.size() < genreDimensions ? slots.size() : Math.floorMod(name.hashCode(), genreDimensions)));
+
+        Map<Long, float[]> ratings = new HashMap<>();
+        try (Stream<Object[]> rows = rankingRepository.streamUserScores()) {
+            rows.forEach(row -> {
+                int score = (Integer) row[2];
+                if (score == 3 || !genres.containsKey((Long) row[1])) {
+                    return;
+                }
+                float weight = score - 3;
+                long signs = mix((Long) row[0]);
+                float[] sketch = ratings.computeIfAbsent((Long) row[1], movieId -> new float[ratingDimensions]);
+                for (int i = 0; i < ratingDimensions; i++) {
+                    sketch[i] += ((signs >>> i) & 1) == 0 ? weight : -weight;
+                }
+            });
+        }
+
+        Map<Long, float[]> vectors = new HashMap<>();
+        genres.forEach((movieId, movieGenres) ->
+                vectors.put(movieId, embedding(genreVector(movieGenres, slots), ratings.get(movieId))));
+        return new Embeddings(slots, vectors);
+    }
+
+    private float[] genreVector(Collection<String> genres, Map<String, Integer> slots) {
+        float[] vector = new float[genreDimensions];
+        for (String genre : genres) {
+            Integer slot = slots.get(genre);
+            if (slot == null) {
+                slot = slots.size() < genreDimensions ? slots.size() : Math.floorMod(genre.hashCode(), genreDimensions);
+                slots.put(genre, slot);
+            }
+            vector[slot] = 1f;
+        }
+        return vector;
+    }
+
+    //Both parts scaled to unit length and weighted, a missing part stays 0
+    private float[] embedding(float[] genres, float[] ratings) {
+        float[] vector = new float[genreDimensions + ratingDimensions];
+        scaleInto(genres, vector, 0, genreScale);
+        if (ratings != null) {
+            scaleInto(ratings, vector, genreDimensions, ratingScale);
+        }
+        return vector;
+    }
+
+    private static void scaleInto(float[] part, float[] vector, int offset, float scale) {
+        double norm = 0d;
+        for (float value : part) {
+            norm += value * value;
+        }
+        if (norm == 0d) {
+            return;
+        }
+        float factor = (float) (scale / Math.sqrt(norm));
+        for (int i = 0; i < part.length; i++) {
+            vector[offset + i] = part[i] * factor;
+        }
+    }
+
+    //64 well mixed bits of the user id, one sign per rating dimension
+    private static long mix(long userId) {
+        long z = userId * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private HnswIndex newIndex() {
+        return new HnswIndex(genreDimensions + ratingDimensions, m, efConstruction, 42);
+    }
+
+    private record Embeddings(Map<String, Integer> genreSlots, Map<Long, float[]> vectors) {
+    }
+}
@@ -0,0 +1,327 @@
+package com.contenetwise.recommender.services.search;
+
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.ingest.CsvImportService;
+import com.contenetwise.recommender.services.ingest.ImportCompletedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Trigram inverted index over movie titles. Every lower-cased title is split into its
+ * three-character substrings; each trigram maps to the sorted ids of the movies
+ * containing it. A substring query intersects the posting lists of its own trigrams,
+ * smallest first, and only verifies the few remaining candidates. Posting lists grow by
+ * doubling, so adding ids in increasing order, as an import does, costs no copy per id.
+ */
+@Component
+public class TitleSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final long[] EMPTY = new long[0];
+
+    private final MovieRepository movieRepository;
+    private static final Logger logger = LoggerFactory.getLogger(TitleSearchIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> titles = new HashMap<>();
+    private final Map<String, Posting> postings = new HashMap<>();
+    //Title changes seen while a rebuild is running, applied again once the rebuilt index is swapped in
+    private List<Runnable> pending;
+
+    public TitleSearchIndex(MovieRepository movieRepository) {
+        this.movieRepository = movieRepository;
+    }
+
+    //Index every movie title of the catalog
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Map<Long, String> allTitles = new HashMap<>();
+            Map<String, List<Long>> allPostings = new HashMap<>();
+            try (Stream<Object[]> rows = movieRepository.streamTitles()) {
+                rows.forEach(row -> {
+                    Long movieId = (Long) row[0];
+                    String title = normalize((String) row[1]);
+                    allTitles.put(movieId, title);
+                    for (String gram : trigrams(title)) {
+                        allPostings.computeIfAbsent(gram, g -> new ArrayList<>()).add(movieId);
+                    }
+                });
+            }
+            lock.writeLock().lock();
+            try {
+                titles.clear();
+                titles.putAll(allTitles);
+                postings.clear();
+                allPostings.forEach((gram, ids) -> {
+                    long[] sorted = ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+                    postings.put(gram, new Posting(sorted, sorted.length));
+                });
+                //Adding and removing a title again is harmless when the catalog already had the change
+                pending.forEach(Runnable::run);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Title search index built for {} movies and {} trigrams", allTitles.size(), allPostings.size());
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @EventListener(condition = "#event.target() == '" + CsvImportService.MOVIES + "'")
+    @Transactional(readOnly = true)
+    public void onImportCompleted(ImportCompletedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onMovieChanged(MovieChangedEvent event) {
+        if (event.deleted()) {
+            remove(event.movieId());
+        } else {
+            add(event.movieId(), event.title());
+        }
+    }
+
+    public void add(Long movieId, String title) {
+        String normalized = normalize(title);
+        lock.writeLock().lock();
+        try {
+            addTitle(movieId, normalized);
+            if (pending != null) {
+                pending.add(() -> addTitle(movieId, normalized));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long movieId) {
+        lock.writeLock().lock();
+        try {
+            removeTitle(movieId);
+            if (pending != null) {
+                pending.add(() -> removeTitle(movieId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //Ids of the movies whose title contains the keyword (ignoring case), most relevant first
+    public List<Long> search(String keyword) {
+        String query = normalize(keyword);
+        if (query.isBlank()) {
+            return List.of();
+        }
+        List<Long> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (query.length() < GRAM) {
+                // Too short for trigrams, scan the titles held in memory
+                titles.forEach((movieId, title) -> {
+                    if (title.contains(query)) {
+                        matches.add(movieId);
+                    }
+                });
+            } else {
+                for (long movieId : candidates(query)) {
+                    if (titles.get(movieId).contains(query)) {
+                        matches.add(movieId);
+                    }
+                }
+            }
+            matches.sort(Comparator.<Long>comparingInt(movieId -> relevance(titles.get(movieId), query))
+                    .thenComparingInt(movieId -> titles.get(movieId).length())
+                    .thenComparing(Comparator.naturalOrder()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    //Ids of the movies whose title is the given one (ignoring case)
+    public List<Long> findExact(String title) {
+        String query = normalize(title);
+        if (query.isBlank()) {
+            return List.of();
+        }
+        List<Long> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (query.length() < GRAM) {
+                titles.forEach((movieId, candidate) -> {
+                    if (candidate.equals(query)) {
+                        matches.add(movieId);
+                    }
+                });
+            } else {
+                for (long movieId : candidates(query)) {
+                    if (titles.get(movieId).equals(query)) {
+                        matches.add(movieId);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.naturalOrder());
+        return matches;
+    }
+
+    //Intersection of the posting lists of the query trigrams, shortest list first
+    private long[] candidates(String query) {
+        Set<String> grams = trigrams(query);
+        Posting[] lists = new Posting[grams.size()];
+        int i = 0;
+        for (String gram : grams) {
+            Posting list = postings.get(gram);
+            if (list == null) {
+                return EMPTY;
+            }
+            lists[i++] = list;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+        long[] result = Arrays.copyOf(lists[0].ids, lists[0].size);
+        for (int l = 1; l < lists.length && result.length > 0; l++) {
+            result = intersect(result, lists[l]);
+        }
+        return result;
+    }
+
+    private static long[] intersect(long[] small, Posting large) {
+        long[] result = new long[small.length];
+        int size = 0;
+        int from = 0;
+        for (long id : small) {
+            int position = Arrays.binarySearch(large.ids, from, large.size, id);
+            if (position >= 0) {
+                result[size++] = id;
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+            if (from >= large.size) {
+                break;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    //0: exact title, 1: title prefix, 2: start of a word, 3: anywhere else
+    private static int relevance(String title, String query) {
+        if (title.equals(query)) {
+            return 0;
+        }
+        if (title.startsWith(query)) {
+            return 1;
+        }
+        int position = title.indexOf(query);
+        while (position > 0) {
+            if (!Character.isLetterOrDigit(title.charAt(position - 1))) {
+                return 2;
+            }
+            position = title.indexOf(query, position + 1);
+        }
+        return 3;
+    }
+
+    private void addTitle(Long movieId, String normalized) {
+        String previous = titles.put(movieId, normalized);
+        if (previous != null) {
+            trigrams(previous).forEach(gram -> removePosting(gram, movieId));
+        }
+        trigrams(normalized).forEach(gram -> addPosting(gram, movieId));
+    }
+
+    private void removeTitle(Long movieId) {
+        String previous = titles.remove(movieId);
+        if (previous != null) {
+            trigrams(previous).forEach(gram -> removePosting(gram, movieId));
+        }
+    }
+
+    private void addPosting(String gram, long movieId) {
+        Posting list = postings.computeIfAbsent(gram, g -> new Posting(new long[4], 0));
+        int position = Arrays.binarySearch(list.ids, 0, list.size, movieId);
+        if (position >= 0) {
+            return;
+        }
+        int insertAt = -position - 1;
+        if (list.size == list.ids.length) {
+            list.ids = Arrays.copyOf(list.ids, list.size * 2);
+        }
+        System.arraycopy(list.ids, insertAt, list.ids, insertAt + 1, list.size - insertAt);
+        list.ids[insertAt] = movieId;
+        list.size++;
+    }
+
+    private void removePosting(String gram, long movieId) {
+        Posting list = postings.get(gram);
+        if (list == null) {
+            return;
+        }
+        int position = Arrays.binarySearch(list.ids, 0, list.size, movieId);
+        if (position < 0) {
+            return;
+        }
+        if (list.size == 1) {
+            postings.remove(gram);
+            return;
+        }
+        System.arraycopy(list.ids, position + 1, list.ids, position, list.size - position - 1);
+        list.size--;
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    //Sorted movie ids of a trigram, the first size elements of ids
+    private static final class Posting {
+        private long[] ids;
+        private int size;
+
+        Posting(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+-- Brings a ranking table created before the persisted score to the current mapping:
+-- the score of every ranking, one ranking per user and movie, and the named foreign keys
+-- the API maps to its error messages. A new database has no ranking table yet, Hibernate
+-- creates it with all of them.
+DO $$
+DECLARE
+    reference RECORD;
+    existing TEXT;
+BEGIN
+    IF to_regclass('ranking') IS NULL THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE ranking ADD COLUMN IF NOT EXISTS score INTEGER;
+
+    -- Same scale as RankingScale: the rating, else the view percentage in buckets of 20%
+    UPDATE ranking SET score = CASE
+            WHEN rank1 IS NOT NULL THEN rank1
+            WHEN rank2 >= 81 THEN 5
+            WHEN rank2 >= 61 THEN 4
+            WHEN rank2 >= 41 THEN 3
+            WHEN rank2 >= 21 THEN 2
+            ELSE 1
+        END
+    WHERE score IS NULL AND (rank1 IS NOT NULL OR rank2 IS NOT NULL);
+
+    -- The latest ranking of a user and a movie is the one kept
+    DELETE FROM ranking older USING ranking newer
+    WHERE newer.user_id = older.user_id AND newer.movie_id = older.movie_id AND newer.id > older.id;
+
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conrelid = 'ranking'::regclass AND conname = 'uk_ranking_user_movie') THEN
+        ALTER TABLE ranking ADD CONSTRAINT uk_ranking_user_movie UNIQUE (user_id, movie_id);
+    END IF;
+
+    FOR reference IN SELECT * FROM (VALUES ('user_id', 'users', 'fk_ranking_user'),
+                                           ('movie_id', 'movies', 'fk_ranking_movie')) AS r(col, target, name) LOOP
+        SELECT c.conname INTO existing
+        FROM pg_constraint c
+        JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1]
+        WHERE c.conrelid = 'ranking'::regclass AND c.contype = 'f' AND a.attname = reference.col
+        LIMIT 1;
+        IF existing IS NULL THEN
+            EXECUTE format('ALTER TABLE ranking ADD CONSTRAINT %I FOREIGN KEY (%I) REFERENCES %I (id)',
+                    reference.name, reference.col, reference.target);
+        ELSIF existing <> reference.name THEN
+            EXECUTE format('ALTER TABLE ranking RENAME CONSTRAINT %I TO %I', existing, reference.name);
+        END IF;
+    END LOOP;
+END $$;
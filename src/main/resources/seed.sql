@@ -77,10 +77,10 @@ INSERT INTO movie_genre (movie_id, genre_id) VALUES
 
 
 
-INSERT INTO ranking (user_id, movie_id, rank1, rank2) VALUES
-(1, 1, 4, 85),           -- Alice ranks Toy Story (both)
-(1, 2, 5, NULL),         -- Alice ranks Grumpier Old Men (rank1)
-(2, 1, NULL, 90),        -- Bob ranks Toy Story (rank2)
-(2, 3, 3, NULL),         -- Bob ranks Die Hard (rank1)
-(3, 4, NULL, 70),        -- Charlie ranks Star Wars (rank2)
-(3, 2, 2, NULL);         -- Charlie ranks Grumpier Old Men (only rank1)
+INSERT INTO ranking (user_id, movie_id, rank1, rank2, score) VALUES
+(1, 1, 4, 85, 4),        -- Alice ranks Toy Story (both)
+(1, 2, 5, NULL, 5),      -- Alice ranks Grumpier Old Men (rank1)
+(2, 1, NULL, 90, 5),     -- Bob ranks Toy Story (rank2)
+(2, 3, 3, NULL, 3),      -- Bob ranks Die Hard (rank1)
+(3, 4, NULL, 70, 4),     -- Charlie ranks Star Wars (rank2)
+(3, 2, 2, NULL, 2);      -- Charlie ranks Grumpier Old Men (only rank1)
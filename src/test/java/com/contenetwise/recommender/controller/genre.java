@@ -2,14 +2,20 @@ package com.contenetwise.recommender.controller;
 
 
 import com.contenetwise.recommender.controllers.GenreController;
+import com.contenetwise.recommender.controllers.KeysetPagination;
 import com.contenetwise.recommender.domain.Genre;
 import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.services.CatalogCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
@@ -17,6 +23,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,6 +42,15 @@ class GenreControllerTest {
     @Mock
     private GenreRepository genreRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private KeysetPagination pagination = new KeysetPagination(100, 1000);
+
+    @Spy
+    private CatalogCache catalogCache = new CatalogCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+
     @InjectMocks
     private GenreController genreController;
 
@@ -85,7 +101,7 @@ class GenreControllerTest {
 
     @Test
     void testGetAllGenres() throws Exception {
-        when(genreRepository.findAll()).thenReturn(List.of(genre));
+        when(genreRepository.findPage(anyLong(), any(Limit.class))).thenReturn(List.of(genre));
 
         mockMvc.perform(get("/api/genres"))
                 .andExpect(status().isOk())
@@ -1,30 +1,39 @@
 package com.contenetwise.recommender.controller;
 
 
+import com.contenetwise.recommender.controllers.KeysetPagination;
 import com.contenetwise.recommender.controllers.MovieController;
 import com.contenetwise.recommender.domain.Genre;
 import com.contenetwise.recommender.domain.Movie;
 import com.contenetwise.recommender.dto.MovieRequest;
 import com.contenetwise.recommender.repositories.MovieRepository;
 import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.services.search.SimilarMovieIndex;
+import com.contenetwise.recommender.services.search.TitleSearchIndex;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -39,6 +48,18 @@ class MovieControllerTest {
     @Mock
     private GenreRepository genreRepository;
 
+    @Mock
+    private TitleSearchIndex titleSearchIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SimilarMovieIndex similarMovieIndex;
+
+    @Spy
+    private KeysetPagination pagination = new KeysetPagination(100, 1000);
+
     @InjectMocks
     private MovieController movieController;
 
@@ -87,6 +108,55 @@ class MovieControllerTest {
         verify(movieRepository, never()).save(any(Movie.class));
     }
 
+    @Test
+    void testGetSimilarMoviesShouldReturnMoviesMostSimilarFirst() throws Exception {
+        when(similarMovieIndex.limit(2)).thenReturn(2);
+        when(similarMovieIndex.similar(1L, 2)).thenReturn(Optional.of(List.of(3L, 2L)));
+        when(movieRepository.findAllByIdInOrder(List.of(3L, 2L))).thenReturn(List.of(
+                Movie.builder().id(3L).title("Closest").genres(Set.of()).build(),
+                Movie.builder().id(2L).title("Second").genres(Set.of()).build()));
+
+        mockMvc.perform(get("/api/movies/1/similar").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movies[0].title").value("Closest"))
+                .andExpect(jsonPath("$.movies[1].title").value("Second"));
+    }
+
+    @Test
+    void testGetSimilarMoviesShouldReturnBadRequestIfLimitIsInvalid() throws Exception {
+        when(similarMovieIndex.limit(0)).thenReturn(null);
+
+        mockMvc.perform(get("/api/movies/1/similar").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        verify(similarMovieIndex, never()).similar(anyLong(), anyInt());
+    }
+
+    @Test
+    void testGetSimilarMoviesShouldReturnNotFoundIfMovieDoesNotExist() throws Exception {
+        when(similarMovieIndex.limit(null)).thenReturn(10);
+        when(similarMovieIndex.similar(1L, 10)).thenReturn(Optional.empty());
+        when(movieRepository.existsById(1L)).thenReturn(false);
+
+        mockMvc.perform(get("/api/movies/1/similar"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetSimilarMoviesShouldReturnNoContentIfNoSimilarMovieIsKnown() throws Exception {
+        when(similarMovieIndex.limit(null)).thenReturn(10);
+        // A movie not indexed yet, then an indexed movie without neighbors
+        when(similarMovieIndex.similar(1L, 10)).thenReturn(Optional.empty(), Optional.of(List.of()));
+        when(movieRepository.existsById(1L)).thenReturn(true);
+
+        mockMvc.perform(get("/api/movies/1/similar"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/movies/1/similar"))
+                .andExpect(status().isNoContent());
+
+        verify(movieRepository, never()).findAllByIdInOrder(any());
+    }
+
 //    @Test
 //    void testCreateMovieShouldCreateNewGenreWhenNotFound() throws Exception {
 //        String genreName = "Action";
@@ -0,0 +1,83 @@
+package com.contenetwise.recommender.controller;
+
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Set;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Not transactional: the recommendations are looked up from the query threads
+@SpringBootTest(properties = {"recommender.recommendations.default-limit=2",
+        "recommender.recommendations.max-limit=10"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RankingControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GenreRepository genreRepository;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private RankingRepository rankingRepository;
+
+    @Autowired
+    private GenreIndex genreIndex;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder().username("limit_" + System.nanoTime()).build());
+        Genre genre = genreRepository.save(Genre.builder().name("Limit " + user.getId()).build());
+        for (int i = 0; i < 5; i++) {
+            Movie movie = movieRepository.save(Movie.builder().title("Limited " + i).genres(Set.of(genre)).build());
+            if (i == 0) {
+                rankingRepository.save(Ranking.builder().user(user).movie(movie).rank1(5).build());
+            }
+        }
+        genreIndex.rebuild();
+    }
+
+    @Test
+    void testRecommendationsAreLimited() throws Exception {
+        mockMvc.perform(get("/api/rankings/user/{userId}/recommendations", user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movies.length()").value(2));
+        mockMvc.perform(get("/api/rankings/user/{userId}/recommendations", user.getId()).param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.movies.length()").value(3))
+                .andExpect(jsonPath("$.movies[0].title").value("Limited 1"));
+    }
+
+    @Test
+    void testInvalidLimitsAreBadRequests() throws Exception {
+        mockMvc.perform(get("/api/rankings/user/{userId}/recommendations", user.getId()).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/rankings/user/{userId}/recommendations", user.getId()).param("limit", "11"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,156 @@
+package com.contenetwise.recommender.controller;
+
+import com.contenetwise.recommender.controllers.KeysetPagination;
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.CatalogCache;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+@ActiveProfiles("test")
+class MovieReadPathTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private GenreRepository genreRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RankingRepository rankingRepository;
+
+    @Autowired
+    private GenreIndex genreIndex;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        // Responses cached by other tests would hide the queries
+        catalogCache.invalidateAll();
+    }
+
+    @Test
+    void testMovieEndpointsUseConstantStatementCount() throws Exception {
+        User user = userRepository.save(User.builder().username("reader").build());
+        seed("ReadPathSmall", 1, user);
+        seed("ReadPathLarge", 8, user);
+
+        // The same endpoint must not issue more statements for more movies
+        assertEquals(countStatements(get("/api/movies/by-genre").param("genre", "ReadPathSmall")),
+                countStatements(get("/api/movies/by-genre").param("genre", "ReadPathLarge")));
+        assertEquals(countStatements(get("/api/movies/search").param("genres", "ReadPathSmall")),
+                countStatements(get("/api/movies/search").param("genres", "ReadPathLarge")));
+        // One page of ids, then the movies of the page with their genres
+        assertEquals(2, countStatements(get("/api/movies")));
+
+        // Filtering on one genre still returns every genre of the movie
+        entityManager.clear();
+        mockMvc.perform(get("/api/movies/by-genre").param("genre", "ReadPathSmall"))
+                .andExpect(jsonPath("$.movies[0].genres.length()").value(2));
+    }
+
+    @Test
+    void testUserRankingsUseConstantStatementCount() throws Exception {
+        User fewRankings = userRepository.save(User.builder().username("few").build());
+        User manyRankings = userRepository.save(User.builder().username("many").build());
+        seed("ReadPathFew", 1, fewRankings);
+        seed("ReadPathMany", 8, manyRankings);
+
+        assertEquals(countStatements(get("/api/rankings/user/{userId}", fewRankings.getId())),
+                countStatements(get("/api/rankings/user/{userId}", manyRankings.getId())));
+    }
+
+    @Test
+    void testUserRankingPagesFollowContinuationTokens() throws Exception {
+        User user = userRepository.save(User.builder().username("pager").build());
+        seed("ReadPathPaged", 5, user);
+        entityManager.clear();
+
+        // Pages of two rankings: 2 + 2 + 1, the last page has no continuation token
+        String token = mockMvc.perform(get("/api/rankings/user/{userId}", user.getId()).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].movie.title").value("ReadPathPaged 0"))
+                .andReturn().getResponse().getHeader(KeysetPagination.CONTINUATION_HEADER);
+        token = mockMvc.perform(get("/api/rankings/user/{userId}", user.getId()).param("size", "2").param("continuationToken", token))
+                .andExpect(jsonPath("$[0].movie.title").value("ReadPathPaged 2"))
+                .andReturn().getResponse().getHeader(KeysetPagination.CONTINUATION_HEADER);
+        mockMvc.perform(get("/api/rankings/user/{userId}", user.getId()).param("size", "2").param("continuationToken", token))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].movie.title").value("ReadPathPaged 4"))
+                .andExpect(header().doesNotExist(KeysetPagination.CONTINUATION_HEADER));
+
+        mockMvc.perform(get("/api/rankings/user/{userId}", user.getId()).param("continuationToken", "not-a-token"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/movies").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    //Movies of a new genre, each with two genres and ranked by the user
+    private void seed(String genreName, int movies, User user) {
+        Genre genre = genreRepository.save(Genre.builder().name(genreName).build());
+        Genre shared = genreRepository.findByName("ReadPathShared")
+                .orElseGet(() -> genreRepository.save(Genre.builder().name("ReadPathShared").build()));
+        for (int i = 0; i < movies; i++) {
+            Movie movie = movieRepository.save(Movie.builder().title(genreName + " " + i).genres(Set.of(genre, shared)).build());
+            rankingRepository.save(Ranking.builder().user(user).movie(movie).rank1(4).build());
+        }
+        entityManager.flush();
+        genreIndex.rebuild();
+    }
+
+    //Statements of the request alone: StatementCountFilter counts those of the request thread,
+    //not those of the background jobs running at the same time
+    private long countStatements(RequestBuilder request) throws Exception {
+        entityManager.clear();
+        double before = requestStatements();
+        mockMvc.perform(request).andExpect(status().isOk());
+        return Math.round(requestStatements() - before);
+    }
+
+    private double requestStatements() {
+        return meterRegistry.find("recommender.db.request.statements").summaries().stream()
+                .mapToDouble(DistributionSummary::totalAmount)
+                .sum();
+    }
+}
@@ -1,5 +1,6 @@
 package com.contenetwise.recommender.controller;
 
+import com.contenetwise.recommender.controllers.KeysetPagination;
 import com.contenetwise.recommender.controllers.UserController;
 import com.contenetwise.recommender.domain.User;
 import com.contenetwise.recommender.repositories.UserRepository;
@@ -8,7 +9,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
@@ -33,6 +36,9 @@ class UserControllerTest {
     @Mock
     private UserRepository userRepository;
 
+    @Spy
+    private KeysetPagination pagination = new KeysetPagination(100, 1000);
+
     @InjectMocks
     private UserController userController;
 
@@ -83,7 +89,7 @@ class UserControllerTest {
 
     @Test
     void testGetAllUsers() throws Exception {
-        when(userRepository.findAll()).thenReturn(List.of(user));
+        when(userRepository.findPage(anyLong(), any(Limit.class))).thenReturn(List.of(user));
 
         mockMvc.perform(get("/api/users"))
                 .andExpect(status().isOk())
@@ -0,0 +1,95 @@
+package com.contenetwise.recommender.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//The Flyway migrations on PostgreSQL, from an empty database and from the schema before the persisted score.
+//Skipped when Docker is not available
+@Testcontainers(disabledWithoutDocker = true)
+class MigrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP SCHEMA public CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA public");
+    }
+
+    @Test
+    void testEmptyDatabaseIsLeftToHibernate() {
+        migrate();
+
+        assertNull(jdbcTemplate.queryForObject("SELECT to_regclass('ranking')::text", String.class));
+    }
+
+    @Test
+    void testExistingRankingsGetTheirScoreAndKeys() {
+        jdbcTemplate.execute("CREATE TABLE users (id BIGSERIAL PRIMARY KEY, username VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE movies (id BIGSERIAL PRIMARY KEY, title VARCHAR(255))");
+        jdbcTemplate.execute("""
+                CREATE TABLE ranking (id BIGSERIAL PRIMARY KEY,
+                    user_id BIGINT REFERENCES users (id), movie_id BIGINT REFERENCES movies (id),
+                    rank1 INTEGER, rank2 INTEGER)
+                """);
+        jdbcTemplate.update("INSERT INTO users (id, username) VALUES (1, 'a'), (2, 'b')");
+        jdbcTemplate.update("INSERT INTO movies (id, title) VALUES (1, 'A'), (2, 'B')");
+        jdbcTemplate.update("""
+                INSERT INTO ranking (id, user_id, movie_id, rank1, rank2) VALUES
+                    (1, 1, 1, 2, NULL), (2, 1, 1, 4, 90), (3, 1, 2, NULL, 65), (4, 2, 1, NULL, NULL), (5, 2, 2, NULL, 10)
+                """);
+
+        migrate();
+
+        //The older ranking of user 1 and movie 1 is removed, the others get the score of RankingScale
+        assertEquals(List.of("2:4", "3:4", "4:null", "5:1"), jdbcTemplate.queryForList(
+                "SELECT id || ':' || COALESCE(score::text, 'null') FROM ranking ORDER BY id", String.class));
+        assertEquals(List.of("fk_ranking_movie", "fk_ranking_user", "uk_ranking_user_movie"), jdbcTemplate.queryForList(
+                "SELECT conname::text FROM pg_constraint WHERE conrelid = 'ranking'::regclass AND contype IN ('f', 'u') ORDER BY conname",
+                String.class));
+    }
+
+    @Test
+    void testMigratedRankingsAreLeftAsIs() {
+        jdbcTemplate.execute("CREATE TABLE users (id BIGSERIAL PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE movies (id BIGSERIAL PRIMARY KEY)");
+        jdbcTemplate.execute("""
+                CREATE TABLE ranking (id BIGSERIAL PRIMARY KEY, user_id BIGINT, movie_id BIGINT,
+                    rank1 INTEGER, rank2 INTEGER, score INTEGER,
+                    CONSTRAINT uk_ranking_user_movie UNIQUE (user_id, movie_id),
+                    CONSTRAINT fk_ranking_user FOREIGN KEY (user_id) REFERENCES users (id),
+                    CONSTRAINT fk_ranking_movie FOREIGN KEY (movie_id) REFERENCES movies (id))
+                """);
+
+        migrate();
+
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conrelid = 'ranking'::regclass AND contype IN ('f', 'u')", Integer.class));
+    }
+
+    //Same settings as application.properties
+    private void migrate() {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+}
@@ -0,0 +1,101 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.recommendation.AlsModel;
+import com.contenetwise.recommender.services.recommendation.AlsRecommendationEngine;
+import com.contenetwise.recommender.services.recommendation.AlsTrainer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AlsTrainerTest {
+
+    @Mock
+    private RankingRepository rankingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AlsTrainer trainer;
+
+    @BeforeEach
+    void setUp() {
+        // Users 1 and 2 share tastes, user 3 likes what they dislike
+        when(rankingRepository.streamUserScores()).thenReturn(Stream.of(
+                new Object[]{1L, 1L, 5},
+                new Object[]{1L, 2L, 5},
+                new Object[]{1L, 3L, 1},
+                new Object[]{2L, 1L, 5},
+                new Object[]{2L, 2L, 5},
+                new Object[]{2L, 3L, 1},
+                new Object[]{2L, 4L, 5},
+                new Object[]{3L, 3L, 5},
+                new Object[]{3L, 1L, 1}
+        ));
+        meterRegistry = new SimpleMeterRegistry();
+        trainer = new AlsTrainer(rankingRepository, transactionManager, meterRegistry,
+                true, AlsTrainer.EXPLICIT, 4, 15, 0.05, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        trainer.shutdown();
+    }
+
+    @Test
+    void testTrainingPublishesModelAndMetrics() {
+        assertEquals(0, trainer.getModel().movieCount(), "No model before training");
+
+        trainer.train();
+
+        AlsModel model = trainer.getModel();
+        assertEquals(3, model.userCount());
+        assertEquals(4, model.movieCount());
+        assertEquals(1, meterRegistry.get("recommender.als.training").timer().count());
+        assertEquals(15, meterRegistry.get("recommender.als.iteration").timer().count());
+        double loss = meterRegistry.get("recommender.als.loss").gauge().value();
+        assertTrue(loss < 1.0, "Training RMSE should be small on such a tiny dataset, was " + loss);
+    }
+
+    @Test
+    void testRecommendationsFollowPredictedPreference() {
+        trainer.train();
+        AlsRecommendationEngine engine = new AlsRecommendationEngine(trainer, 10);
+
+        List<Long> recommendations = engine.recommend(1L, List.of(ranking(1L, 5), ranking(2L, 5), ranking(3L, 1)));
+
+        assertEquals(List.of(4L), recommendations, "Only the movie user 1 has not ranked is recommended");
+        assertTrue(engine.recommend(99L, List.of(ranking(1L, 5))).isEmpty(), "Unknown users have no recommendations");
+    }
+
+    @Test
+    void testDisabledTrainerKeepsEmptyModel() {
+        AlsTrainer disabled = new AlsTrainer(rankingRepository, transactionManager, meterRegistry,
+                false, AlsTrainer.EXPLICIT, 4, 15, 0.05, 10);
+        disabled.train();
+
+        assertEquals(0, disabled.getModel().movieCount());
+        verify(rankingRepository, never()).streamUserScores();
+        disabled.shutdown();
+    }
+
+    private static Ranking ranking(Long movieId, int rank1) {
+        return Ranking.builder().movie(Movie.builder().id(movieId).build()).rank1(rank1).build();
+    }
+}
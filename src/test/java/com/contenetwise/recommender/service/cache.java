@@ -0,0 +1,111 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.dto.GenreDTOResponse;
+import com.contenetwise.recommender.dto.KeysetPage;
+import com.contenetwise.recommender.dto.MovieRequest;
+import com.contenetwise.recommender.services.CatalogCache;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CatalogCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogCache catalogCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        catalogCache = new CatalogCache(meterRegistry, 100, Duration.ofMinutes(1));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testMovieIsLoadedOnceAndEvictedOnDelete() {
+        assertEquals("Heat", catalogCache.getMovie(1L, () -> movie("Heat", "Crime")).getTitle());
+        assertEquals("Heat", catalogCache.getMovie(1L, () -> movie("Heat", "Crime")).getTitle());
+        assertEquals(1, loads.get());
+
+        catalogCache.onMovieChanged(MovieChangedEvent.deleted(1L, "Heat", Set.of("Crime")));
+        assertNull(catalogCache.getMovie(1L, () -> null));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "catalog.movies").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void testOnlyPagesCoveringTheChangedMovieAreEvicted() {
+        // Two pages of two movies: ids (MIN, 2] with more to come, then (2, 3]
+        catalogCache.getMoviePage(Long.MIN_VALUE, 2, () -> page(Long.MIN_VALUE, 2L, true));
+        catalogCache.getMoviePage(2L, 2, () -> page(2L, 3L, false));
+        assertEquals(2, loads.get());
+
+        // A new movie only changes the last page
+        catalogCache.onMovieChanged(MovieChangedEvent.created(4L, "New", Set.of()));
+        catalogCache.getMoviePage(Long.MIN_VALUE, 2, () -> page(Long.MIN_VALUE, 2L, true));
+        catalogCache.getMoviePage(2L, 2, () -> page(2L, 4L, false));
+        assertEquals(3, loads.get());
+
+        // Deleting a movie of the first page only changes the first page
+        catalogCache.onMovieChanged(MovieChangedEvent.deleted(1L, "Old", Set.of()));
+        catalogCache.getMoviePage(Long.MIN_VALUE, 2, () -> page(Long.MIN_VALUE, 2L, true));
+        catalogCache.getMoviePage(2L, 2, () -> page(2L, 4L, false));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testPageLoadedDuringAChangeIsNotKept() {
+        // The movie is created while the last page is still being read without it
+        catalogCache.getMoviePage(2L, 2, () -> {
+            catalogCache.onMovieChanged(MovieChangedEvent.created(4L, "New", Set.of()));
+            return page(2L, 3L, false);
+        });
+
+        assertEquals(4L, catalogCache.getMoviePage(2L, 2, () -> page(2L, 4L, false)).lastId());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testGenreRenameEvictsMoviesOfTheGenre() {
+        catalogCache.getMovie(1L, () -> movie("Heat", "Crime"));
+        catalogCache.getMovie(2L, () -> movie("Up", "Animation"));
+        catalogCache.getGenrePage(Long.MIN_VALUE, 10, () -> {
+            loads.incrementAndGet();
+            return new KeysetPage<>(List.of(new GenreDTOResponse("Crime")), Long.MIN_VALUE, 7L, false);
+        });
+
+        catalogCache.onGenreChanged(GenreChangedEvent.renamed(7L, "Crime", "Thriller"));
+        catalogCache.getMovie(1L, () -> movie("Heat", "Thriller"));
+        catalogCache.getMovie(2L, () -> movie("Up", "Animation"));
+        catalogCache.getGenrePage(Long.MIN_VALUE, 10, () -> {
+            loads.incrementAndGet();
+            return new KeysetPage<>(List.of(new GenreDTOResponse("Thriller")), Long.MIN_VALUE, 7L, false);
+        });
+        assertEquals(5, loads.get(), "Only the renamed genre's movie and the genre page are reloaded");
+    }
+
+    private MovieRequest movie(String title, String genre) {
+        loads.incrementAndGet();
+        MovieRequest movie = new MovieRequest();
+        movie.setTitle(title);
+        movie.setGenres(Set.of(genre));
+        return movie;
+    }
+
+    private KeysetPage<List<MovieRequest>> page(long after, Long lastId, boolean hasMore) {
+        loads.incrementAndGet();
+        return new KeysetPage<>(List.of(), after, lastId, hasMore);
+    }
+}
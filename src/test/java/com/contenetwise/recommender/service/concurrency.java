@@ -0,0 +1,74 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.services.monitoring.ConcurrencyLimitedDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ConcurrencyLimitedDataSourceTest {
+
+    private DataSource pool;
+    private ConcurrencyLimitedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        dataSource = new ConcurrencyLimitedDataSource(pool, 1, Duration.ofMillis(50));
+    }
+
+    @Test
+    void testCallersBeyondThePermitsTimeOut() throws SQLException {
+        Connection connection = dataSource.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        verify(pool, times(1)).getConnection();
+
+        connection.close();
+        assertNotNull(dataSource.getConnection());
+    }
+
+    @Test
+    void testWaitingCallersGetTheReleasedPermit() throws Exception {
+        dataSource = new ConcurrencyLimitedDataSource(pool, 1, Duration.ofSeconds(5));
+        Connection connection = dataSource.getConnection();
+        CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (dataSource.getWaiting() == 0) {
+            Thread.sleep(5);
+        }
+
+        // Closing twice returns a single permit
+        connection.close();
+        connection.close();
+        assertNotNull(waiting.get(1, TimeUnit.SECONDS));
+        assertThrows(SQLTransientConnectionException.class, () -> new ConcurrencyLimitedDataSource(pool, 0, Duration.ZERO).getConnection());
+    }
+
+    @Test
+    void testPermitIsReturnedWhenThePoolFails() throws SQLException {
+        when(pool.getConnection()).thenThrow(new SQLException("pool exhausted")).thenAnswer(invocation -> mock(Connection.class));
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertNotNull(dataSource.getConnection());
+    }
+}
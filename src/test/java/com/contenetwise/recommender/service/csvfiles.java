@@ -0,0 +1,69 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.ingest.CsvImportService;
+import com.contenetwise.recommender.services.ingest.ImportReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Its own database, the files of the repository use the ids other tests create
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:csvfiles;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")
+@ActiveProfiles("test")
+class CsvFilesImportTest {
+
+    @Autowired
+    private CsvImportService importService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testImportTheFilesOfTheRepository() throws Exception {
+        //Copies, the checkpoints are written next to the files
+        Path users = Files.copy(Path.of("users.csv"), directory.resolve("users.csv"));
+        Path movies = Files.copy(Path.of("movies.csv"), directory.resolve("movies.csv"));
+        Path ratings = Files.copy(Path.of("ratings.csv"), directory.resolve("ratings.csv"));
+
+        List<ImportReport> reports = importService.importAll(users, movies, ratings);
+
+        assertEquals(3, reports.get(0).importedRows());
+        //movies.csv repeats its first ten movies
+        assertEquals(10, reports.get(1).importedRows());
+        assertEquals(10, reports.get(1).rejectedRows());
+        assertEquals(6, reports.get(2).importedRows());
+        assertEquals(0, reports.get(2).rejectedRows());
+        assertTrue(userRepository.findByUsername("Alice").isPresent());
+    }
+
+    @Test
+    void testHeaderMatchesWithoutCaseAndByteOrderMark() throws Exception {
+        Path users = Files.writeString(directory.resolve("export.csv"), "\uFEFFUser_Id,Username\n9101,exported_user\n");
+
+        ImportReport report = importService.importUsers(users);
+
+        assertEquals(1, report.importedRows());
+        assertTrue(userRepository.findByUsername("exported_user").isPresent());
+    }
+
+    @Test
+    void testFileOfAnotherTargetIsRejected() throws Exception {
+        //users.csv and ratings.csv both start with user_id
+        Path users = Files.writeString(directory.resolve("users.csv"), "user_id,username\n9102,misplaced_user\n");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> importService.importRatings(users));
+
+        assertTrue(e.getMessage().contains("user_id,movie_id,rating,view_percentage"));
+    }
+}
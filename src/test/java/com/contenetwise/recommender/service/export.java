@@ -0,0 +1,66 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.services.CatalogExportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class CatalogExportServiceTest {
+
+    @Autowired
+    private CatalogExportService catalogExportService;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private GenreRepository genreRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testExportWritesOneLinePerMovie() throws Exception {
+        Genre drama = genreRepository.save(Genre.builder().name("Export-Drama").build());
+        Genre crime = genreRepository.save(Genre.builder().name("Export-Crime").build());
+        movieRepository.save(Movie.builder().title("Export Godfather").genres(Set.of(drama, crime)).build());
+        movieRepository.save(Movie.builder().title("Export Short").genres(Set.of()).build());
+        movieRepository.flush();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = catalogExportService.exportMovies(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(exported, lines.length);
+        List<JsonNode> movies = new ArrayList<>();
+        for (String line : lines) {
+            JsonNode movie = objectMapper.readTree(line);
+            if (movie.get("title").asText().startsWith("Export ")) {
+                movies.add(movie);
+            }
+        }
+        assertEquals(2, movies.size());
+        assertEquals("Export Godfather", movies.get(0).get("title").asText());
+        assertEquals(2, movies.get(0).get("genres").size(), "Genres of a movie are grouped on its line");
+        assertEquals(0, movies.get(1).get("genres").size(), "Movies without genres are exported too");
+    }
+}
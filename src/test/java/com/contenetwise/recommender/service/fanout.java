@@ -0,0 +1,81 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.services.QueryExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class QueryExecutorTest {
+
+    private QueryExecutor queryExecutor;
+
+    @BeforeEach
+    void setUp() {
+        queryExecutor = new QueryExecutor(new SimpleMeterRegistry(), 2, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queryExecutor.shutdown();
+    }
+
+    @Test
+    void testLookupsRunAtTheSameTime() {
+        CountDownLatch started = new CountDownLatch(2);
+        //Each lookup only finishes once the other one has started
+        CompletableFuture<Boolean> first = queryExecutor.submit(() -> await(started));
+        CompletableFuture<Boolean> second = queryExecutor.submit(() -> await(started));
+
+        assertTrue(QueryExecutor.join(first));
+        assertTrue(QueryExecutor.join(second));
+    }
+
+    @Test
+    void testLookupsRunOnTheCallerWhenThePoolIsFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        //Two busy threads and a full queue
+        for (int i = 0; i < 3; i++) {
+            queryExecutor.submit(() -> block(release));
+        }
+
+        String thread = QueryExecutor.join(queryExecutor.submit(() -> Thread.currentThread().getName()));
+        release.countDown();
+
+        assertEquals(Thread.currentThread().getName(), thread);
+    }
+
+    @Test
+    void testJoinThrowsTheLookupException() {
+        CompletableFuture<Object> failed = queryExecutor.submit(() -> {
+            throw new IllegalArgumentException("bad lookup");
+        });
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> QueryExecutor.join(failed));
+        assertEquals("bad lookup", e.getMessage());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        latch.countDown();
+        return block(latch);
+    }
+
+    private static boolean block(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
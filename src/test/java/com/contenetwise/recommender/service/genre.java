@@ -0,0 +1,85 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class GenreIndexTest {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @InjectMocks
+    private GenreIndex genreIndex;
+
+    @BeforeEach
+    void setUp() {
+        when(movieRepository.streamGenreMemberships()).thenReturn(Stream.of(
+                new Object[]{"Action", 1L},
+                new Object[]{"Action", 2L},
+                new Object[]{"Sci-Fi", 2L},
+                new Object[]{"Sci-Fi", 3L},
+                new Object[]{"Comedy", 4L}
+        ));
+        genreIndex.rebuild();
+    }
+
+    @Test
+    void testAnyOfAndAllOf() {
+        assertEquals(List.of(1L, 2L, 3L), GenreIndex.page(genreIndex.anyOf(List.of("Action", "Sci-Fi")), Long.MIN_VALUE, 10));
+        assertEquals(List.of(2L), GenreIndex.page(genreIndex.allOf(List.of("Action", "Sci-Fi")), Long.MIN_VALUE, 10));
+        assertTrue(genreIndex.allOf(List.of("Action", "Unknown")).isEmpty());
+        assertTrue(genreIndex.anyOf(List.of("Unknown")).isEmpty());
+    }
+
+    @Test
+    void testPageStartsAfterTheGivenId() {
+        assertEquals(List.of(2L, 3L), GenreIndex.page(genreIndex.anyOf(List.of("Action", "Sci-Fi")), 1L, 2));
+        assertEquals(List.of(), GenreIndex.page(genreIndex.anyOf(List.of("Action", "Sci-Fi")), 3L, 2));
+    }
+
+    @Test
+    void testIndexFollowsMovieAndGenreChanges() {
+        genreIndex.onMovieChanged(MovieChangedEvent.created(5L, "New", Set.of("Comedy", "Action")));
+        genreIndex.onMovieChanged(MovieChangedEvent.deleted(1L, "Old", Set.of("Action")));
+        assertEquals(List.of(2L, 5L), GenreIndex.page(genreIndex.anyOf(List.of("Action")), Long.MIN_VALUE, 10));
+
+        genreIndex.onGenreChanged(GenreChangedEvent.renamed(9L, "Comedy", "Humour"));
+        assertTrue(genreIndex.anyOf(List.of("Comedy")).isEmpty());
+        assertEquals(List.of(4L, 5L), GenreIndex.page(genreIndex.anyOf(List.of("Humour")), Long.MIN_VALUE, 10));
+        verify(movieRepository, times(1)).streamGenreMemberships();
+    }
+
+    @Test
+    void testChangesDuringRebuildAreKept() {
+        //Created and renamed while the memberships are read, which may not include them
+        Stream<Object[]> memberships = Stream.<Object[]>of(new Object[]{"Action", 1L}, new Object[]{"Comedy", 4L})
+                .peek(row -> {
+                    genreIndex.onMovieChanged(MovieChangedEvent.created(5L, "New", Set.of("Action")));
+                    genreIndex.onGenreChanged(GenreChangedEvent.renamed(9L, "Comedy", "Humour"));
+                });
+        when(movieRepository.streamGenreMemberships()).thenReturn(memberships);
+
+        genreIndex.rebuild();
+
+        assertEquals(List.of(1L, 5L), GenreIndex.page(genreIndex.anyOf(List.of("Action")), Long.MIN_VALUE, 10));
+        assertTrue(genreIndex.anyOf(List.of("Comedy")).isEmpty());
+        assertEquals(List.of(4L), GenreIndex.page(genreIndex.anyOf(List.of("Humour")), Long.MIN_VALUE, 10));
+    }
+}
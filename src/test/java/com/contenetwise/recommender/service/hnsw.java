@@ -0,0 +1,167 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.search.HnswIndex;
+import com.contenetwise.recommender.services.search.SimilarMovieIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 16;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private RankingRepository rankingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testSearchFindsMostOfTheExactNeighbors() {
+        Random random = new Random(7);
+        float[][] vectors = new float[3000][];
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 100, 42);
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random);
+            index.add(i, vectors[i]);
+        }
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            Set<Long> exact = new HashSet<>(bruteForce(vectors, query, 10));
+            found += (int) index.search(query, 10, 50).stream().filter(exact::contains).count();
+            expected += exact.size();
+        }
+
+        assertEquals(3000, index.size());
+        assertTrue(found >= 0.9 * expected, "Recall@10 should be at least 0.9, was " + (double) found / expected);
+    }
+
+    @Test
+    void testNeighborsExcludeTheMovieAndRemovedOnes() {
+        HnswIndex index = new HnswIndex(3, 4, 20, 42);
+        index.add(1L, new float[]{1f, 0f, 0f});
+        index.add(2L, new float[]{0.9f, 0.1f, 0f});
+        index.add(3L, new float[]{0.8f, 0.2f, 0f});
+        index.add(4L, new float[]{0f, 0f, 1f});
+
+        assertEquals(List.of(2L, 3L, 4L), index.neighbors(1L, 5, 10));
+
+        index.remove(2L);
+
+        assertEquals(List.of(3L, 4L), index.neighbors(1L, 5, 10));
+        assertNull(index.neighbors(2L, 5, 10), "A removed id is not indexed anymore");
+        assertEquals(1, index.removed());
+    }
+
+    @Test
+    void testAddReplacesThePreviousVector() {
+        HnswIndex index = new HnswIndex(2, 4, 20, 42);
+        index.add(1L, new float[]{1f, 0f});
+        index.add(2L, new float[]{0f, 1f});
+        index.add(3L, new float[]{1f, 0.1f});
+
+        index.add(3L, new float[]{0.1f, 1f});
+
+        assertEquals(3, index.size());
+        assertEquals(List.of(3L), index.search(new float[]{0f, 1f}, 2, 10).subList(1, 2));
+        assertEquals(2L, index.neighbors(3L, 1, 10).get(0));
+    }
+
+    @Test
+    void testSimilarMoviesShareGenresAndRaters() {
+        // Movies 1 and 2 are dramas liked by the same users, movie 3 is a drama they dislike, movie 4 a comedy
+        when(movieRepository.streamCatalog()).thenReturn(Stream.of(
+                new Object[]{1L, "A", "Drama"},
+                new Object[]{2L, "B", "Drama"},
+                new Object[]{3L, "C", "Drama"},
+                new Object[]{4L, "D", "Comedy"},
+                new Object[]{5L, "E", null}
+        ));
+        when(rankingRepository.streamUserScores()).thenReturn(Stream.of(
+                new Object[]{1L, 1L, 5},
+                new Object[]{1L, 2L, 5},
+                new Object[]{1L, 3L, 1},
+                new Object[]{2L, 1L, 4},
+                new Object[]{2L, 2L, 5},
+                new Object[]{2L, 3L, 1},
+                new Object[]{3L, 4L, 5}
+        ));
+        SimilarMovieIndex similarMovieIndex = new SimilarMovieIndex(movieRepository, rankingRepository, transactionManager,
+                new SimpleMeterRegistry(), 8, 32, 0.5, 4, 20, 10, 10, 100);
+        similarMovieIndex.rebuild();
+
+        List<Long> similar = similarMovieIndex.similar(1L, 4).orElseThrow();
+
+        assertEquals(2L, similar.get(0), "Movie 2 shares the genre and the users who liked movie 1");
+        assertFalse(similar.contains(1L));
+
+        similarMovieIndex.onMovieChanged(MovieChangedEvent.created(6L, "F", Set.of("Comedy")));
+        similarMovieIndex.onMovieChanged(MovieChangedEvent.deleted(2L, "B", Set.of("Drama")));
+
+        assertEquals(6L, similarMovieIndex.similar(4L, 1).orElseThrow().get(0));
+        assertFalse(similarMovieIndex.similar(1L, 5).orElseThrow().contains(2L));
+        assertTrue(similarMovieIndex.similar(2L, 5).isEmpty());
+    }
+
+    @Test
+    void testLimitIsValidated() {
+        SimilarMovieIndex similarMovieIndex = new SimilarMovieIndex(movieRepository, rankingRepository, transactionManager,
+                new SimpleMeterRegistry(), 8, 8, 0.5, 4, 20, 10, 10, 100);
+
+        assertEquals(10, similarMovieIndex.limit(null));
+        assertEquals(100, similarMovieIndex.limit(100));
+        assertNull(similarMovieIndex.limit(0));
+        assertNull(similarMovieIndex.limit(101));
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Long> bruteForce(float[][] vectors, float[] query, int k) {
+        return IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> -cosine(vectors[i], query)))
+                .limit(k)
+                .map(Integer::longValue)
+                .toList();
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0d, normA = 0d, normB = 0d;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+}
@@ -0,0 +1,203 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingBatchRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.ingest.CsvImportService;
+import com.contenetwise.recommender.services.ingest.CsvParser;
+import com.contenetwise.recommender.services.ingest.ImportEndpoint;
+import com.contenetwise.recommender.services.ingest.ImportReport;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CsvImportServiceTest {
+
+    @Autowired
+    private CsvImportService importService;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RankingBatchRepository rankingBatchRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM ranking WHERE user_id >= 9000");
+        jdbcTemplate.update("DELETE FROM movie_genre WHERE movie_id >= 9000");
+        jdbcTemplate.update("DELETE FROM movies WHERE id >= 9000");
+        jdbcTemplate.update("DELETE FROM users WHERE id >= 9000");
+        jdbcTemplate.update("DELETE FROM genres WHERE name LIKE 'Import-%'");
+    }
+
+    @Test
+    void testParseLineHandlesQuotes() {
+        assertEquals(List.of("1", "American President, The", "Comedy|Drama"),
+                CsvParser.parseLine("1,\"American President, The\",Comedy|Drama"));
+        assertEquals(List.of("2", "Say \"Hi\"", ""), CsvParser.parseLine("2,\"Say \"\"Hi\"\"\","));
+    }
+
+    @Test
+    void testEndpointOnlyReadsFilesOfTheImportDirectory() throws Exception {
+        ImportEndpoint endpoint = new ImportEndpoint(importService, directory.resolve("imports").toString());
+        Files.createDirectories(directory.resolve("imports"));
+        write("secret.csv", "user_id,username", "9001,import_alice");
+        write("imports/users.csv", "user_id,username", "9002,import_bob");
+
+        assertThrows(InvalidEndpointRequestException.class, () -> endpoint.start("../secret.csv", null, null));
+        assertThrows(InvalidEndpointRequestException.class, () -> endpoint.start(null, directory.resolve("secret.csv").toString(), null));
+        assertEquals("IDLE", endpoint.status().state());
+
+        endpoint.start("users.csv", null, null);
+        for (int i = 0; i < 100 && "RUNNING".equals(endpoint.status().state()); i++) {
+            Thread.sleep(50);
+        }
+        endpoint.shutdown();
+
+        assertEquals("COMPLETED", endpoint.status().state());
+        assertTrue(userRepository.findByUsername("import_bob").isPresent());
+        assertFalse(userRepository.findByUsername("import_alice").isPresent());
+    }
+
+    @Test
+    void testImportAllFiles() throws Exception {
+        Path users = write("users.csv", "user_id,username", "9001,import_alice", "9002,import_bob");
+        Path movies = write("movies.csv", "movie_id,title,genres",
+                "9001,Import One,Import-Action|Import-Comedy",
+                "9002,\"Import Two, The\",Import-Comedy");
+        Path ratings = write("ratings.csv", "user_id,movie_id,rating,view_percentage",
+                "9001,9001,4,85", "9001,9002,5,", "9002,9001,,90", "9002,9999,3,", "9002,9002,,");
+
+        List<ImportReport> reports = importService.importAll(users, movies, ratings);
+
+        assertEquals(2, reports.get(0).importedRows());
+        assertEquals(2, reports.get(1).importedRows());
+        assertEquals(3, reports.get(2).importedRows());
+        assertEquals(2, reports.get(2).rejectedRows(), "Unknown movie and empty ranking are rejected");
+        assertTrue(userRepository.findByUsername("import_bob").isPresent());
+        Movie movie = movieRepository.findById(9002L).orElseThrow();
+        assertEquals("Import Two, The", movie.getTitle());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM movie_genre WHERE movie_id = 9002", Integer.class));
+        assertEquals(2, movieRepository.findByGenre("Import-Comedy").size());
+        assertFalse(Files.exists(directory.resolve("ratings.csv.checkpoint")), "Checkpoint is removed once done");
+    }
+
+    @Test
+    void testReimportedRatingsUpdateTheStoredRankings() throws Exception {
+        Path users = write("users.csv", "user_id,username", "9005,import_rater");
+        Path movies = write("movies.csv", "movie_id,title,genres", "9005,Import Rated,Import-Drama");
+        importService.importAll(users, movies, write("ratings.csv", "user_id,movie_id,rating,view_percentage", "9005,9005,2,"));
+
+        ImportReport report = importService.importRatings(write("ratings-again.csv", "user_id,movie_id,rating,view_percentage",
+                "9005,9005,,60", "9005,9005,4,"));
+
+        assertEquals(2, report.importedRows());
+        assertEquals(0, report.rejectedRows());
+        assertEquals(List.of(4, 60, 4), jdbcTemplate.queryForList(
+                "SELECT rank1, rank2, score FROM ranking WHERE user_id = 9005 AND movie_id = 9005").stream()
+                .flatMap(row -> row.values().stream())
+                .map(value -> ((Number) value).intValue())
+                .toList());
+    }
+
+    @Test
+    void testImportResumesAfterCheckpoint() throws Exception {
+        Path users = write("users.csv", "user_id,username", "9003,import_first", "9004,import_second");
+        Files.writeString(directory.resolve("users.csv.checkpoint"), "1");
+
+        ImportReport report = importService.importUsers(users);
+
+        assertEquals(1, report.resumedFromLine());
+        assertEquals(1, report.importedRows());
+        assertFalse(userRepository.findByUsername("import_first").isPresent(), "Lines before the checkpoint are skipped");
+        assertTrue(userRepository.findByUsername("import_second").isPresent());
+    }
+
+    @Test
+    void testImportFailingMidwayResumesAfterTheLastCommittedBatch() throws Exception {
+        Path users = write("users.csv", "user_id,username",
+                "9011,import_one", "9012,import_two", "9013,import_three", "9014,import_four", "9015,import_five");
+        //The database goes away once the first batch of two rows is written
+        AtomicInteger statements = new AtomicInteger();
+        DataSource failing = new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                        (proxy, method, args) -> {
+                            if (method.getName().equals("prepareStatement") && statements.incrementAndGet() > 1) {
+                                throw new SQLException("Connection lost", "08006");
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+        CsvImportService failingImport = new CsvImportService(new JdbcTemplate(failing), rankingBatchRepository,
+                new DataSourceTransactionManager(failing), eventPublisher, meterRegistry, 2);
+
+        assertThrows(DataAccessException.class, () -> failingImport.importUsers(users));
+        assertEquals("2", Files.readString(directory.resolve("users.csv.checkpoint")));
+        assertTrue(userRepository.findByUsername("import_two").isPresent());
+        assertFalse(userRepository.findByUsername("import_three").isPresent(), "Rows of the failed batch are not rejected");
+
+        ImportReport report = importService.importUsers(users);
+
+        assertEquals(2, report.resumedFromLine());
+        assertEquals(3, report.importedRows());
+        assertEquals(0, report.rejectedRows());
+        assertTrue(userRepository.findByUsername("import_five").isPresent());
+        assertFalse(Files.exists(directory.resolve("users.csv.checkpoint")));
+    }
+
+    private Path write(String name, String... lines) throws Exception {
+        return Files.write(directory.resolve(name), List.of(lines));
+    }
+}
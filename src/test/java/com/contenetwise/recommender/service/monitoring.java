@@ -0,0 +1,121 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.services.QueryExecutor;
+import com.contenetwise.recommender.services.monitoring.StatementCountFilter;
+import com.contenetwise.recommender.services.monitoring.StatementMonitor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "recommender.db.slow-query.threshold=PT0S")
+@ActiveProfiles("test")
+class StatementMonitorTest {
+
+    @Autowired
+    private StatementMonitor statementMonitor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        statementMonitor.clear();
+    }
+
+    @Test
+    void testStatementsAreSampledWithTheirBindShape() {
+        jdbcTemplate.queryForList("SELECT id FROM movies WHERE id = ? OR title = ?", Long.class, 1L, "Heat");
+
+        StatementMonitor.SlowStatement statement = statementMonitor.getSlowStatements().get(0);
+        assertEquals("SELECT id FROM movies WHERE id = ? OR title = ?", statement.sql());
+        assertEquals(List.of("Long", "String"), statement.bindShape());
+        assertEquals(0, statement.batchSize());
+    }
+
+    @Test
+    void testBatchesAreSampledOnce() {
+        jdbcTemplate.batchUpdate("UPDATE movies SET title = ? WHERE id = ?", List.of(
+                new Object[]{"A", -1L}, new Object[]{"B", -2L}, new Object[]{"C", -3L}));
+
+        List<StatementMonitor.SlowStatement> statements = statementMonitor.getSlowStatements();
+        assertEquals(1, statements.size());
+        assertEquals(3, statements.get(0).batchSize());
+    }
+
+    @Test
+    void testSamplesAreBoundedAndMostRecentFirst() {
+        StatementMonitor monitor = new StatementMonitor(new SimpleMeterRegistry(), Duration.ofMillis(10), 2);
+        monitor.record("fast", List.of(), 0, Duration.ofMillis(1).toNanos());
+        monitor.record("first", List.of(), 0, Duration.ofMillis(20).toNanos());
+        monitor.record("second", List.of(), 0, Duration.ofMillis(20).toNanos());
+        monitor.record("third", List.of("Long"), 0, Duration.ofMillis(20).toNanos());
+
+        assertEquals(List.of("third", "second"), monitor.getSlowStatements().stream().map(StatementMonitor.SlowStatement::sql).toList());
+    }
+
+    @Test
+    void testStatementsAreCountedPerRequest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StatementMonitor monitor = new StatementMonitor(registry, Duration.ofSeconds(1), 10);
+        monitor.startRequest();
+        monitor.record("a", List.of(), 0, 1);
+        monitor.record("b", List.of(), 0, 1);
+        monitor.endRequest("/api/movies");
+
+        assertEquals(2.0, registry.get("recommender.db.request.statements").tag("uri", "/api/movies").summary().totalAmount());
+    }
+
+    @Test
+    void testStatementsOfTheLookupsCountForTheRequest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StatementMonitor monitor = new StatementMonitor(registry, Duration.ofSeconds(1), 10);
+        QueryExecutor queryExecutor = new QueryExecutor(new SimpleMeterRegistry(), 2, 1);
+        monitor.startRequest();
+        monitor.record("a", List.of(), 0, 1);
+        QueryExecutor.join(queryExecutor.submit(() -> {
+            monitor.record("b", List.of(), 0, 1);
+            return null;
+        }));
+        monitor.endRequest("/api/movies/search");
+        queryExecutor.shutdown();
+
+        assertEquals(2.0, registry.get("recommender.db.request.statements").tag("uri", "/api/movies/search").summary().totalAmount());
+    }
+
+    @Test
+    void testUnmatchedRequestsShareOneTag() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StatementCountFilter filter = new StatementCountFilter(new StatementMonitor(registry, Duration.ofSeconds(1), 10));
+        filter.doFilter(new MockHttpServletRequest("GET", "/no/such/path/1"), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(new MockHttpServletRequest("GET", "/no/such/path/2"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(2, registry.get("recommender.db.request.statements").tag("uri", StatementCountFilter.UNMATCHED_URI).summary().count());
+        assertEquals(1, registry.find("recommender.db.request.statements").summaries().size());
+    }
+
+    @Test
+    void testPoolAndHibernateMetricsAreExported() {
+        assertNotNull(meterRegistry.find("hikaricp.connections.active").gauge());
+        assertNotNull(meterRegistry.find("hikaricp.connections.pending").gauge());
+        assertNotNull(meterRegistry.find("hikaricp.connections.acquire").timer());
+        assertNotNull(meterRegistry.find("hibernate.statements").functionCounter());
+        assertNotNull(meterRegistry.find("hibernate.entities.loads").functionCounter());
+        assertNotNull(meterRegistry.find("hibernate.collections.fetches").functionCounter());
+    }
+}
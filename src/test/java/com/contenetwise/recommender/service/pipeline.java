@@ -0,0 +1,134 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.PopularityService;
+import com.contenetwise.recommender.services.recommendation.CandidateGenerator;
+import com.contenetwise.recommender.services.recommendation.CandidateScorer;
+import com.contenetwise.recommender.services.recommendation.GenreAffinityScorer;
+import com.contenetwise.recommender.services.recommendation.GenreCandidateGenerator;
+import com.contenetwise.recommender.services.recommendation.GenreRecommendationEngine;
+import com.contenetwise.recommender.services.recommendation.PipelineRecommendationEngine;
+import com.contenetwise.recommender.services.recommendation.PopularCandidateGenerator;
+import com.contenetwise.recommender.services.recommendation.PopularityScorer;
+import com.contenetwise.recommender.services.recommendation.RecommendationMetrics;
+import com.contenetwise.recommender.services.recommendation.UserProfile;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PipelineRecommendationEngineTest {
+
+    private GenreIndex genreIndex;
+    private PopularityService popularityService;
+    private List<Ranking> rankings;
+
+    @BeforeEach
+    void setUp() {
+        genreIndex = new GenreIndex(null);
+        popularityService = new PopularityService(null, null);
+        // The user loves crime, likes drama and dislikes comedy
+        rankings = List.of(ranking(1L, "Crime", 5), ranking(2L, "Drama", 4), ranking(3L, "Comedy", 1));
+        movie(1L, "Crime");
+        movie(2L, "Drama");
+        movie(3L, "Comedy");
+        movie(10L, "Crime");
+        movie(11L, "Drama");
+        movie(12L, "Comedy");
+        movie(13L, "Animation");
+        for (int i = 0; i < 3; i++) {
+            popularityService.increment(12L);
+        }
+    }
+
+    @Test
+    void testGenresAreWeightedByTheUserRatings() {
+        UserProfile profile = UserProfile.of(7L, rankings);
+
+        assertEquals(Map.of("Crime", 1.0, "Drama", 0.5, "Comedy", -1.0), profile.genreAffinities());
+        assertEquals(Set.of("Crime", "Drama"), profile.preferredGenres());
+        assertEquals(Set.of(1L, 2L), profile.likedMovieIds());
+    }
+
+    @Test
+    void testCandidatesAreRankedByTheWeightedScores() {
+        //Comedy only comes from the popular movies, and its genre pulls it below the others
+        assertEquals(List.of(10L, 11L, 12L), engine(10).recommend(7L, rankings));
+    }
+
+    @Test
+    void testOnlyTheBestCandidatesAreKept() {
+        assertEquals(List.of(10L), engine(1).recommend(7L, rankings));
+    }
+
+    @Test
+    void testScorersArePluggable() {
+        //A scorer preferring the highest ids reverses the order
+        CandidateScorer newest = new CandidateScorer() {
+            @Override
+            public String getName() {
+                return "newest";
+            }
+
+            @Override
+            public double getWeight() {
+                return 10.0;
+            }
+
+            @Override
+            public LongToDoubleFunction prepare(UserProfile profile) {
+                return movieId -> movieId;
+            }
+        };
+        PipelineRecommendationEngine engine = new PipelineRecommendationEngine(
+                List.<CandidateGenerator>of(new GenreCandidateGenerator(genreIndex)),
+                List.of(new GenreAffinityScorer(genreIndex, 1.0), newest),
+                new RecommendationMetrics(new SimpleMeterRegistry()), 10);
+
+        assertEquals(List.of(11L, 10L), engine.recommend(7L, rankings));
+    }
+
+    @Test
+    void testGenreEngineReturnsTheMostRatedMoviesFirst() {
+        movie(14L, "Crime");
+        popularityService.increment(14L);
+        popularityService.increment(11L);
+        popularityService.increment(11L);
+        GenreRecommendationEngine engine = new GenreRecommendationEngine(genreIndex, popularityService,
+                new RecommendationMetrics(new SimpleMeterRegistry()));
+
+        assertEquals(List.of(11L, 14L, 10L), engine.recommend(7L, rankings));
+    }
+
+    private PipelineRecommendationEngine engine(int maxResults) {
+        return new PipelineRecommendationEngine(
+                List.of(new GenreCandidateGenerator(genreIndex), new PopularCandidateGenerator(popularityService, 1, Duration.ofMinutes(1))),
+                List.of(new GenreAffinityScorer(genreIndex, 1.0), new PopularityScorer(popularityService, 0.5)),
+                new RecommendationMetrics(new SimpleMeterRegistry()), maxResults);
+    }
+
+    private void movie(Long id, String genre) {
+        genreIndex.onMovieChanged(MovieChangedEvent.created(id, "Movie " + id, Set.of(genre)));
+    }
+
+    private static Ranking ranking(Long movieId, String genre, int rank1) {
+        return Ranking.builder().rank1(rank1).movie(Movie.builder().id(movieId).title("Movie " + movieId)
+                        .genres(Set.of(Genre.builder().name(genre).build())).build())
+                .build();
+    }
+}
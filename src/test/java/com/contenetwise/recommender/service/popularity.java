@@ -0,0 +1,136 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.RankingWriteGate;
+import com.contenetwise.recommender.services.PopularityService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PopularityServiceTest {
+
+    @Mock
+    private RankingRepository rankingRepository;
+
+    @Spy
+    private RankingWriteGate writeGate = new RankingWriteGate();
+
+    @InjectMocks
+    private PopularityService popularityService;
+
+    @BeforeEach
+    void setUp() {
+        // Seed counters: movie 1 has 3 rankings, movie 2 has 1
+        when(rankingRepository.countRankingsPerMovie()).thenReturn(List.of(
+                new Object[]{1L, 3L},
+                new Object[]{2L, 1L}
+        ));
+        popularityService.rebuild();
+    }
+
+    @Test
+    void testRebuildSeedsCountersFromRepository() {
+        assertEquals(3, popularityService.getCount(1L));
+        assertEquals(1, popularityService.getCount(2L));
+        assertEquals(0, popularityService.getCount(99L), "Unknown movies should have no rankings");
+    }
+
+    @Test
+    void testIncrementUpdatesCounterWithoutQuery() {
+        popularityService.increment(2L);
+        popularityService.increment(5L);
+
+        assertEquals(2, popularityService.getCount(2L));
+        assertEquals(1, popularityService.getCount(5L));
+        verify(rankingRepository, times(1)).countRankingsPerMovie();
+        verify(rankingRepository, never()).countByMovie(any());
+    }
+
+    @Test
+    void testRankingsCreatedDuringRebuildAreKept() {
+        when(rankingRepository.countRankingsPerMovie()).thenAnswer(invocation -> {
+            //Created while the counts are loaded, which may not include them
+            popularityService.increment(2L);
+            popularityService.increment(7L);
+            return List.of(new Object[]{1L, 3L}, new Object[]{2L, 1L});
+        });
+
+        popularityService.rebuild();
+
+        assertEquals(2, popularityService.getCount(2L));
+        assertEquals(1, popularityService.getCount(7L));
+        assertEquals(3, popularityService.getMaxCount());
+    }
+
+    @Test
+    void testRankingsWrittenBeforeTheSnapshotAreCountedOnce() throws Exception {
+        //Created and in the counts, but its event is only published once the rebuild has started
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch rebuilding = new CountDownLatch(1);
+        Thread writer = new Thread(() -> writeGate.write(() -> {
+            writing.countDown();
+            await(rebuilding);
+            popularityService.increment(2L);
+            return null;
+        }));
+        writer.start();
+        await(writing);
+        when(rankingRepository.countRankingsPerMovie()).thenReturn(List.of(new Object[]{1L, 3L}, new Object[]{2L, 2L}));
+        doAnswer(invocation -> {
+            rebuilding.countDown();
+            return invocation.callRealMethod();
+        }).when(writeGate).snapshot(any());
+
+        Thread rebuild = new Thread(popularityService::rebuild);
+        rebuild.start();
+        writer.join();
+        rebuild.join();
+
+        assertEquals(2, popularityService.getCount(2L));
+    }
+
+    @Test
+    void testDeletedMovieIsNoLongerPopular() {
+        popularityService.onMovieChanged(MovieChangedEvent.deleted(1L, "Deleted", Set.of()));
+
+        assertEquals(0, popularityService.getCount(1L));
+        assertEquals(1, popularityService.getMaxCount());
+        assertEquals(List.of(2L), popularityService.mostPopular(10));
+    }
+
+    @Test
+    void testMovieDeletedDuringRebuildStaysRemoved() {
+        when(rankingRepository.countRankingsPerMovie()).thenAnswer(invocation -> {
+            //Deleted after the snapshot, which still has its rankings
+            popularityService.remove(1L);
+            return List.of(new Object[]{1L, 3L}, new Object[]{2L, 1L});
+        });
+
+        popularityService.rebuild();
+
+        assertEquals(0, popularityService.getCount(1L));
+        assertEquals(List.of(2L), popularityService.mostPopular(10));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
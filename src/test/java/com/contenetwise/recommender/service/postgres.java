@@ -0,0 +1,122 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingBatchRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//The PostgreSQL statements of the upsert, run against a real server. Skipped when Docker is not available
+@SpringBootTest
+@ActiveProfiles("test")
+@Testcontainers(disabledWithoutDocker = true)
+class RankingUpsertPostgresTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.driverClassName", postgres::getDriverClassName);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+    }
+
+    @Autowired
+    private RankingBatchRepository rankingBatchRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Movie movie;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM ranking");
+        user = userRepository.save(User.builder().username("postgres_user").build());
+        movie = movieRepository.save(Movie.builder().title("Postgres Movie").build());
+    }
+
+    @Test
+    void testUpsertCreatesThenUpdatesTheGivenRank() {
+        RankingBatchRepository.Upsert created = rankingBatchRepository.upsert(user.getId(), movie.getId(), null, 30);
+        assertTrue(created.created());
+        assertNull(created.previousScore());
+        assertEquals(2, created.score());
+
+        RankingBatchRepository.Upsert rated = rankingBatchRepository.upsert(user.getId(), movie.getId(), 5, null);
+        assertFalse(rated.created());
+        assertEquals(2, rated.previousScore());
+        assertEquals(5, rated.score());
+
+        RankingBatchRepository.Upsert viewed = rankingBatchRepository.upsert(user.getId(), movie.getId(), null, 95);
+        assertEquals(5, viewed.previousScore());
+        assertEquals(5, viewed.score());
+        assertEquals(95, jdbcTemplate.queryForObject("SELECT rank2 FROM ranking WHERE user_id = ? AND movie_id = ?",
+                Integer.class, user.getId(), movie.getId()));
+    }
+
+    @Test
+    void testConcurrentUpsertsOfANewPairChainTheirScores() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<RankingBatchRepository.Upsert>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                int rank1 = i % 5 + 1;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return rankingBatchRepository.upsert(user.getId(), movie.getId(), rank1, null);
+                }, executor));
+            }
+            start.countDown();
+            List<RankingBatchRepository.Upsert> upserts = new ArrayList<>();
+            for (CompletableFuture<RankingBatchRepository.Upsert> future : futures) {
+                upserts.add(future.get(30, TimeUnit.SECONDS));
+            }
+
+            //One write created the ranking, and every other one replaced the score of exactly one write
+            assertEquals(1, upserts.stream().filter(RankingBatchRepository.Upsert::created).count());
+            List<Integer> replaced = new ArrayList<>(upserts.stream().map(RankingBatchRepository.Upsert::score).toList());
+            upserts.stream().filter(upsert -> !upsert.created()).forEach(upsert -> assertTrue(replaced.remove(upsert.previousScore())));
+            assertEquals(List.of(jdbcTemplate.queryForObject("SELECT score FROM ranking WHERE user_id = ? AND movie_id = ?",
+                    Integer.class, user.getId(), movie.getId())), replaced);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.RecommendationRun;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingBatchRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.RecommendationRunRepository;
+import com.contenetwise.recommender.repositories.UserRecommendationsRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.recommendation.PrecomputedRecommendations;
+import com.contenetwise.recommender.services.recommendation.RecommendationPrecomputer;
+import com.contenetwise.recommender.services.recommendation.RecommendationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not transactional: the job reads the rankings from its own threads
+@SpringBootTest(properties = {"recommender.recommendations.precompute.partition-size=2",
+        "recommender.recommendations.precompute.top-n=3"})
+@ActiveProfiles("test")
+class RecommendationPrecomputerTest {
+
+    @Autowired
+    private RecommendationPrecomputer recommendationPrecomputer;
+
+    @Autowired
+    private PrecomputedRecommendations precomputedRecommendations;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private RecommendationRunRepository runRepository;
+
+    @Autowired
+    private UserRecommendationsRepository userRecommendationsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private RankingRepository rankingRepository;
+
+    @Autowired
+    private RankingBatchRepository rankingBatchRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User rater;
+    private User idle;
+    private Movie movie;
+
+    @BeforeEach
+    void setUp() {
+        rater = userRepository.save(User.builder().username("precompute_rater").build());
+        idle = userRepository.save(User.builder().username("precompute_idle").build());
+        for (int i = 0; i < 3; i++) {
+            movie = movieRepository.save(Movie.builder().title("Precomputed " + i).build());
+            rankingRepository.save(Ranking.builder().user(rater).movie(movie).rank1(5).build());
+        }
+    }
+
+    @Test
+    void testRunServesTheRecommendationsOfEveryUser() {
+        recommendationPrecomputer.run();
+
+        List<Long> live = recommendationService.compute(rater.getId()).movieIds();
+        Optional<RecommendationService.Recommendations> precomputed = precomputedRecommendations.find(rater.getId());
+        assertTrue(precomputed.isPresent());
+        assertEquals(live.subList(0, Math.min(3, live.size())), precomputed.get().movieIds());
+        // Users without rankings have no row
+        assertTrue(precomputedRecommendations.find(idle.getId()).isEmpty());
+
+        // Users created since the run, or who changed a ranking, are computed live
+        User late = userRepository.save(User.builder().username("precompute_late").build());
+        assertTrue(precomputedRecommendations.find(late.getId()).isEmpty());
+        rankingBatchRepository.upsert(rater.getId(), movie.getId(), 4, null);
+        assertTrue(precomputedRecommendations.find(rater.getId()).isEmpty());
+
+        // The change is stored with the rankings, it is still known after a restart
+        precomputedRecommendations.load();
+        assertTrue(precomputedRecommendations.find(rater.getId()).isEmpty());
+    }
+
+    @Test
+    void testThePreviousGenerationIsKeptUntilTheNextRun() {
+        recommendationPrecomputer.run();
+        recommendationPrecomputer.run();
+        recommendationPrecomputer.run();
+
+        // An instance which has not reloaded since the previous run still finds its rows
+        long generation = runRepository.findMaxGeneration();
+        assertEquals(2, runRepository.count());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_recommendations WHERE generation < ?",
+                Integer.class, generation - 1));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_recommendations WHERE user_id = ?",
+                Integer.class, rater.getId()));
+    }
+
+    @Test
+    void testRunCompletedOnAnotherInstanceIsServedAfterAReload() {
+        recommendationPrecomputer.run();
+        assertTrue(precomputedRecommendations.find(rater.getId()).isPresent());
+
+        // Another instance completes a run, and drops the rows served here
+        long generation = runRepository.findMaxGeneration() + 1;
+        runRepository.save(RecommendationRun.builder()
+                .generation(generation)
+                .startedAt(Instant.now())
+                .completedAt(Instant.now())
+                .maxUserId(userRepository.findMaxId())
+                .users(1L)
+                .build());
+        userRecommendationsRepository.insertAll(generation, List.of(
+                new UserRecommendationsRepository.Row(rater.getId(), List.of(movie.getId()), Set.of())));
+        jdbcTemplate.update("DELETE FROM user_recommendations WHERE generation < ?", generation);
+
+        // Missing rows are computed live rather than served empty, until the run is picked up
+        assertTrue(precomputedRecommendations.find(rater.getId()).isEmpty());
+        precomputedRecommendations.reload();
+        assertEquals(List.of(movie.getId()), precomputedRecommendations.find(rater.getId()).orElseThrow().movieIds());
+    }
+
+    @Test
+    void testRunIsSkippedWhileAnotherInstanceHoldsTheLock() {
+        recommendationPrecomputer.run();
+        long generation = runRepository.findMaxGeneration();
+        jdbcTemplate.update("UPDATE job_locks SET locked_until = ?, locked_by = 'other-instance'",
+                Timestamp.from(Instant.now().plus(Duration.ofHours(1))));
+        try {
+            recommendationPrecomputer.run();
+
+            assertEquals(generation, runRepository.findMaxGeneration());
+        } finally {
+            jdbcTemplate.update("UPDATE job_locks SET locked_until = ?", Timestamp.from(Instant.now()));
+        }
+        recommendationPrecomputer.run();
+        assertEquals(generation + 1, runRepository.findMaxGeneration());
+    }
+}
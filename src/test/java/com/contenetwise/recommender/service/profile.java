@@ -0,0 +1,163 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.repositories.GenreRepository;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.RankingChangedEvent;
+import com.contenetwise.recommender.services.recommendation.UserProfile;
+import com.contenetwise.recommender.services.recommendation.UserProfileStore;
+import com.contenetwise.recommender.services.search.GenreIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+@ActiveProfiles("test")
+class UserProfileStoreTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserProfileStore profileStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GenreRepository genreRepository;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private RankingRepository rankingRepository;
+
+    @Autowired
+    private GenreIndex genreIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private RankingRepository mockRankingRepository;
+
+    @Mock
+    private GenreRepository mockGenreRepository;
+
+    @Mock
+    private GenreIndex mockGenreIndex;
+
+    private User user;
+    private Genre crime;
+    private Movie heist;
+    private Movie comedy;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder().username("profile_user").build());
+        crime = genreRepository.save(Genre.builder().name("ProfileCrime").build());
+        Genre drama = genreRepository.save(Genre.builder().name("ProfileDrama").build());
+        Genre funny = genreRepository.save(Genre.builder().name("ProfileComedy").build());
+        heist = movieRepository.save(Movie.builder().title("Profile Heist").genres(Set.of(crime, drama)).build());
+        Movie trial = movieRepository.save(Movie.builder().title("Profile Trial").genres(Set.of(drama)).build());
+        comedy = movieRepository.save(Movie.builder().title("Profile Comedy").genres(Set.of(funny)).build());
+        rankingRepository.save(Ranking.builder().user(user).movie(heist).rank1(3).build());
+        rankingRepository.save(Ranking.builder().user(user).movie(trial).rank2(90).build());
+        // Catalog written without the controllers, load it as at startup
+        genreIndex.rebuild();
+        profileStore.loadGenres();
+    }
+
+    @Test
+    void testProfileIsRebuiltFromTheRankings() {
+        UserProfile profile = profileStore.profile(user.getId(), List.of());
+
+        assertEquals(Map.of("ProfileCrime", 0.0, "ProfileDrama", 0.5), profile.genreAffinities());
+        assertEquals(Set.of("ProfileDrama"), profile.preferredGenres());
+    }
+
+    @Test
+    void testRankingChangesAreAppliedInPlace() throws Exception {
+        profileStore.profile(user.getId(), List.of());
+
+        mockMvc.perform(post("/api/rankings/user/{userId}/movie/{movieId}", user.getId(), heist.getId()).param("rank1", "5"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/rankings/user/{userId}/movie/{movieId}", user.getId(), comedy.getId()).param("rank1", "1"))
+                .andExpect(status().isOk());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        UserProfile profile = profileStore.profile(user.getId(), List.of());
+        assertEquals(statements, statistics.getPrepareStatementCount(), "A stored profile costs no query");
+        assertEquals(Map.of("ProfileCrime", 1.0, "ProfileDrama", 1.0, "ProfileComedy", -1.0), profile.genreAffinities());
+        assertEquals(Set.of("ProfileCrime", "ProfileDrama"), profile.preferredGenres());
+
+        // Rebuilding gives the same profile
+        profileStore.rebuild(user.getId());
+        assertEquals(profile.genreAffinities(), profileStore.profile(user.getId(), List.of()).genreAffinities());
+    }
+
+    @Test
+    void testRenamedGenresKeepTheirAffinity() {
+        profileStore.profile(user.getId(), List.of());
+
+        profileStore.onGenreChanged(GenreChangedEvent.renamed(crime.getId(), "ProfileCrime", "ProfileNoir"));
+
+        assertEquals(Map.of("ProfileNoir", 0.0, "ProfileDrama", 0.5), profileStore.profile(user.getId(), List.of()).genreAffinities());
+    }
+
+    @Test
+    void testChangeDuringARebuildDropsTheRebuiltVector() throws Exception {
+        UserProfileStore store = new UserProfileStore(mockRankingRepository, mockGenreRepository, mockGenreIndex,
+                new SimpleMeterRegistry(), 10, Duration.ofHours(1));
+        CountDownLatch querying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockRankingRepository.findGenreScoresByUser(1L)).thenAnswer(invocation -> {
+            querying.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        }).thenReturn(List.of());
+
+        CompletableFuture<UserProfile> rebuild = CompletableFuture.supplyAsync(() -> store.profile(1L, List.of()));
+        assertTrue(querying.await(5, TimeUnit.SECONDS));
+        store.onRankingChanged(new RankingChangedEvent(1L, 2L, null, 5, true));
+        release.countDown();
+        assertNotNull(rebuild.get(5, TimeUnit.SECONDS));
+
+        // The rebuilt vector may have missed the change, the next profile rebuilds it again
+        store.profile(1L, List.of());
+        verify(mockRankingRepository, times(2)).findGenreScoresByUser(1L);
+    }
+}
@@ -0,0 +1,163 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.dto.BatchRankingResponse;
+import com.contenetwise.recommender.dto.RankingEventRequest;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import com.contenetwise.recommender.services.RankingIngestService;
+import com.contenetwise.recommender.services.RatingIndexService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class RankingIngestServiceTest {
+
+    @Autowired
+    private RankingIngestService rankingIngestService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private RankingRepository rankingRepository;
+
+    @Autowired
+    private RatingIndexService ratingIndexService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+    private Movie rankedMovie;
+    private Movie newMovie;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder().username("batch_user").build());
+        rankedMovie = movieRepository.save(Movie.builder().title("Batch Ranked").build());
+        newMovie = movieRepository.save(Movie.builder().title("Batch New").build());
+        rankingRepository.save(Ranking.builder().user(user).movie(rankedMovie).rank1(2).build());
+    }
+
+    @Test
+    void testIngestReportsStatusPerEvent() {
+        BatchRankingResponse response = rankingIngestService.ingest(List.of(
+                new RankingEventRequest(user.getId(), rankedMovie.getId(), null, 90),
+                new RankingEventRequest(user.getId(), newMovie.getId(), 4, null),
+                new RankingEventRequest(user.getId(), newMovie.getId(), 5, null),
+                new RankingEventRequest(user.getId(), -1L, 3, null),
+                new RankingEventRequest(user.getId(), newMovie.getId(), 3, 40)
+        ));
+
+        assertEquals(1, response.getCreated());
+        assertEquals(2, response.getUpdated());
+        assertEquals(2, response.getRejected());
+        assertEquals(List.of("UPDATED", "CREATED", "UPDATED", "REJECTED", "REJECTED"),
+                response.getResults().stream().map(BatchRankingResponse.EventResult::getStatus).toList());
+        assertEquals("Movie not found.", response.getResults().get(3).getMessage());
+    }
+
+    @Test
+    void testIngestWritesFinalStateOfEveryPair() {
+        rankingIngestService.ingest(List.of(
+                new RankingEventRequest(user.getId(), rankedMovie.getId(), null, 90),
+                new RankingEventRequest(user.getId(), newMovie.getId(), 4, null),
+                new RankingEventRequest(user.getId(), newMovie.getId(), 5, null)
+        ));
+        // The batch is written with JDBC, reload the rankings from the database
+        entityManager.clear();
+
+        List<Ranking> rankings = rankingRepository.findByUser(user.getId());
+        assertEquals(2, rankings.size(), "Repeated events on a pair must not duplicate the ranking");
+        Ranking updated = rankings.stream().filter(r -> r.getMovie().getId().equals(rankedMovie.getId())).findFirst().orElseThrow();
+        Ranking created = rankings.stream().filter(r -> r.getMovie().getId().equals(newMovie.getId())).findFirst().orElseThrow();
+        assertEquals(2, updated.getRank1());
+        assertEquals(90, updated.getRank2());
+        assertEquals(5, created.getRank1());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testOverlappingConcurrentBatchesKeepTheScoresConsistent() throws Exception {
+        Movie rankedInBatch = movieRepository.save(Movie.builder().title("Batch Concurrent Ranked").build());
+        Movie third = movieRepository.save(Movie.builder().title("Batch Concurrent New").build());
+        List<Long> movieIds = List.of(newMovie.getId(), rankedInBatch.getId(), third.getId());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            rankingIngestService.ingest(List.of(new RankingEventRequest(user.getId(), rankedInBatch.getId(), 1, null)));
+
+            //Both batches touch the same pairs, in different orders, and create the same new ones
+            List<BatchRankingResponse> responses = new ArrayList<>();
+            for (int round = 0; round < 5; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                CompletableFuture<BatchRankingResponse> first = ingestAsync(start, executor, List.of(
+                        new RankingEventRequest(user.getId(), newMovie.getId(), 3, null),
+                        new RankingEventRequest(user.getId(), rankedInBatch.getId(), null, 90),
+                        new RankingEventRequest(user.getId(), third.getId(), round % 5 + 1, null)));
+                CompletableFuture<BatchRankingResponse> second = ingestAsync(start, executor, List.of(
+                        new RankingEventRequest(user.getId(), third.getId(), 2, null),
+                        new RankingEventRequest(user.getId(), newMovie.getId(), null, 40),
+                        new RankingEventRequest(user.getId(), rankedInBatch.getId(), 5 - round % 5, null)));
+                start.countDown();
+                responses.add(first.get(10, TimeUnit.SECONDS));
+                responses.add(second.get(10, TimeUnit.SECONDS));
+            }
+
+            assertEquals(2, responses.stream().mapToInt(BatchRankingResponse::getCreated).sum());
+            assertEquals(0, responses.stream().mapToInt(BatchRankingResponse::getRejected).sum());
+            for (Long movieId : movieIds) {
+                List<Integer> scores = jdbcTemplate.queryForList("SELECT score FROM ranking WHERE user_id = ? AND movie_id = ?",
+                        Integer.class, user.getId(), movieId);
+                assertEquals(1, scores.size());
+                //The previous scores published chain the writes, so the index ends on the stored score
+                assertEquals(scores.get(0).doubleValue(), ratingIndexService.getAverage(movieId));
+            }
+        } finally {
+            executor.shutdownNow();
+            jdbcTemplate.update("DELETE FROM ranking WHERE user_id = ?", user.getId());
+            movieRepository.deleteAllById(List.of(rankedMovie.getId(), newMovie.getId(), rankedInBatch.getId(), third.getId()));
+            userRepository.deleteById(user.getId());
+        }
+    }
+
+    private CompletableFuture<BatchRankingResponse> ingestAsync(CountDownLatch start, ExecutorService executor,
+                                                                List<RankingEventRequest> events) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return rankingIngestService.ingest(events);
+        }, executor);
+    }
+}
@@ -0,0 +1,134 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.RankingScale;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.RankingWriteGate;
+import com.contenetwise.recommender.services.RatingIndexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RatingIndexServiceTest {
+
+    @Mock
+    private RankingRepository rankingRepository;
+
+    @Spy
+    private RankingWriteGate writeGate = new RankingWriteGate();
+
+    @InjectMocks
+    private RatingIndexService ratingIndexService;
+
+    @BeforeEach
+    void setUp() {
+        // Movie 1: scores 5 and 3 -> 4.0, movie 2: score 5 -> 5.0, movie 3: score 1 -> 1.0
+        when(rankingRepository.streamScores()).thenReturn(Stream.of(
+                new Object[]{1L, 5},
+                new Object[]{1L, 3},
+                new Object[]{2L, 5},
+                new Object[]{3L, 1}
+        ));
+        ratingIndexService.rebuild();
+    }
+
+    @Test
+    void testRebuildComputesAverages() {
+        assertEquals(4.0, ratingIndexService.getAverage(1L));
+        assertEquals(5.0, ratingIndexService.getAverage(2L));
+        assertEquals(1.0, ratingIndexService.getAverage(3L));
+        assertNull(ratingIndexService.getAverage(4L), "Unranked movies have no average");
+    }
+
+    @Test
+    void testRangeScans() {
+        assertEquals(List.of(1L, 2L), ratingIndexService.findMovieIdsByMinRanking(4.0));
+        assertEquals(List.of(3L, 1L), ratingIndexService.findMovieIdsByMaxRanking(4.0));
+        assertTrue(ratingIndexService.findMovieIdsByMinRanking(5.5).isEmpty());
+    }
+
+    @Test
+    void testRangeScansArePaged() {
+        assertEquals(List.of(3L, 1L), ratingIndexService.findMovieIdsByMinRanking(0, 0, 2));
+        assertEquals(List.of(2L), ratingIndexService.findMovieIdsByMinRanking(0, 2, 2));
+        assertEquals(List.of(1L), ratingIndexService.findMovieIdsByMaxRanking(4.0, 1, 5));
+        assertTrue(ratingIndexService.findMovieIdsByMaxRanking(4.0, 2, 5).isEmpty());
+    }
+
+    @Test
+    void testUpdateReplacesPreviousScore() {
+        // Movie 3 gets a new ranking of 5 and its existing 1 is changed to a view of 50%
+        ratingIndexService.update(3L, null, 5);
+        ratingIndexService.update(3L, 1, RankingScale.mapRank2ToFiveScale(50));
+
+        assertEquals(4.0, ratingIndexService.getAverage(3L));
+        assertEquals(List.of(1L, 3L, 2L), ratingIndexService.findMovieIdsByMinRanking(4.0));
+    }
+
+    @Test
+    void testUpdatesAddUpInAnyOrder() {
+        // The change of a new ranking of movie 4 is published before its creation
+        ratingIndexService.update(4L, 1, 3);
+        assertNull(ratingIndexService.getAverage(4L));
+        assertFalse(ratingIndexService.findMovieIdsByMinRanking(0).contains(4L));
+
+        ratingIndexService.update(4L, null, 1);
+        assertEquals(3.0, ratingIndexService.getAverage(4L));
+    }
+
+    @Test
+    void testRankingWrittenRightAfterTheSnapshotIsKept() throws Exception {
+        //Committed after the snapshot, so not in the scores, and published before the rebuild is over
+        Thread[] writer = new Thread[1];
+        doAnswer(invocation -> {
+            invocation.callRealMethod();
+            writer[0] = new Thread(() -> writeGate.write(() -> {
+                ratingIndexService.update(4L, null, 5);
+                return null;
+            }));
+            writer[0].start();
+            //Until the writer waits for the index or is done
+            while (writer[0].isAlive() && writer[0].getState() != Thread.State.WAITING) {
+                Thread.onSpinWait();
+            }
+            return null;
+        }).when(writeGate).snapshot(any());
+        when(rankingRepository.streamScores()).thenReturn(Stream.<Object[]>of(new Object[]{1L, 5}));
+
+        ratingIndexService.rebuild();
+        writer[0].join();
+
+        assertEquals(5.0, ratingIndexService.getAverage(1L));
+        assertEquals(5.0, ratingIndexService.getAverage(4L));
+    }
+
+    @Test
+    void testDeletedMovieIsRemoved() {
+        ratingIndexService.onMovieChanged(MovieChangedEvent.deleted(1L, "Deleted", Set.of()));
+
+        assertNull(ratingIndexService.getAverage(1L));
+        assertEquals(List.of(3L, 2L), ratingIndexService.findMovieIdsByMinRanking(0));
+    }
+
+    @Test
+    void testMapRank2ToFiveScale() {
+        assertEquals(1, RankingScale.mapRank2ToFiveScale(0));
+        assertEquals(2, RankingScale.mapRank2ToFiveScale(21));
+        assertEquals(3, RankingScale.mapRank2ToFiveScale(60));
+        assertEquals(4, RankingScale.mapRank2ToFiveScale(61));
+        assertEquals(5, RankingScale.mapRank2ToFiveScale(100));
+    }
+}
@@ -0,0 +1,164 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Genre;
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.GenreChangedEvent;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.RankingChangedEvent;
+import com.contenetwise.recommender.services.recommendation.GenreRecommendationEngine;
+import com.contenetwise.recommender.services.recommendation.PrecomputedRecommendations;
+import com.contenetwise.recommender.services.recommendation.RecommendationEngine;
+import com.contenetwise.recommender.services.recommendation.RecommendationMetrics;
+import com.contenetwise.recommender.services.recommendation.RecommendationService;
+import com.contenetwise.recommender.services.recommendation.UserProfile;
+import com.contenetwise.recommender.services.recommendation.UserProfileStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RecommendationServiceTest {
+
+    private RankingRepository rankingRepository;
+    private MovieRepository movieRepository;
+    private RecommendationEngine engine;
+    private PrecomputedRecommendations precomputedRecommendations;
+    private SimpleMeterRegistry meterRegistry;
+    private RecommendationService recommendationService;
+
+    @BeforeEach
+    void setUp() {
+        rankingRepository = mock(RankingRepository.class);
+        movieRepository = mock(MovieRepository.class);
+        engine = mock(RecommendationEngine.class);
+        when(engine.getName()).thenReturn(GenreRecommendationEngine.NAME);
+        when(engine.recommend(any(UserProfile.class), anyList())).thenReturn(List.of(10L, 11L));
+        when(movieRepository.findAllByIdInOrder(anyList())).thenReturn(List.of());
+        // User 1 likes crime movies
+        when(rankingRepository.findByUser(1L)).thenReturn(List.of(ranking(1L, "Crime")));
+        // Nothing precomputed unless a test says so
+        precomputedRecommendations = mock(PrecomputedRecommendations.class);
+        // The store holds the same profile as the rankings
+        UserProfileStore profileStore = mock(UserProfileStore.class);
+        when(profileStore.profile(any(), anyList())).thenAnswer(invocation ->
+                UserProfile.of(invocation.getArgument(0), invocation.getArgument(1)));
+        meterRegistry = new SimpleMeterRegistry();
+        recommendationService = new RecommendationService(rankingRepository, movieRepository, List.of(engine),
+                meterRegistry, new RecommendationMetrics(meterRegistry), precomputedRecommendations, profileStore, GenreRecommendationEngine.NAME, 100,
+                Duration.ofMinutes(5), Duration.ofHours(1), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        recommendationService.shutdown();
+    }
+
+    @Test
+    void testRecommendationsAreComputedOncePerUser() {
+        recommendationService.recommend(1L);
+        recommendationService.recommend(1L);
+
+        verify(rankingRepository, times(1)).findByUser(1L);
+        verify(movieRepository, times(2)).findAllByIdInOrder(List.of(10L, 11L));
+    }
+
+    @Test
+    void testMissesAreAnsweredByPrecomputedRecommendations() {
+        when(precomputedRecommendations.find(1L)).thenReturn(Optional.of(
+                new RecommendationService.Recommendations(List.of(12L), Set.of("Crime"))));
+
+        recommendationService.recommend(1L);
+        verify(movieRepository).findAllByIdInOrder(List.of(12L));
+        verify(rankingRepository, never()).findByUser(1L);
+
+        // A change is computed live
+        recommendationService.onRankingChanged(new RankingChangedEvent(1L, 3L, null, 5, true));
+        verify(rankingRepository, timeout(1000)).findByUser(1L);
+    }
+
+    @Test
+    void testStagesAreTimed() {
+        recommendationService.recommend(1L);
+        recommendationService.recommend(1L);
+
+        assertEquals(2, meterRegistry.get("recommender.recommendation.stage").tag("stage", RecommendationMetrics.CACHE).timer().count());
+        assertEquals(1, meterRegistry.get("recommender.recommendation.stage").tag("stage", RecommendationMetrics.RANKINGS).timer().count());
+        assertEquals(2, meterRegistry.get("recommender.recommendation.stage").tag("stage", RecommendationMetrics.HYDRATION).timer().count());
+        assertEquals(1, meterRegistry.get("recommender.recommendation.engine").tag("engine", GenreRecommendationEngine.NAME).timer().count());
+        assertEquals(2.0, meterRegistry.get("recommender.recommendation.results").tag("engine", GenreRecommendationEngine.NAME).summary().totalAmount());
+    }
+
+    @Test
+    void testPreferredGenresAreTheGenresOfHighlyRatedMovies() {
+        when(rankingRepository.findByUser(2L)).thenReturn(List.of(ranking(1L, "Crime"),
+                Ranking.builder().rank1(1).movie(movie(2L, "Comedy")).build()));
+
+        assertEquals(Set.of("Crime"), recommendationService.compute(2L).preferredGenres());
+    }
+
+    @Test
+    void testRankingChangeRefreshesOnlyThatUser() {
+        when(rankingRepository.findByUser(2L)).thenReturn(List.of(ranking(2L, "Drama")));
+        recommendationService.recommend(1L);
+        recommendationService.recommend(2L);
+
+        recommendationService.onRankingChanged(new RankingChangedEvent(1L, 3L, null, 5, true));
+
+        verify(rankingRepository, timeout(1000).times(2)).findByUser(1L);
+        verify(rankingRepository, times(1)).findByUser(2L);
+        // Users without a cached result are left to the next request
+        recommendationService.onRankingChanged(new RankingChangedEvent(3L, 3L, null, 5, true));
+        verify(rankingRepository, never()).findByUser(3L);
+    }
+
+    @Test
+    void testCatalogChangesRefreshUsersOfTheGenre() {
+        recommendationService.recommend(1L);
+
+        // A new movie in a genre the user does not care about changes nothing
+        recommendationService.onMovieChanged(MovieChangedEvent.created(20L, "Up", Set.of("Animation")));
+        verify(rankingRepository, after(100).times(1)).findByUser(1L);
+
+        recommendationService.onMovieChanged(MovieChangedEvent.created(21L, "Heat", Set.of("Crime")));
+        verify(rankingRepository, timeout(1000).times(2)).findByUser(1L);
+
+        recommendationService.onGenreChanged(GenreChangedEvent.renamed(7L, "Crime", "Thriller"));
+        verify(rankingRepository, timeout(1000).times(3)).findByUser(1L);
+    }
+
+    @Test
+    void testDeletedRecommendedMovieRefreshesTheUser() {
+        recommendationService.recommend(1L);
+
+        recommendationService.onMovieChanged(MovieChangedEvent.deleted(11L, "Gone", Set.of("Animation")));
+
+        verify(rankingRepository, timeout(1000).times(2)).findByUser(1L);
+    }
+
+    private static Ranking ranking(Long movieId, String genre) {
+        return Ranking.builder().rank1(5).movie(movie(movieId, genre)).build();
+    }
+
+    private static Movie movie(Long id, String genre) {
+        return Movie.builder().id(id).title("Movie " + id)
+                .genres(Set.of(Genre.builder().name(genre).build()))
+                .build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.services.RankingChangedEvent;
+import com.contenetwise.recommender.services.replica.ReadRouteInterceptor;
+import com.contenetwise.recommender.services.replica.ReplicaRoute;
+import com.contenetwise.recommender.services.replica.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReplicaRoutingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        //Two databases telling which one answered
+        primary = database("replica-test-primary");
+        replica = database("replica-test-replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoute.clear();
+    }
+
+    @Test
+    void testReadsGoToReplicasInSync() {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), "SELECT 0", Duration.ofSeconds(5));
+        routing.checkLag();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routing);
+
+        assertEquals("replica-test-primary", jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+        ReplicaRoute.useReplica(true);
+        assertEquals("replica-test-replica", jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+        assertEquals(1, routing.getInSyncReplicas());
+    }
+
+    @Test
+    void testLaggingReplicasAreLeftOut() {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), "SELECT 30", Duration.ofSeconds(5));
+        routing.checkLag();
+        ReplicaRoute.useReplica(true);
+
+        assertEquals("replica-test-primary", new JdbcTemplate(routing).queryForObject("SELECT name FROM node", String.class));
+        assertEquals(0, routing.getInSyncReplicas());
+        assertEquals(30, routing.getMaxLagSeconds());
+    }
+
+    @Test
+    void testUsersReadTheirOwnWritesFromThePrimary() throws Exception {
+        ReadRouteInterceptor interceptor = new ReadRouteInterceptor(Duration.ofSeconds(5), Duration.ofSeconds(5));
+        interceptor.onRankingChanged(new RankingChangedEvent(7L, 1L, null, 4, true));
+
+        interceptor.preHandle(request(8L), new MockHttpServletResponse(), null);
+        assertTrue(ReplicaRoute.isReplica());
+        interceptor.preHandle(request(7L), new MockHttpServletResponse(), null);
+        assertFalse(ReplicaRoute.isReplica());
+
+        interceptor.preHandle(request(8L), new MockHttpServletResponse(), null);
+        interceptor.afterCompletion(request(8L), new MockHttpServletResponse(), null, null);
+        assertFalse(ReplicaRoute.isReplica(), "The route does not outlive the request");
+    }
+
+    @Test
+    void testRouteOfAnAsyncRequestIsClearedForTheNextRequestOfTheThread() throws Exception {
+        // The export goes on on an async thread, the request thread is released without afterCompletion
+        mockMvc.perform(get("/api/movies/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted());
+        assertFalse(ReplicaRoute.isReplica(), "A write handled next on this thread goes to the primary");
+
+        mockMvc.perform(post("/api/users/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"replica_route_writer\"}"))
+                .andExpect(status().isOk());
+        assertFalse(ReplicaRoute.isReplica());
+    }
+
+    private static MockHttpServletRequest request(Long userId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/rankings/user/" + userId);
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("userId", userId.toString()));
+        return request;
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(64))");
+        jdbcTemplate.execute("DELETE FROM node");
+        jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,81 @@
+package com.contenetwise.recommender.service;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.contenetwise.recommender.services.monitoring.RequestLogFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RequestLogFilterTest {
+
+    private final Logger requestLogger = (Logger) LoggerFactory.getLogger("com.contenetwise.recommender.requests");
+    private ListAppender<ILoggingEvent> appender;
+    private RequestLogFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        appender = new ListAppender<>();
+        appender.start();
+        requestLogger.addAppender(appender);
+        filter = new RequestLogFilter(1.0, "/api/movies/search=0, /api/movies/{id}=1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        requestLogger.detachAppender(appender);
+    }
+
+    @Test
+    void testOneSummaryLinePerRequest() throws Exception {
+        MockHttpServletRequest request = request("/api/movies/5", "/api/movies/{id}");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("id", "5"));
+        request.setAttribute(RequestLogFilter.RESULT_SIZE_ATTRIBUTE, 1);
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(1, appender.list.size());
+        String line = appender.list.get(0).getFormattedMessage();
+        assertTrue(line.startsWith("method=GET uri=/api/movies/{id} ids={id=5} status=200 results=1 durationMs="), line);
+    }
+
+    @Test
+    void testSampledOutRequestsAreOnlyLoggedWhenTheyFail() throws Exception {
+        filter.doFilter(request("/api/movies/search", "/api/movies/search"), new MockHttpServletResponse(), new MockFilterChain());
+        assertTrue(appender.list.isEmpty());
+
+        MockHttpServletResponse failed = new MockHttpServletResponse();
+        failed.setStatus(400);
+        filter.doFilter(request("/api/movies/search", "/api/movies/search"), failed, new MockFilterChain());
+        assertEquals(1, appender.list.size());
+    }
+
+    @Test
+    void testNonApiRequestsAreNotLogged() throws Exception {
+        filter.doFilter(request("/actuator/prometheus", null), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertTrue(appender.list.isEmpty());
+    }
+
+    private static MockHttpServletRequest request(String uri, String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        if (pattern != null) {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,98 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.services.MovieChangedEvent;
+import com.contenetwise.recommender.services.search.TitleSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TitleSearchIndexTest {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @InjectMocks
+    private TitleSearchIndex titleSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        when(movieRepository.streamTitles()).thenReturn(Stream.of(
+                new Object[]{1L, "The Matrix"},
+                new Object[]{2L, "The Matrix Reloaded"},
+                new Object[]{3L, "Animatrix"},
+                new Object[]{4L, "Matrix"},
+                new Object[]{5L, "Toy Story"}
+        ));
+        titleSearchIndex.rebuild();
+    }
+
+    @Test
+    void testSearchOrdersByRelevance() {
+        // Exact title, then prefix, then start of a word, then anywhere else
+        assertEquals(List.of(4L, 1L, 2L, 3L), titleSearchIndex.search("MATRIX"));
+        assertEquals(List.of(1L, 2L), titleSearchIndex.search("the matrix"));
+        assertEquals(List.of(), titleSearchIndex.search("matrices"));
+    }
+
+    @Test
+    void testShortKeywordsAreAnswered() {
+        assertEquals(List.of(5L), titleSearchIndex.search("y s"));
+        assertEquals(List.of(), titleSearchIndex.search(" "));
+    }
+
+    @Test
+    void testIndexFollowsCreatedAndDeletedMovies() {
+        titleSearchIndex.onMovieChanged(MovieChangedEvent.created(6L, "Toy Story 2", Set.of("Animation")));
+        assertEquals(List.of(5L, 6L), titleSearchIndex.search("toy story"));
+
+        titleSearchIndex.onMovieChanged(MovieChangedEvent.deleted(5L, "Toy Story", Set.of("Animation")));
+        assertEquals(List.of(6L), titleSearchIndex.search("toy story"));
+        assertEquals(List.of(6L), titleSearchIndex.search("to"));
+        verify(movieRepository, times(1)).streamTitles();
+    }
+
+    @Test
+    void testPostingListsGrowAndShrink() {
+        // Ids added from the highest, so every one lands before the others
+        for (long id = 200; id > 100; id--) {
+            titleSearchIndex.add(id, "Saga " + id);
+        }
+        for (long id = 101; id <= 200; id += 2) {
+            titleSearchIndex.remove(id);
+        }
+
+        assertEquals(LongStream.rangeClosed(102, 200).filter(id -> id % 2 == 0).boxed().toList(),
+                titleSearchIndex.search("saga").stream().sorted().toList());
+        assertEquals(List.of(150L), titleSearchIndex.search("saga 150"));
+    }
+
+    @Test
+    void testChangesDuringRebuildAreKept() {
+        //Created and deleted while the catalog is read, which may not include them
+        Stream<Object[]> catalog = Stream.<Object[]>of(new Object[]{1L, "The Matrix"}, new Object[]{5L, "Toy Story"})
+                .peek(row -> {
+                    titleSearchIndex.onMovieChanged(MovieChangedEvent.created(7L, "Toy Story 2", Set.of()));
+                    titleSearchIndex.onMovieChanged(MovieChangedEvent.deleted(5L, "Toy Story", Set.of()));
+                });
+        when(movieRepository.streamTitles()).thenReturn(catalog);
+
+        titleSearchIndex.rebuild();
+
+        assertEquals(List.of(7L), titleSearchIndex.search("toy story"));
+        assertEquals(List.of(1L), titleSearchIndex.search("matrix"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.services.recommendation.ItemSimilarityEngine;
+import com.contenetwise.recommender.services.recommendation.ItemSimilarityIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ItemSimilarityIndexTest {
+
+    @Mock
+    private RankingRepository rankingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ItemSimilarityIndex similarityIndex;
+
+    @BeforeEach
+    void setUp() {
+        // Movies 1 and 2 are liked by the same users, movie 3 is disliked by them
+        when(rankingRepository.streamUserScores()).thenReturn(Stream.of(
+                new Object[]{1L, 1L, 5},
+                new Object[]{1L, 2L, 5},
+                new Object[]{1L, 3L, 1},
+                new Object[]{2L, 1L, 4},
+                new Object[]{2L, 2L, 5},
+                new Object[]{2L, 3L, 2},
+                new Object[]{3L, 3L, 5},
+                new Object[]{3L, 4L, 5},
+                new Object[]{3L, 1L, 1}
+        ));
+        similarityIndex = new ItemSimilarityIndex(rankingRepository, transactionManager, 10, ItemSimilarityIndex.ADJUSTED_COSINE);
+        similarityIndex.rebuild();
+    }
+
+    @Test
+    void testNeighborsAreOrderedBySimilarity() {
+        List<Long> neighbors = new ArrayList<>();
+        List<Float> similarities = new ArrayList<>();
+        similarityIndex.getModel().forEachNeighbor(1L, (movieId, similarity) -> {
+            neighbors.add(movieId);
+            similarities.add(similarity);
+        });
+
+        assertEquals(4, similarityIndex.getModel().size());
+        assertEquals(2L, neighbors.get(0), "Movie 2 should be the closest neighbor of movie 1");
+        assertFalse(neighbors.contains(3L), "Negatively correlated movies are not neighbors");
+        for (int i = 1; i < similarities.size(); i++) {
+            assertTrue(similarities.get(i - 1) >= similarities.get(i));
+        }
+    }
+
+    @Test
+    void testRecommendExcludesRankedMovies() {
+        ItemSimilarityEngine engine = new ItemSimilarityEngine(similarityIndex);
+
+        List<Long> recommendations = engine.recommend(4L, List.of(ranking(1L, 5), ranking(3L, 1)));
+
+        assertFalse(recommendations.isEmpty());
+        assertEquals(2L, recommendations.get(0), "Movie 2 is similar to the movie the user liked");
+        assertFalse(recommendations.contains(1L));
+        assertFalse(recommendations.contains(3L));
+    }
+
+    @Test
+    void testEmptyRankingsProduceEmptyModel() {
+        when(rankingRepository.streamUserScores()).thenReturn(Stream.empty());
+        similarityIndex.rebuild();
+
+        assertEquals(0, similarityIndex.getModel().size());
+        assertTrue(new ItemSimilarityEngine(similarityIndex).recommend(1L, List.of(ranking(1L, 5))).isEmpty());
+    }
+
+    private static Ranking ranking(Long movieId, int rank1) {
+        return Ranking.builder().movie(Movie.builder().id(movieId).build()).rank1(rank1).build();
+    }
+}
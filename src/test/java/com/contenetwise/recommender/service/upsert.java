@@ -0,0 +1,165 @@
+package com.contenetwise.recommender.service;
+
+import com.contenetwise.recommender.domain.Movie;
+import com.contenetwise.recommender.domain.Ranking;
+import com.contenetwise.recommender.domain.User;
+import com.contenetwise.recommender.repositories.MovieRepository;
+import com.contenetwise.recommender.repositories.RankingBatchRepository;
+import com.contenetwise.recommender.repositories.RankingRepository;
+import com.contenetwise.recommender.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+@ActiveProfiles("test")
+class RankingUpsertTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RankingBatchRepository rankingBatchRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private RankingRepository rankingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Movie movie;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder().username("upsert_user").build());
+        movie = movieRepository.save(Movie.builder().title("Upsert Movie").build());
+    }
+
+    @Test
+    void testUpsertCreatesThenUpdatesTheGivenRank() {
+        RankingBatchRepository.Upsert created = rankingBatchRepository.upsert(user.getId(), movie.getId(), null, 30);
+        assertTrue(created.created());
+        assertNull(created.previousScore());
+        assertEquals(2, created.score());
+
+        RankingBatchRepository.Upsert rated = rankingBatchRepository.upsert(user.getId(), movie.getId(), 5, null);
+        assertFalse(rated.created());
+        assertEquals(2, rated.previousScore());
+        assertEquals(5, rated.score());
+
+        //A view does not change the score of a rated movie
+        RankingBatchRepository.Upsert viewed = rankingBatchRepository.upsert(user.getId(), movie.getId(), null, 95);
+        assertEquals(5, viewed.score());
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ranking WHERE user_id = ? AND movie_id = ?",
+                Integer.class, user.getId(), movie.getId()));
+        assertEquals(95, jdbcTemplate.queryForObject("SELECT rank2 FROM ranking WHERE user_id = ? AND movie_id = ?",
+                Integer.class, user.getId(), movie.getId()));
+    }
+
+    @Test
+    void testUpsertAllMergesEveryPairAndMarksTheUsers() {
+        Movie other = movieRepository.save(Movie.builder().title("Upsert Other Movie").build());
+        rankingBatchRepository.upsert(user.getId(), movie.getId(), 3, null);
+        jdbcTemplate.update("UPDATE users SET rankings_changed_at = NULL WHERE id = ?", user.getId());
+
+        List<RankingBatchRepository.Upsert> upserts = rankingBatchRepository.upsertAll(List.of(
+                new RankingBatchRepository.RankingRow(user.getId(), other.getId(), null, 90),
+                new RankingBatchRepository.RankingRow(user.getId(), movie.getId(), null, 10)));
+
+        //Results in the order of the rows, the rating of the stored pair keeps deciding its score
+        assertEquals(new RankingBatchRepository.Upsert(null, 5, true), upserts.get(0));
+        assertEquals(new RankingBatchRepository.Upsert(3, 3, false), upserts.get(1));
+        assertEquals(10, jdbcTemplate.queryForObject("SELECT rank2 FROM ranking WHERE user_id = ? AND movie_id = ?",
+                Integer.class, user.getId(), movie.getId()));
+        assertNotNull(jdbcTemplate.queryForObject("SELECT rankings_changed_at FROM users WHERE id = ?",
+                Timestamp.class, user.getId()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testConcurrentUpsertsOfANewPairChainTheirScores() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<RankingBatchRepository.Upsert>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                int rank1 = i % 5 + 1;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return rankingBatchRepository.upsert(user.getId(), movie.getId(), rank1, null);
+                }, executor));
+            }
+            start.countDown();
+            List<RankingBatchRepository.Upsert> upserts = new ArrayList<>();
+            for (CompletableFuture<RankingBatchRepository.Upsert> future : futures) {
+                upserts.add(future.get(10, TimeUnit.SECONDS));
+            }
+
+            //One write created the ranking, and every other one replaced the score of exactly one write
+            assertEquals(1, upserts.stream().filter(RankingBatchRepository.Upsert::created).count());
+            List<Integer> replaced = new ArrayList<>(upserts.stream().map(RankingBatchRepository.Upsert::score).toList());
+            upserts.stream().filter(upsert -> !upsert.created()).forEach(upsert -> assertTrue(replaced.remove(upsert.previousScore())));
+            assertEquals(List.of(jdbcTemplate.queryForObject("SELECT score FROM ranking WHERE user_id = ? AND movie_id = ?",
+                    Integer.class, user.getId(), movie.getId())), replaced);
+        } finally {
+            executor.shutdownNow();
+            jdbcTemplate.update("DELETE FROM ranking WHERE user_id = ?", user.getId());
+            movieRepository.deleteById(movie.getId());
+            userRepository.deleteById(user.getId());
+        }
+    }
+
+    @Test
+    void testMissingReferencesAreBadRequests() throws Exception {
+        mockMvc.perform(post("/api/rankings/user/{userId}/movie/{movieId}", user.getId(), -1L).param("rank1", "4"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Movie not found."));
+        mockMvc.perform(post("/api/rankings/user/{userId}/movie/{movieId}", -1L, movie.getId()).param("rank1", "4"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("User not found."));
+    }
+
+    @Test
+    void testAggregationsReadThePersistedScore() {
+        Ranking ranking = rankingRepository.save(Ranking.builder().user(user).movie(movie).rank2(90).build());
+        assertEquals(5, ranking.getScore());
+
+        assertTrue(movieRepository.findByMinRanking(5).stream().anyMatch(m -> m.getId().equals(movie.getId())));
+        assertTrue(movieRepository.findByMaxRanking(4).stream().noneMatch(m -> m.getId().equals(movie.getId())));
+    }
+}